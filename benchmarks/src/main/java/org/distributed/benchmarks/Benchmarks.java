@@ -0,0 +1,78 @@
+package org.distributed.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.distributed.conduit.Transport;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks, reporting the allocations per operation (<code>gc.alloc.rate.norm</code>).
+ * <p>
+ * Without arguments, the microbenchmarks run single threaded, {@link TransportBenchmark} through the transports
+ * available here, {@link UdpServerBenchmark} with {@value #UDP_SENDERS} senders, then {@link ConduitBenchmark} runs
+ * with 1 to 64 threads. The payloads of more than {@value #MAX_SHARED_PAYLOAD} bytes are only sent by a few threads,
+ * to fit the heap. Otherwise the JMH options are run as given.
+ * <p>
+ * <code>java -jar target/benchmarks.jar [JMH options, e.g. ConduitBenchmark.roundTrip -p payload=16 -rf json]</code>
+ */
+public class Benchmarks {
+
+    private static final int[] THREADS = { 1, 4, 16, 64 };
+    private static final int MAX_SHARED_PAYLOAD = 1024 * 1024;
+    private static final int FEW_THREADS = 4;
+    private static final int UDP_SENDERS = 8;
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+	final CommandLineOptions command = new CommandLineOptions(args);
+	if (args.length > 0) {
+	    run(new OptionsBuilder().parent(command));
+	    return;
+	}
+	run(new OptionsBuilder() //
+		.include(DecoderBenchmark.class.getSimpleName()) //
+		.include(CodecBenchmark.class.getSimpleName()) //
+		.include(CompressionBenchmark.class.getSimpleName()) //
+		.include(SerializationBenchmark.class.getSimpleName()) //
+		.include(RoutingBenchmark.class.getSimpleName()));
+	run(new OptionsBuilder() //
+		.include(TransportBenchmark.class.getSimpleName()) //
+		.param("transport", availableTransports()));
+	final ChainedOptionsBuilder udp = new OptionsBuilder() //
+		.include(UdpServerBenchmark.class.getSimpleName()) //
+		.threads(UDP_SENDERS);
+	if (!Transport.EPOLL.isAvailable()) {
+	    udp.param("sockets", "1");
+	}
+	run(udp);
+	for (int threads : THREADS) {
+	    final ChainedOptionsBuilder options = new OptionsBuilder() //
+		    .include(ConduitBenchmark.class.getSimpleName()) //
+		    .threads(threads);
+	    if (threads > FEW_THREADS) {
+		options.param("payload", "16", "1024", "65536", String.valueOf(MAX_SHARED_PAYLOAD));
+	    }
+	    run(options);
+	}
+    }
+
+    private static String[] availableTransports() {
+	final List<String> available = new ArrayList<>();
+	for (Transport transport : Transport.values()) {
+	    if (transport.isAvailable()) {
+		available.add(transport.name());
+	    }
+	}
+	return available.toArray(new String[available.size()]);
+    }
+
+    private static void run(ChainedOptionsBuilder options) throws RunnerException {
+	new Runner(options.addProfiler(GCProfiler.class).build()).run();
+    }
+}
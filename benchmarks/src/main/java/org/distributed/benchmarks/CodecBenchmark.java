@@ -0,0 +1,88 @@
+package org.distributed.benchmarks;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ReferenceCountUtil;
+
+import java.util.concurrent.TimeUnit;
+
+import org.distributed.conduit.ByteTransfer;
+import org.distributed.conduit.ByteTransferEncoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The encoding of transfers: through an embedded channel (no socket, no event loop), and to / from byte arrays. Times
+ * are per transfer.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CodecBenchmark {
+
+    static final int FRAMES = 16;
+
+    @Param({ "16", "1024", "65536" })
+    int payload;
+
+    private EmbeddedChannel encoder;
+    private ByteBuf content;
+    private ByteTransfer transfer;
+    private byte[] frame;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+	encoder = new EmbeddedChannel(new ByteTransferEncoder());
+	content = Unpooled.directBuffer(payload).writeZero(payload);
+	transfer = new ByteTransfer(1, Unpooled.wrappedBuffer(new byte[payload]));
+	frame = transfer.toByteArray();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+	encoder.finishAndReleaseAll();
+	content.release();
+	transfer.release();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FRAMES)
+    public void encode(Blackhole blackhole) {
+	for (int i = 0; i < FRAMES; i++) {
+	    encoder.writeOutbound(new ByteTransfer(i, content.retainedDuplicate()));
+	}
+	for (Object encoded; (encoded = encoder.readOutbound()) != null;) {
+	    blackhole.consume(encoded);
+	    ReferenceCountUtil.release(encoded);
+	}
+    }
+
+    @Benchmark
+    public void fromByteArray(Blackhole blackhole) {
+	final ByteTransfer decoded = ByteTransfer.fromByteArray(frame);
+	blackhole.consume(decoded);
+	decoded.release();
+    }
+
+    @Benchmark
+    public byte[] toByteArray() {
+	return transfer.toByteArray();
+    }
+}
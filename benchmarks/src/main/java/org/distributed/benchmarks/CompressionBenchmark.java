@@ -0,0 +1,107 @@
+package org.distributed.benchmarks;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.distributed.conduit.ByteTransfer;
+import org.distributed.conduit.ByteTransferDecoder;
+import org.distributed.conduit.ByteTransferEncoder;
+import org.distributed.conduit.Compression;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Where compressing JSON-like payloads pays off: transfers encoded then decoded through embedded channels, with and
+ * without compression.
+ * <p>
+ * The {@link Bytes} counters are the payload and the frame bytes per second, the compression ratio being the first
+ * over the second. The effective throughput over a link is the lowest of the payload bytes per second and the link
+ * bandwidth times the ratio, the crossover being the size from which the compressed one is higher.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CompressionBenchmark {
+
+    @Param({ "256", "1024", "4096", "16384", "65536", "262144" })
+    int payload;
+
+    @Param({ "none", "lz4" })
+    String compression;
+
+    private EmbeddedChannel encoder;
+    private EmbeddedChannel decoder;
+    private byte[] json;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+	// every payload is compressed, whatever its size
+	encoder = new EmbeddedChannel(new ByteTransferDecoder(), new ByteTransferEncoder(
+		"lz4".equals(compression) ? Compression.configurable(1) : Compression.none));
+	// the capabilities of the peer: it decompresses
+	encoder.writeInbound(Unpooled.buffer().writeInt(Integer.MIN_VALUE).writeInt(Integer.BYTES).writeInt(1));
+	decoder = new EmbeddedChannel(new ByteTransferDecoder());
+	json = json(payload);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+	encoder.finishAndReleaseAll();
+	decoder.finishAndReleaseAll();
+    }
+
+    @Benchmark
+    public void codec(Bytes bytes) {
+	encoder.writeOutbound(new ByteTransfer(1, json));
+	final ByteBuf frame = encoder.readOutbound();
+	bytes.frameBytes += frame.readableBytes();
+	decoder.writeInbound(frame);
+	final ByteTransfer transfer = decoder.readInbound();
+	bytes.payloadBytes += transfer.content().readableBytes();
+	transfer.release();
+    }
+
+    /**
+     * The bytes through the codec, reported per second.
+     */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Bytes {
+
+	public long payloadBytes;
+	public long frameBytes;
+
+	@Setup(Level.Iteration)
+	public void reset() {
+	    payloadBytes = 0;
+	    frameBytes = 0;
+	}
+    }
+
+    private static byte[] json(int size) {
+	final StringBuilder json = new StringBuilder("[");
+	for (int i = 0; json.length() < size; i++) {
+	    json.append("{\"id\":").append(i).append(",\"name\":\"node-").append(i % 64).append("\",\"alive\":true},");
+	}
+	return json.substring(0, size).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,101 @@
+package org.distributed.benchmarks;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.distributed.conduit.AbstractConduit.Protocol;
+import org.distributed.conduit.Conduit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Byte arrays echoed by a server over loopback, all the benchmark threads sharing one conduit.
+ * <p>
+ * {@link #roundTrip()} waits for every answer before sending the next request, {@link #pipelined(Window)} keeps a
+ * window of requests in flight per thread, of at most {@value #WINDOW_BYTES} bytes.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+public class ConduitBenchmark {
+
+    static final int WINDOW_BYTES = 4 * 1024 * 1024;
+    static final int MAX_WINDOW = 64;
+
+    @Param({ "TCP", "UDP" })
+    Protocol protocol;
+
+    @Param({ "16", "1024", "65536", "1048576", "16777216" })
+    int payload;
+
+    private Loopback loopback;
+    private Conduit conduit;
+    private byte[] message;
+
+    @Setup(Level.Trial)
+    public void setUp() throws InterruptedException {
+	loopback = new Loopback(protocol, payload);
+	conduit = loopback.conduit;
+	message = new byte[payload];
+	for (int i = 0; i < payload; i++) {
+	    message[i] = (byte) i;
+	}
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+	loopback.close();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public byte[] roundTrip() throws Exception {
+	return conduit.send(message, byte[].class).get();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public byte[] pipelined(Window window) throws Exception {
+	return window.send(conduit, message);
+    }
+
+    /**
+     * The requests in flight of a thread.
+     */
+    @State(Scope.Thread)
+    public static class Window {
+
+	private final Queue<Future<byte[]>> pending = new ArrayDeque<>();
+
+	// the answer of the oldest request, once the window is full
+	byte[] send(Conduit conduit, byte[] message) throws Exception {
+	    final int size = Math.max(1, Math.min(MAX_WINDOW, WINDOW_BYTES / Math.max(1, message.length)));
+	    final byte[] answer = pending.size() < size ? null : pending.poll().get();
+	    pending.add(conduit.send(message, byte[].class));
+	    return answer;
+	}
+
+	@TearDown(Level.Iteration)
+	public void drain() throws Exception {
+	    for (Future<byte[]> answer; (answer = pending.poll()) != null;) {
+		answer.get();
+	    }
+	}
+    }
+}
@@ -0,0 +1,86 @@
+package org.distributed.benchmarks;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ReferenceCountUtil;
+
+import java.util.concurrent.TimeUnit;
+
+import org.distributed.conduit.ByteTransferDecoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The decoding of transfers through an embedded channel: no socket, no event loop.
+ * <p>
+ * The decoder is fed {@value #FRAMES} transfers cut in fragments of <code>fragment</code> bytes, as TCP may deliver
+ * them. Times are per transfer.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DecoderBenchmark {
+
+    static final int FRAMES = 16;
+
+    @Param({ "16", "1024", "65536" })
+    int payload;
+
+    @Param({ "64", "1460", "65536" })
+    int fragment;
+
+    private EmbeddedChannel decoder;
+    private ByteBuf[] fragments;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+	decoder = new EmbeddedChannel(new ByteTransferDecoder());
+	final ByteBuf frames = Unpooled.buffer();
+	for (int i = 0; i < FRAMES; i++) {
+	    frames.writeInt(i).writeInt(payload).writeZero(payload);
+	}
+	fragments = new ByteBuf[(frames.readableBytes() + fragment - 1) / fragment];
+	for (int i = 0; i < fragments.length; i++) {
+	    final int length = Math.min(fragment, frames.readableBytes());
+	    fragments[i] = Unpooled.directBuffer(length).writeBytes(frames, length);
+	}
+	frames.release();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+	decoder.finishAndReleaseAll();
+	for (ByteBuf buffer : fragments) {
+	    buffer.release();
+	}
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FRAMES)
+    public void decodeFragmented(Blackhole blackhole) {
+	for (ByteBuf buffer : fragments) {
+	    decoder.writeInbound(buffer.retainedDuplicate());
+	}
+	for (Object decoded; (decoded = decoder.readInbound()) != null;) {
+	    blackhole.consume(decoded);
+	    ReferenceCountUtil.release(decoded);
+	}
+    }
+}
@@ -0,0 +1,23 @@
+package org.distributed.benchmarks;
+
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+
+import org.distributed.conduit.ByteTransfer;
+
+/**
+ * Writes every transfer back to its sender, without copying it.
+ */
+@Sharable
+public class Echo extends SimpleChannelInboundHandler<ByteTransfer> {
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, ByteTransfer msg) throws Exception {
+	if (msg.getSenderHostname() == null) {
+	    ctx.writeAndFlush(msg.retain()); // TCP, released once written
+	} else {
+	    ctx.writeAndFlush(msg.answer(msg.content().retain())); // UDP, to the sender address
+	}
+    }
+}
@@ -0,0 +1,52 @@
+package org.distributed.benchmarks;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import org.distributed.conduit.AbstractConduit.Protocol;
+import org.distributed.conduit.Conduit;
+import org.distributed.conduit.NioGroupFactory;
+import org.distributed.conduit.TCPConduit;
+import org.distributed.conduit.TCPServer;
+import org.distributed.conduit.TransportOptions;
+import org.distributed.conduit.UDPConduit;
+import org.distributed.conduit.UDPServer;
+
+/**
+ * An echo server and a conduit to it, over loopback.
+ * <p>
+ * UDP payloads over {@value #MAX_DATAGRAM_PAYLOAD} bytes do not fit the receive buffer of a datagram, they are sent
+ * through reliable UDP.
+ */
+class Loopback implements Closeable {
+
+    static final int MAX_DATAGRAM_PAYLOAD = 1024;
+
+    private static final String HOST = "127.0.0.1";
+    private static final int PORT = 19899;
+
+    final Conduit conduit;
+    private final Closeable server;
+
+    Loopback(Protocol protocol, int payload) throws InterruptedException {
+	final TransportOptions options = TransportOptions.defaults() //
+		.reliableUdp(protocol == Protocol.UDP && payload > MAX_DATAGRAM_PAYLOAD);
+	if (protocol == Protocol.TCP) {
+	    server = new TCPServer(new Echo(), HOST, PORT, NioGroupFactory.shared, options);
+	    conduit = new TCPConduit(HOST, PORT, NioGroupFactory.shared, options);
+	} else {
+	    server = new UDPServer(new Echo(), HOST, PORT, NioGroupFactory.shared, options);
+	    conduit = new UDPConduit(HOST, PORT, NioGroupFactory.shared, false, options);
+	}
+    }
+
+    @Override
+    public void close() {
+	conduit.close();
+	try {
+	    server.close();
+	} catch (IOException e) {
+	    throw new IllegalStateException("Cannot close the server.", e);
+	}
+    }
+}
@@ -0,0 +1,102 @@
+package org.distributed.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.distributed.dht.Id;
+import org.distributed.dht.Keys;
+import org.distributed.dht.Lookup;
+import org.distributed.dht.Node;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Lookups of random keys from random nodes of a ring running over loopback, once the fingers are fixed.
+ * <p>
+ * The {@link Hops} counters are the lookups and their hops, the hops per lookup being the second over the first. They
+ * should grow with the log of the ring size.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+// the counters are only reported with the throughput and the average time
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RoutingBenchmark {
+
+    private static final int PORT = 19600;
+
+    @Param({ "8", "32", "128" })
+    int nodes;
+
+    private final List<Node> ring = new ArrayList<>();
+    private final Random random = new Random(42);
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+	final Node first = new Node("127.0.0.1", PORT).start();
+	ring.add(first);
+	for (int i = 1; i < nodes; i++) {
+	    final Node node = new Node("127.0.0.1", PORT + i).start();
+	    node.join(first);
+	    ring.add(node);
+	}
+	for (Node node : ring) {
+	    node.fixFingers();
+	}
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+	for (Node node : ring) {
+	    node.stop();
+	}
+	ring.clear();
+    }
+
+    @Benchmark
+    public Lookup lookup(Hops hops) throws Exception {
+	final Node node;
+	final Id key;
+	synchronized (random) {
+	    node = ring.get(random.nextInt(nodes));
+	    key = Keys.of(Long.toString(random.nextLong()));
+	}
+	final Lookup lookup = node.lookup(key).toCompletableFuture().get();
+	hops.lookups++;
+	hops.hops += lookup.getHops();
+	return lookup;
+    }
+
+    /**
+     * The lookups of a thread and their hops, summed over the iteration.
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Hops {
+
+	public long lookups;
+	public long hops;
+
+	@Setup(Level.Iteration)
+	public void reset() {
+	    lookups = 0;
+	    hops = 0;
+	}
+    }
+}
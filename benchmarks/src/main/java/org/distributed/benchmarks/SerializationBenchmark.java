@@ -0,0 +1,105 @@
+package org.distributed.benchmarks;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+
+import java.util.concurrent.TimeUnit;
+
+import org.distributed.conduit.TransferSerializer;
+import org.distributed.dht.Id;
+import org.distributed.dht.Keys;
+import org.distributed.dht.Node;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Kryo round trips of the DHT and hole punching messages through pooled buffers, as done by the conduits, and the
+ * hashing of keys and node ids.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SerializationBenchmark {
+
+    private static final int KEYS = 1024;
+
+    private final TransferSerializer serializer = TransferSerializer.defaults;
+    private final ByteBufAllocator alloc = PooledByteBufAllocator.DEFAULT;
+
+    private Object put;
+    private Object get;
+    private Object sync;
+    private Object requestPort;
+    private String[] keys;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws InterruptedException {
+	final Id key = Keys.of("key");
+	put = org.distributed.dht.Message.put(key, new byte[128]);
+	get = org.distributed.dht.Message.get(key);
+	// the node is never started, only its links are serialized
+	final Node node = new Node("127.0.0.1", 20001);
+	node.setPrev(new Node("127.0.0.1", 20000));
+	node.setNext(new Node("127.0.0.1", 20002));
+	sync = org.distributed.dht.Message.sync(node);
+	requestPort = org.distributed.holepunch.Message.requestPort("192.168.96.3");
+
+	keys = new String[KEYS];
+	for (int i = 0; i < KEYS; i++) {
+	    keys[i] = "key-" + i;
+	}
+    }
+
+    @Benchmark
+    public Object dhtPut() {
+	return roundTrip(put);
+    }
+
+    @Benchmark
+    public Object dhtGet() {
+	return roundTrip(get);
+    }
+
+    @Benchmark
+    public Object dhtSync() {
+	return roundTrip(sync);
+    }
+
+    @Benchmark
+    public Object holepunchRequestPort() {
+	return roundTrip(requestPort);
+    }
+
+    @Benchmark
+    public Id keysOf() {
+	return Keys.of(keys[next++ & (KEYS - 1)]);
+    }
+
+    @Benchmark
+    public Id nodeId() {
+	return Keys.of("127.0.0.1", 20000 + (next++ & (KEYS - 1)));
+    }
+
+    private Object roundTrip(Object message) {
+	final ByteBuf buffer = serializer.serialize(alloc, message);
+	try {
+	    return serializer.deserialize(buffer, Object.class);
+	} finally {
+	    buffer.release();
+	}
+    }
+}
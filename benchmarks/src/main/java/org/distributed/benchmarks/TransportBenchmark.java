@@ -0,0 +1,77 @@
+package org.distributed.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.distributed.conduit.Conduit;
+import org.distributed.conduit.NioGroupFactory;
+import org.distributed.conduit.TCPConduit;
+import org.distributed.conduit.TCPServer;
+import org.distributed.conduit.Transport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Small TCP round trips over loopback through each transport, the server and the conduit having one event loop each.
+ * <p>
+ * {@link #roundTrip()} waits for every answer, {@link #pipelined(ConduitBenchmark.Window)} keeps up to
+ * {@value ConduitBenchmark#MAX_WINDOW} requests in flight. The native transports only run where available, see
+ * {@link Benchmarks}.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TransportBenchmark {
+
+    private static final String HOST = "127.0.0.1";
+    private static final int PORT = 19898;
+    private static final int PAYLOAD = 16;
+
+    @Param({ "NIO", "EPOLL" })
+    Transport transport;
+
+    private TCPServer server;
+    private Conduit conduit;
+    private final byte[] message = new byte[PAYLOAD];
+
+    @Setup(Level.Trial)
+    public void setUp() throws InterruptedException {
+	if (!transport.isAvailable()) {
+	    throw new IllegalStateException(transport + " is not available.");
+	}
+	final NioGroupFactory factory = NioGroupFactory.configurable(transport, 1, 1);
+	server = new TCPServer(new Echo(), HOST, PORT, factory);
+	conduit = new TCPConduit(HOST, PORT, factory);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+	conduit.close();
+	server.close();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public byte[] roundTrip() throws Exception {
+	return conduit.send(message, byte[].class).get();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public byte[] pipelined(ConduitBenchmark.Window window) throws Exception {
+	return window.send(conduit, message);
+    }
+}
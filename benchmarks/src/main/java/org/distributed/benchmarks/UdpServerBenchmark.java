@@ -0,0 +1,112 @@
+package org.distributed.benchmarks;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.distributed.conduit.Conduit;
+import org.distributed.conduit.NioGroupFactory;
+import org.distributed.conduit.Transport;
+import org.distributed.conduit.UDPConduit;
+import org.distributed.conduit.UDPServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Small UDP round trips a server handles with a single socket and with one socket per event loop, every benchmark
+ * thread sending through its own conduit, up to {@value #WINDOW} requests in flight.
+ * <p>
+ * More than one socket takes the epoll transport, see {@link Benchmarks}.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class UdpServerBenchmark {
+
+    private static final String HOST = "127.0.0.1";
+    private static final int PORT = 19897;
+    private static final int PAYLOAD = 16;
+    private static final int WINDOW = 16;
+    // a lost datagram fails the run rather than hanging it
+    private static final int TIMEOUT_SECONDS = 10;
+
+    @Param({ "1", "4" })
+    int sockets;
+
+    private UDPServer server;
+
+    @Setup(Level.Trial)
+    public void setUp() throws InterruptedException {
+	if (sockets > 1 && !Transport.EPOLL.isAvailable()) {
+	    throw new IllegalStateException("A socket per event loop needs " + Transport.EPOLL + ".");
+	}
+	final NioGroupFactory factory = sockets > 1 ? NioGroupFactory.configurable(Transport.EPOLL, 1, sockets)
+		: NioGroupFactory.configurable(Transport.best(), 1, 1);
+	server = new UDPServer(new Echo(), HOST, PORT, factory);
+	if (server.getSockets() != sockets) {
+	    server.close();
+	    throw new IllegalStateException("Bound " + server.getSockets() + " sockets instead of " + sockets + ".");
+	}
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+	server.close();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public byte[] pipelined(Sender sender) throws Exception {
+	return sender.send();
+    }
+
+    /**
+     * The conduit of a thread and its requests in flight.
+     */
+    @State(Scope.Thread)
+    public static class Sender {
+
+	private final byte[] message = new byte[PAYLOAD];
+	private final Queue<Future<byte[]>> pending = new ArrayDeque<>(WINDOW);
+	private Conduit conduit;
+
+	@Setup(Level.Trial)
+	public void open() throws InterruptedException {
+	    conduit = new UDPConduit(HOST, PORT);
+	}
+
+	// the answer of the oldest request, once the window is full
+	byte[] send() throws Exception {
+	    final byte[] answer = pending.size() < WINDOW ? null
+		    : pending.poll().get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+	    pending.add(conduit.send(message, byte[].class));
+	    return answer;
+	}
+
+	@TearDown(Level.Iteration)
+	public void drain() throws Exception {
+	    for (Future<byte[]> answer; (answer = pending.poll()) != null;) {
+		answer.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+	    }
+	}
+
+	@TearDown(Level.Trial)
+	public void close() {
+	    conduit.close();
+	}
+    }
+}
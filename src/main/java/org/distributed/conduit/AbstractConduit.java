@@ -7,6 +7,8 @@ import io.netty.channel.SimpleChannelInboundHandler;
 
 import java.io.Closeable;
 
+import org.distributed.metrics.MetricSet;
+
 public abstract class AbstractConduit<T, C extends Channel> extends ChannelInitializer<C> implements Closeable {
 
     public static enum Protocol {
@@ -16,11 +18,23 @@ public abstract class AbstractConduit<T, C extends Channel> extends ChannelIniti
     protected final String hostname;
     protected final int port;
     protected final Protocol protocol;
+    protected final TransportOptions options;
+    protected final MetricSet metrics;
+
+    // null unless metrics are enabled
+    private final Traffic traffic;
 
     protected AbstractConduit(String hostname, int port, Protocol protocol) {
+	this(hostname, port, protocol, TransportOptions.defaults());
+    }
+
+    protected AbstractConduit(String hostname, int port, Protocol protocol, TransportOptions options) {
 	this.hostname = hostname;
 	this.port = port;
 	this.protocol = protocol;
+	this.options = options;
+	this.metrics = new MetricSet(getClass().getSimpleName(), hostname + ':' + port);
+	this.traffic = options.getMetrics().isEnabled() ? new Traffic(metrics) : null;
     }
 
     protected abstract SimpleChannelInboundHandler<T> getHandler();
@@ -32,16 +46,29 @@ public abstract class AbstractConduit<T, C extends Channel> extends ChannelIniti
 	} else {
 	    initUDPChannel(ch);
 	}
+	if (traffic != null) {
+	    ch.pipeline().addFirst(traffic.wire);
+	}
+	if (!options.getFlushPolicy().isImmediate()) {
+	    ch.pipeline().addFirst(new FlushBatcher(options.getFlushPolicy()));
+	}
     }
 
     private void initUDPChannel(C ch) {
 	final ChannelPipeline pipeline = ch.pipeline();
+	if (options.isReliableUdp()) {
+	    pipeline.addLast(new ReliableDatagramHandler());
+	}
+	if (options.getDatagramBudget() > 0) {
+	    pipeline.addLast(new DatagramBatcher(options.getDatagramBudget()));
+	}
 	pipeline.addLast(new ByteTransferDecoder());
 	pipeline.addLast(new ByteTransferEncoder());
 	pipeline.addLast(new ByteTransferToDatagram());
 	pipeline.addLast(new DatagramToByteTransfer());
 	final SimpleChannelInboundHandler<T> handler = getHandler();
 	if (handler != null) {
+	    addTraffic(pipeline);
 	    pipeline.addLast(handler);
 	}
     }
@@ -49,11 +76,28 @@ public abstract class AbstractConduit<T, C extends Channel> extends ChannelIniti
     private void initTCPChannel(C ch) {
 	final ChannelPipeline pipeline = ch.pipeline();
 
+	pipeline.addLast(Capabilities.advertiser);
 	pipeline.addLast(new ByteTransferDecoder());
-	pipeline.addLast(new ByteTransferEncoder());
+	pipeline.addLast(new ByteTransferEncoder(options.getCompression()));
+	pipeline.addLast(new ChunkAssembler());
+	addTraffic(pipeline);
 	pipeline.addLast(getHandler());
     }
 
+    private void addTraffic(ChannelPipeline pipeline) {
+	if (traffic != null) {
+	    pipeline.addLast(traffic.frames);
+	}
+    }
+
+    /**
+     * The metrics of this conduit or server. Traffic and latencies are only recorded when a registry is given, see
+     * {@link TransportOptions#metrics(org.distributed.metrics.MetricsRegistry)}.
+     */
+    public MetricSet getMetrics() {
+	return metrics;
+    }
+
     public String getHostname() {
 	return hostname;
     }
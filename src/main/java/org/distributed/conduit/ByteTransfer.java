@@ -1,73 +1,118 @@
 package org.distributed.conduit;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.DefaultByteBufHolder;
+import io.netty.buffer.Unpooled;
 
+import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 
-public class ByteTransfer {
+/**
+ * A reference counted transfer of bytes.
+ * <p>
+ * The payload is held in a {@link ByteBuf}. Transfers decoded from the wire hold a retained slice of the inbound
+ * buffer, so they must be released once consumed. Handlers extending
+ * {@link io.netty.channel.SimpleChannelInboundHandler} do it automatically, therefore a handler writing the received
+ * transfer back must {@link #retain()} it first.
+ */
+public class ByteTransfer extends DefaultByteBufHolder {
+
+    // id + length
+    static final int HEADER_LENGTH = 2 * Integer.BYTES;
+
+    // flags of the length
+    static final int COMPRESSED = 0x80000000;
+    static final int CHUNKED = 0x40000000;
+    static final int LENGTH_MASK = ~(COMPRESSED | CHUNKED);
 
     public final int id;
-    public final byte[] payload;
 
     private transient String senderHostname;
     private transient int senderPort;
     private transient String receiverHostname;
     private transient int receiverPort;
+    private transient InetSocketAddress recipient;
 
+    /**
+     * Creates a transfer wrapping (not copying) the given bytes.
+     * <p>
+     * A <code>null</code> payload is sent as an empty one.
+     */
     public ByteTransfer(int id, byte[] payload) {
+	this(id, payload == null ? Unpooled.EMPTY_BUFFER : Unpooled.wrappedBuffer(payload));
+    }
+
+    public ByteTransfer(int id, ByteBuf payload) {
+	super(payload);
 	this.id = id;
-	this.payload = payload;
     }
 
+    /**
+     * It creates a byte transfer from the given buffer, sharing its content.
+     * <p>
+     * If the buffer does not contain a completed transfer it returns <code>null</code> and the reader index is left
+     * untouched.
+     */
     public static ByteTransfer fromByteBuf(ByteBuf buffer) {
-	// id + length
-	if (buffer.readableBytes() < 8) {
+	if (buffer.readableBytes() < HEADER_LENGTH) {
 	    return null;
 	}
 
 	buffer.markReaderIndex();
 
 	final int id = buffer.readInt();
-	final int length = buffer.readInt();
+	final int header = buffer.readInt();
+	final int length = header & LENGTH_MASK;
 
 	if (buffer.readableBytes() < length) {
 	    buffer.resetReaderIndex();
 	    return null;
 	}
-
-	final byte[] payload = new byte[length];
-	buffer.readBytes(payload);
-	return new ByteTransfer(id, payload);
+	if ((header & COMPRESSED) != 0) {
+	    return new ByteTransfer(id, Compression.decompress(buffer.alloc(), buffer, length));
+	}
+	return new ByteTransfer(id, buffer.readRetainedSlice(length));
     }
 
     /**
-     * It creates a byte transfer from the given bytes.
+     * It creates a byte transfer from the given bytes, like {@link #fromByteBuf(ByteBuf)}: the payload wraps the
+     * bytes unless compressed.
      * <p>
      * If bytes represent an non-completed transfer it returns <code>null</code>
      */
     public static ByteTransfer fromByteArray(byte[] bytes) {
-	final ByteBuffer buffer = ByteBuffer.wrap(bytes);
-	if (bytes.length < 8)
-	    return null;
-
-	final int id = buffer.getInt();
-	final int size = buffer.getInt();
-	if (size <= buffer.remaining()) {
-	    final byte[] payload = new byte[size];
-	    buffer.get(payload);
-	    return new ByteTransfer(id, payload);
+	final ByteBuf buffer = Unpooled.wrappedBuffer(bytes);
+	try {
+	    return fromByteBuf(buffer);
+	} finally {
+	    buffer.release();
 	}
-	return null;
     }
 
     public byte[] toByteArray() {
-	final ByteBuffer buffer = ByteBuffer.allocate(payload.length + 2 * Integer.BYTES);
+	final ByteBuf content = content();
+	final ByteBuffer buffer = ByteBuffer.allocate(content.readableBytes() + HEADER_LENGTH);
 	buffer.putInt(id);
-	buffer.putInt(payload.length);
-	buffer.put(payload);
+	buffer.putInt(content.readableBytes());
+	content.getBytes(content.readerIndex(), buffer);
 	return buffer.array();
     }
 
+    /**
+     * Copies the payload into a byte array.
+     * <p>
+     * An empty payload is returned as <code>null</code>.
+     */
+    public byte[] payload() {
+	final ByteBuf content = content();
+	return content.isReadable() ? ByteBufUtil.getBytes(content) : null;
+    }
+
+    public int length() {
+	return content().readableBytes();
+    }
+
     public String getSenderHostname() {
 	return senderHostname;
     }
@@ -99,4 +144,70 @@ public class ByteTransfer {
     void setReceiverPort(int receiverPort) {
 	this.receiverPort = receiverPort;
     }
-}
\ No newline at end of file
+
+    /**
+     * A transfer with the id of this one, addressed to its sender.
+     * <p>
+     * Written to the channel this transfer was read from, it lets a UDP server answer through its own socket instead of
+     * opening a conduit to the sender.
+     */
+    public ByteTransfer answer(ByteBuf payload) {
+	final ByteTransfer answer = new ByteTransfer(id, payload);
+	answer.recipient = new InetSocketAddress(senderHostname, senderPort);
+	return answer;
+    }
+
+    InetSocketAddress getRecipient() {
+	return recipient;
+    }
+
+    @Override
+    public ByteTransfer copy() {
+	return (ByteTransfer) super.copy();
+    }
+
+    @Override
+    public ByteTransfer duplicate() {
+	return (ByteTransfer) super.duplicate();
+    }
+
+    @Override
+    public ByteTransfer retainedDuplicate() {
+	return (ByteTransfer) super.retainedDuplicate();
+    }
+
+    @Override
+    public ByteTransfer replace(ByteBuf content) {
+	final ByteTransfer transfer = new ByteTransfer(id, content);
+	transfer.senderHostname = senderHostname;
+	transfer.senderPort = senderPort;
+	transfer.receiverHostname = receiverHostname;
+	transfer.receiverPort = receiverPort;
+	transfer.recipient = recipient;
+	return transfer;
+    }
+
+    @Override
+    public ByteTransfer retain() {
+	super.retain();
+	return this;
+    }
+
+    @Override
+    public ByteTransfer retain(int increment) {
+	super.retain(increment);
+	return this;
+    }
+
+    @Override
+    public ByteTransfer touch() {
+	super.touch();
+	return this;
+    }
+
+    @Override
+    public ByteTransfer touch(Object hint) {
+	super.touch(hint);
+	return this;
+    }
+}
@@ -12,26 +12,38 @@ public class ByteTransferDecoder extends ByteToMessageDecoder {
     protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
 
 	// id + length
-	if (in.readableBytes() < 8) {
+	if (in.readableBytes() < ByteTransfer.HEADER_LENGTH) {
 	    return;
 	}
 
 	in.markReaderIndex();
 
 	final int id = in.readInt();
-	final int length = in.readInt();
+	final int header = in.readInt();
+	final int length = header & ByteTransfer.LENGTH_MASK;
 
 	if (in.readableBytes() < length) {
 	    in.resetReaderIndex();
 	    return;
 	}
 
-	final byte[] payload = new byte[length];
-	in.readBytes(payload);
-	out.add(decodeTransfer(id, payload));
+	if (id == Capabilities.FRAME_ID) {
+	    // a control frame too short for the capabilities is ignored
+	    if (length >= Integer.BYTES) {
+		Capabilities.setPeer(ctx.channel(), in.getInt(in.readerIndex()));
+	    }
+	    in.skipBytes(length);
+	} else if ((header & ByteTransfer.CHUNKED) != 0) {
+	    out.add(Chunk.decode(id, in, length));
+	} else if ((header & ByteTransfer.COMPRESSED) != 0) {
+	    out.add(decodeTransfer(id, Compression.decompress(ctx.alloc(), in, length)));
+	} else {
+	    // no copy, the slice shares the inbound buffer until the transfer is released
+	    out.add(decodeTransfer(id, in.readRetainedSlice(length)));
+	}
     }
 
-    protected ByteTransfer decodeTransfer(int id, byte[] payload) {
+    protected ByteTransfer decodeTransfer(int id, ByteBuf payload) {
 	return new ByteTransfer(id, payload);
     }
 }
@@ -2,14 +2,70 @@ package org.distributed.conduit;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.MessageToByteEncoder;
+import io.netty.handler.codec.EncoderException;
+import io.netty.handler.codec.MessageToMessageEncoder;
 
-public class ByteTransferEncoder extends MessageToByteEncoder<ByteTransfer> {
+import java.util.List;
+
+public class ByteTransferEncoder extends MessageToMessageEncoder<ByteTransfer> {
+
+    // below this size copying the payload next to the header is cheaper than composing both buffers
+    static final int COMPOSITE_THRESHOLD = 1024;
+
+    private final Compression compression;
+
+    public ByteTransferEncoder() {
+	this(Compression.none);
+    }
+
+    public ByteTransferEncoder(Compression compression) {
+	this.compression = compression;
+    }
 
     @Override
-    protected void encode(ChannelHandlerContext ctx, ByteTransfer msg, ByteBuf out) throws Exception {
-	out.writeInt(msg.id);
-	out.writeInt(msg.payload.length);
-	out.writeBytes(msg.payload);
+    protected void encode(ChannelHandlerContext ctx, ByteTransfer msg, List<Object> out) throws Exception {
+	final ByteBuf payload = msg.content();
+	final int length = payload.readableBytes();
+	if (length > ByteTransfer.LENGTH_MASK - Chunk.PREFIX_LENGTH) {
+	    throw new EncoderException("Transfer too large (" + length + " bytes), it must be streamed.");
+	}
+
+	if (msg instanceof Chunk) {
+	    final ByteBuf header = ctx.alloc().ioBuffer(ByteTransfer.HEADER_LENGTH + Chunk.PREFIX_LENGTH);
+	    header.writeInt(msg.id);
+	    header.writeInt((Chunk.PREFIX_LENGTH + length) | ByteTransfer.CHUNKED);
+	    ((Chunk) msg).writePrefix(header);
+	    out.add(ctx.alloc().compositeBuffer(2).addComponents(true, header, payload.retain()));
+	    return;
+	}
+
+	if (compression.accepts(length) && Capabilities.peerSupports(ctx.channel(), Capabilities.LZ4)) {
+	    final int maxLength = ByteTransfer.HEADER_LENGTH + Compression.maxCompressedLength(length);
+	    final ByteBuf frame = ctx.alloc().ioBuffer(maxLength);
+	    frame.writeInt(msg.id);
+	    frame.writeInt(0); // the compressed length, once known
+	    if (Compression.compress(payload, frame)) {
+		final int compressed = frame.readableBytes() - ByteTransfer.HEADER_LENGTH;
+		frame.setInt(Integer.BYTES, compressed | ByteTransfer.COMPRESSED);
+		out.add(frame);
+		return;
+	    }
+	    // not worth it
+	    frame.release();
+	}
+
+	if (length < COMPOSITE_THRESHOLD) {
+	    final ByteBuf frame = ctx.alloc().ioBuffer(ByteTransfer.HEADER_LENGTH + length);
+	    frame.writeInt(msg.id);
+	    frame.writeInt(length);
+	    frame.writeBytes(payload, payload.readerIndex(), length);
+	    out.add(frame);
+	} else {
+	    final ByteBuf header = ctx.alloc().ioBuffer(ByteTransfer.HEADER_LENGTH);
+	    header.writeInt(msg.id);
+	    header.writeInt(length);
+	    // a single frame (one datagram in UDP) gathered from both buffers, msg is released by the super class
+	    out.add(ctx.alloc().compositeBuffer(2).addComponents(true, header, payload.retain()));
+	}
     }
-}
\ No newline at end of file
+}
@@ -1,16 +1,30 @@
 package org.distributed.conduit;
 
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.MessageToMessageDecoder;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.handler.codec.MessageToMessageEncoder;
 
-import java.net.DatagramPacket;
 import java.util.List;
 
-public class ByteTransferToDatagram extends MessageToMessageDecoder<ByteTransfer> {
+/**
+ * Writes the transfers addressed to a recipient (see {@link ByteTransfer#answer(ByteBuf)}) as datagrams. The other
+ * transfers go to the remote address of the channel.
+ */
+public class ByteTransferToDatagram extends MessageToMessageEncoder<ByteTransfer> {
 
     @Override
-    protected void decode(ChannelHandlerContext ctx, ByteTransfer msg, List<Object> out) throws Exception {
-	final byte[] bytes = msg.toByteArray();
-	ctx.writeAndFlush(new DatagramPacket(bytes, bytes.length));
+    public boolean acceptOutboundMessage(Object msg) throws Exception {
+	return super.acceptOutboundMessage(msg) && ((ByteTransfer) msg).getRecipient() != null;
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, ByteTransfer msg, List<Object> out) throws Exception {
+	final ByteBuf payload = msg.content();
+	final ByteBuf frame = ctx.alloc().ioBuffer(ByteTransfer.HEADER_LENGTH + payload.readableBytes());
+	frame.writeInt(msg.id);
+	frame.writeInt(payload.readableBytes());
+	frame.writeBytes(payload, payload.readerIndex(), payload.readableBytes());
+	out.add(new DatagramPacket(frame, msg.getRecipient()));
     }
 }
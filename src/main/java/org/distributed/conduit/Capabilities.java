@@ -0,0 +1,63 @@
+package org.distributed.conduit;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.util.AttributeKey;
+
+/**
+ * What the peer of a TCP channel understands.
+ * <p>
+ * Both ends write a control transfer (id {@link #FRAME_ID}) with their capabilities as soon as the channel is active.
+ * Until the one of the peer is received, nothing requiring a capability is written.
+ */
+final class Capabilities {
+
+    /**
+     * The id of the control transfer. It never reaches the handlers.
+     */
+    static final int FRAME_ID = Integer.MIN_VALUE;
+
+    /**
+     * Decompresses LZ4 frames.
+     */
+    static final int LZ4 = 1;
+
+    /**
+     * The capabilities of this end.
+     */
+    static final int LOCAL = LZ4;
+
+    private static final AttributeKey<Integer> PEER = AttributeKey.valueOf(Capabilities.class, "peer");
+
+    /**
+     * Writes the local capabilities once the channel is active.
+     */
+    static final ChannelInboundHandlerAdapter advertiser = new Advertiser();
+
+    private Capabilities() {
+    }
+
+    static boolean peerSupports(Channel channel, int capability) {
+	final Integer peer = channel.attr(PEER).get();
+	return peer != null && (peer & capability) == capability;
+    }
+
+    static void setPeer(Channel channel, int capabilities) {
+	channel.attr(PEER).set(capabilities);
+    }
+
+    @Sharable
+    private static class Advertiser extends ChannelInboundHandlerAdapter {
+
+	@Override
+	public void channelActive(ChannelHandlerContext ctx) throws Exception {
+	    // through the whole pipeline, the encoder sits after this handler
+	    ctx.channel().writeAndFlush(new ByteTransfer(FRAME_ID, Unpooled.buffer(Integer.BYTES).writeInt(LOCAL)));
+	    ctx.fireChannelActive();
+	    ctx.pipeline().remove(this);
+	}
+    }
+}
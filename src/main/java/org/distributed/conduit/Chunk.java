@@ -0,0 +1,60 @@
+package org.distributed.conduit;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.CorruptedFrameException;
+
+/**
+ * A piece of a streamed transfer.
+ * <p>
+ * The chunks of a stream share the id of the transfer and are numbered from zero. The payload of a chunk frame is
+ * prefixed by its flags and its sequence.
+ */
+class Chunk extends ByteTransfer {
+
+    // flags + sequence
+    static final int PREFIX_LENGTH = Byte.BYTES + Integer.BYTES;
+
+    private static final byte LAST = 1;
+    private static final byte ABORTED = 2;
+
+    final int sequence;
+    final boolean last;
+    final boolean aborted;
+
+    Chunk(int id, int sequence, boolean last, ByteBuf payload) {
+	this(id, sequence, last, false, payload);
+    }
+
+    private Chunk(int id, int sequence, boolean last, boolean aborted, ByteBuf payload) {
+	super(id, payload);
+	this.sequence = sequence;
+	this.last = last;
+	this.aborted = aborted;
+    }
+
+    /**
+     * An empty last chunk telling the receiver the stream failed.
+     */
+    static Chunk aborted(int id, int sequence) {
+	return new Chunk(id, sequence, true, true, Unpooled.EMPTY_BUFFER);
+    }
+
+    void writePrefix(ByteBuf buffer) {
+	buffer.writeByte((last ? LAST : 0) | (aborted ? ABORTED : 0));
+	buffer.writeInt(sequence);
+    }
+
+    /**
+     * Reads a chunk of <code>length</code> bytes, prefix included, sharing the content of the buffer.
+     */
+    static Chunk decode(int id, ByteBuf buffer, int length) {
+	if (length < PREFIX_LENGTH) {
+	    throw new CorruptedFrameException("Invalid chunk.");
+	}
+	final byte flags = buffer.readByte();
+	final int sequence = buffer.readInt();
+	return new Chunk(id, sequence, (flags & LAST) != 0, (flags & ABORTED) != 0,
+		buffer.readRetainedSlice(length - PREFIX_LENGTH));
+    }
+}
@@ -0,0 +1,72 @@
+package org.distributed.conduit;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Turns the chunks of a channel into {@link StreamedTransfer}s.
+ * <p>
+ * The first chunk of a transfer fires a streamed transfer to the next handlers, the following ones (including the
+ * first) are pushed into its stream. Chunks of several transfers may be interleaved, and interleaved with plain
+ * transfers, which go through untouched.
+ */
+class ChunkAssembler extends ChannelInboundHandlerAdapter {
+
+    // only accessed from the event loop
+    private final Map<Integer, Stream> streams = new HashMap<>();
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+	if (!(msg instanceof Chunk)) {
+	    ctx.fireChannelRead(msg);
+	    return;
+	}
+
+	final Chunk chunk = (Chunk) msg;
+	Stream stream = streams.get(chunk.id);
+	if (stream == null && chunk.sequence == 0) {
+	    stream = new Stream(new TransferStream(ctx.channel()));
+	    streams.put(chunk.id, stream);
+	    ctx.fireChannelRead(new StreamedTransfer(chunk.id, stream.stream));
+	}
+
+	if (stream == null || chunk.sequence != stream.next || chunk.aborted) {
+	    chunk.release();
+	    if (stream != null) {
+		streams.remove(chunk.id);
+		stream.stream.fail(new IOException(chunk.aborted ? "Stream aborted by the sender." : "Chunk "
+			+ chunk.sequence + " received, expected " + stream.next + "."));
+	    }
+	    return;
+	}
+
+	stream.next++;
+	stream.stream.offer(chunk.content(), chunk.last);
+	if (chunk.last) {
+	    streams.remove(chunk.id);
+	}
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+	for (Stream stream : streams.values()) {
+	    stream.stream.fail(new IOException("Channel closed before the end of the stream."));
+	}
+	streams.clear();
+	super.channelInactive(ctx);
+    }
+
+    private static class Stream {
+
+	final TransferStream stream;
+	int next = 0;
+
+	Stream(TransferStream stream) {
+	    this.stream = stream;
+	}
+    }
+}
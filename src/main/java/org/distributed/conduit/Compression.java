@@ -0,0 +1,126 @@
+package org.distributed.conduit;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.handler.codec.CorruptedFrameException;
+
+import java.nio.ByteBuffer;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+
+/**
+ * Decides which transfers are compressed (LZ4) before being written.
+ * <p>
+ * Payloads of at least {@link #getThreshold()} bytes are compressed, unless compressing does not make them smaller.
+ * Compressed frames are flagged in the header and only sent to peers which advertised they can decompress them, so
+ * conduits and servers with different policies talk to each other.
+ */
+public class Compression {
+
+    /**
+     * Nothing is compressed.
+     */
+    public static final Compression none = new Compression(Integer.MAX_VALUE);
+
+    /**
+     * Payloads of 1KB or more are compressed.
+     */
+    public static final Compression lz4 = new Compression(1024);
+
+    // the decompressed length precedes the compressed block
+    private static final int PREFIX_LENGTH = Integer.BYTES;
+    // a payload is never longer than a frame
+    private static final int MAX_DECOMPRESSED_LENGTH = ByteTransfer.LENGTH_MASK;
+
+    private static final LZ4Factory factory = LZ4Factory.fastestInstance();
+    private static final LZ4Compressor compressor = factory.fastCompressor();
+    private static final LZ4SafeDecompressor decompressor = factory.safeDecompressor();
+
+    private final int threshold;
+
+    private Compression(int threshold) {
+	this.threshold = threshold;
+    }
+
+    /**
+     * Compresses the payloads of at least <code>threshold</code> bytes.
+     */
+    public static Compression configurable(int threshold) {
+	if (threshold < 1) {
+	    throw new IllegalArgumentException("Expected a positive threshold.");
+	}
+	return new Compression(threshold);
+    }
+
+    public int getThreshold() {
+	return threshold;
+    }
+
+    boolean accepts(int length) {
+	return length >= threshold;
+    }
+
+    /**
+     * The maximum number of bytes written by {@link #compress(ByteBuf, ByteBuf)}.
+     */
+    static int maxCompressedLength(int length) {
+	return PREFIX_LENGTH + compressor.maxCompressedLength(length);
+    }
+
+    /**
+     * Compresses the readable bytes of the payload into the frame, which must not be a composite buffer. Returns
+     * <code>false</code>, leaving the writer index of the frame untouched, if the compressed payload is not smaller.
+     */
+    static boolean compress(ByteBuf payload, ByteBuf frame) {
+	final int length = payload.readableBytes();
+	final int max = compressor.maxCompressedLength(length);
+	frame.ensureWritable(PREFIX_LENGTH + max);
+
+	final int start = frame.writerIndex();
+	final ByteBuffer src = payload.nioBuffer(payload.readerIndex(), length);
+	final ByteBuffer dest = frame.nioBuffer(start + PREFIX_LENGTH, max);
+	final int compressed = compressor.compress(src, src.position(), length, dest, dest.position(), max);
+	if (PREFIX_LENGTH + compressed >= length) {
+	    return false;
+	}
+	frame.writeInt(length);
+	frame.writerIndex(start + PREFIX_LENGTH + compressed);
+	return true;
+    }
+
+    /**
+     * Reads <code>length</code> compressed bytes from the buffer and decompresses them into a new buffer. The
+     * decompressed length announced by the peer is checked before anything is allocated.
+     */
+    static ByteBuf decompress(ByteBufAllocator alloc, ByteBuf buffer, int length) {
+	final int decompressedLength = buffer.readInt();
+	final int compressedLength = length - PREFIX_LENGTH;
+	if (decompressedLength < 0 || compressedLength < 0) {
+	    throw new CorruptedFrameException("Invalid compressed frame.");
+	}
+	if (decompressedLength > MAX_DECOMPRESSED_LENGTH) {
+	    throw new CorruptedFrameException("Decompressed length " + decompressedLength + " over the maximum of "
+		    + MAX_DECOMPRESSED_LENGTH + " bytes.");
+	}
+
+	// never composite, its nio buffer is a view
+	final ByteBuf payload = alloc.ioBuffer(decompressedLength);
+	try {
+	    final ByteBuffer src = buffer.nioBuffer(buffer.readerIndex(), compressedLength);
+	    final ByteBuffer dest = payload.nioBuffer(0, decompressedLength);
+	    final int decompressed = decompressor.decompress(src, src.position(), compressedLength, dest,
+		    dest.position(), decompressedLength);
+	    if (decompressed != decompressedLength) {
+		throw new CorruptedFrameException("Invalid compressed frame.");
+	    }
+	    payload.writerIndex(decompressedLength);
+	    buffer.skipBytes(compressedLength);
+	    return payload;
+	} catch (RuntimeException e) {
+	    payload.release();
+	    throw e instanceof CorruptedFrameException ? e : new CorruptedFrameException(e);
+	}
+    }
+}
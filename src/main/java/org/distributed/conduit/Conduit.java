@@ -1,7 +1,10 @@
 package org.distributed.conduit;
 
 import java.io.Closeable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.Future;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 public interface Conduit extends Closeable {
@@ -14,4 +17,49 @@ public interface Conduit extends Closeable {
     <T> Future<T> send(Object message, Class<T> type);
 
     <T> Future<T> send(Object message, Function<byte[], T> transformer);
+
+    /**
+     * Sends the message and returns its answer without ever blocking the caller. When too many requests are in
+     * flight, the request waits in a queue and the message is serialized once a request is done.
+     * <p>
+     * The answer completes on the event loop, dependent stages not given an executor must not block.
+     */
+    <T> CompletionStage<T> sendAsync(Object message, Class<T> type);
+
+    /**
+     * Whether the conduit takes more writes without growing its outbound buffer beyond the high watermark (see
+     * {@link TransportOptions#writeWatermarks(int, int)}).
+     */
+    default boolean isWritable() {
+	return true;
+    }
+
+    /**
+     * Completes once the conduit is writable, right away if it already is. Producers chaining their writes to it never
+     * grow the outbound buffer much beyond the high watermark. Fails if the conduit is closed meanwhile.
+     */
+    default CompletionStage<Void> whenWritable() {
+	return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Calls the listener, on the event loop, every time the conduit stops or starts being writable.
+     */
+    default void addWritabilityListener(Consumer<Boolean> listener) {
+    }
+
+    /**
+     * Whether the conduit can still send, <code>false</code> once closed by either side.
+     */
+    boolean isOpen();
+
+    /**
+     * The number of requests waiting for an answer.
+     */
+    int getInFlight();
+
+    /**
+     * The number of requests which did not get an answer in time.
+     */
+    long getTimedOut();
 }
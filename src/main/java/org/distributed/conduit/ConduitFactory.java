@@ -1,6 +1,18 @@
 package org.distributed.conduit;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
 public interface ConduitFactory<P> {
 
     Conduit newConduit(P param);
+
+    /**
+     * Completes with a new conduit once connected. By default the conduit is created by the caller, the factories of
+     * conduits connecting without blocking override it (see {@link TCPConduit#factory(NioGroupFactory,
+     * TransportOptions)}).
+     */
+    default CompletionStage<? extends Conduit> newConduitAsync(P param) {
+	return CompletableFuture.completedFuture(newConduit(param));
+    }
 }
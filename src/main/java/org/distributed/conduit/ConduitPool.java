@@ -1,108 +1,436 @@
 package org.distributed.conduit;
 
+import io.netty.util.Timeout;
+
 import java.io.Closeable;
 import java.io.IOException;
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
 
-import org.dev.io.Closeables;
 import org.dev.shutdown.ShutdownManager;
+import org.distributed.metrics.MetricSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+
+/**
+ * A pool of conduits per <code>host:port</code>.
+ * <p>
+ * Endpoints are kept in access order: every {@link #getOrCreate(String)} and every send through a pooled conduit
+ * counts as a use. The least recently used endpoints are closed when the pool exceeds its maximum number of
+ * connections, and idle endpoints are closed once expired. Expiration is driven by a timer, without scanning the pool.
+ * <p>
+ * A conduit closed by its peer is replaced by a new one the next time it is selected. An endpoint none of whose
+ * conduits can be opened again is dropped from the pool.
+ */
 public class ConduitPool implements Closeable {
 
     private static final Logger log = LoggerFactory.getLogger(ConduitPool.class);
 
-    private final EvictionWorker evicter;
+    /**
+     * How a conduit is picked among the conduits of an endpoint.
+     */
+    public static enum Selection {
+	ROUND_ROBIN, LEAST_IN_FLIGHT
+    };
+
     private final ConduitFactory<String> factory;
-    private final Map<String, TimedConduit> pool = new ConcurrentHashMap<>();
+    private final Striping striping;
+    private final Eviction eviction;
+    private final Cache<String, Endpoint> pool;
+    private final LongAdder evictions = new LongAdder();
+    private final MetricSet metrics = new MetricSet("ConduitPool", "pool");
+
+    private volatile boolean active = true;
+    private volatile Timeout expiration;
 
     public ConduitPool(ConduitFactory<String> factory) {
-	this.evicter = new EvictionWorker(pool);
+	this(factory, Striping.single, Eviction.defaults);
+    }
+
+    public ConduitPool(ConduitFactory<String> factory, Striping striping) {
+	this(factory, striping, Eviction.defaults);
+    }
+
+    public ConduitPool(ConduitFactory<String> factory, Striping striping, Eviction eviction) {
 	this.factory = factory;
-	evicter.start();
+	this.striping = striping;
+	this.eviction = eviction;
+	this.pool = CacheBuilder.newBuilder() //
+		.maximumWeight(eviction.maxConnections) //
+		.weigher((String url, Endpoint endpoint) -> striping.connections) //
+		.expireAfterAccess(eviction.idleNanos, TimeUnit.NANOSECONDS) //
+		.removalListener(this::onRemoval) //
+		.build();
+	metrics.gauge("size", this::size).gauge("evictions", this::getEvictions);
+	scheduleExpiration();
 	ShutdownManager.closeOnShutdown(this);
     }
 
     public Conduit getOrCreate(String url) {
-	TimedConduit channel = pool.get(url);
-	if (channel == null) {
-	    channel = new TimedConduit(new PooledConduit(url, factory.newConduit(url)));
-	    pool.put(url, channel);
+	for (;;) {
+	    final Conduit conduit = endpoint(url).select();
+	    if (conduit != null) {
+		return conduit;
+	    }
+	    // evicted meanwhile
+	}
+    }
+
+    private Endpoint endpoint(String url) {
+	try {
+	    return pool.get(url, () -> new Endpoint(url));
+	} catch (ExecutionException e) {
+	    throw new IllegalStateException("Cannot create conduit to '" + url + "'.", e.getCause());
 	}
-	return channel.conduit;
     }
 
+    /**
+     * Like {@link #getOrCreate(String)}, without blocking the caller: an open conduit of the endpoint is returned
+     * right away, otherwise the stage completes once one is connected. Further stripes are opened in the background.
+     * <p>
+     * Only a factory connecting asynchronously never blocks, see {@link ConduitFactory#newConduitAsync(Object)}. The
+     * stage may then complete on an event loop.
+     */
+    public CompletionStage<Conduit> getOrCreateAsync(String url) {
+	final CompletableFuture<Conduit> conduit = endpoint(url).selectAsync();
+	if (conduit.isDone() && !conduit.isCompletedExceptionally() && conduit.join() != null) {
+	    return conduit;
+	}
+	// null once evicted meanwhile
+	return conduit.thenCompose(selected -> selected == null ? getOrCreateAsync(url) : conduit);
+    }
+
+    /**
+     * Marks the endpoint as used.
+     */
     void tick(String url) {
-	final TimedConduit timedConduit = pool.get(url);
-	timedConduit.tick();
+	pool.getIfPresent(url);
+    }
+
+    /**
+     * The number of open endpoints.
+     */
+    public long size() {
+	return pool.size();
+    }
+
+    /**
+     * The number of endpoints closed for being idle or least recently used.
+     */
+    public long getEvictions() {
+	return evictions.sum();
+    }
+
+    /**
+     * The size and the evictions of the pool. The conduits publish their own metrics, according to their options.
+     */
+    public MetricSet getMetrics() {
+	return metrics;
     }
 
     @Override
     public void close() throws IOException {
-	evicter.active = false;
-	for (TimedConduit value : pool.values()) {
-	    try {
-		value.conduit.close();
-	    } catch (Exception e) {
-		log.error("Cannot close.");
-	    }
+	active = false;
+	final Timeout timeout = expiration;
+	if (timeout != null) {
+	    timeout.cancel();
 	}
+	pool.invalidateAll();
     }
-    
-    public synchronized void clear() {
-	Closeables.closeSilently(this);
-	pool.clear();
+
+    /**
+     * Closes every conduit of the pool, which remains usable.
+     */
+    public void clear() {
+	pool.invalidateAll();
+    }
+
+    private void onRemoval(RemovalNotification<String, Endpoint> notification) {
+	if (notification.wasEvicted()) {
+	    evictions.increment();
+	}
+	notification.getValue().close();
+    }
+
+    // expiration is otherwise only done on access
+    private void scheduleExpiration() {
+	if (active) {
+	    expiration = Timers.wheel.newTimeout(timeout -> {
+		pool.cleanUp();
+		scheduleExpiration();
+	    }, eviction.checkNanos, TimeUnit.NANOSECONDS);
+	}
+    }
+
+    /**
+     * The number of conduits per endpoint.
+     */
+    public static class Striping {
+
+	/**
+	 * One conduit per endpoint.
+	 */
+	public static final Striping single = fixed(1, Selection.ROUND_ROBIN);
+
+	private final int connections;
+	private final Selection selection;
+	private final int growThreshold;
+
+	private Striping(int connections, Selection selection, int growThreshold) {
+	    if (connections < 1) {
+		throw new IllegalArgumentException("Expected at least one connection per endpoint.");
+	    }
+	    this.connections = connections;
+	    this.selection = selection;
+	    this.growThreshold = growThreshold;
+	}
+
+	/**
+	 * Opens up to <code>connections</code> conduits per endpoint, one per request until all are open.
+	 */
+	public static Striping fixed(int connections, Selection selection) {
+	    return new Striping(connections, selection, 0);
+	}
+
+	/**
+	 * Opens a new conduit, up to <code>maxConnections</code>, only when the least loaded conduit of the endpoint
+	 * has <code>growThreshold</code> or more requests in flight.
+	 */
+	public static Striping adaptive(int maxConnections, int growThreshold) {
+	    return new Striping(maxConnections, Selection.LEAST_IN_FLIGHT, growThreshold);
+	}
     }
 
-    private final static class TimedConduit {
+    /**
+     * The bounds of the pool.
+     */
+    public static class Eviction {
+
+	/**
+	 * Up to 10000 connections, closed after 5 minutes idle.
+	 */
+	public static final Eviction defaults = lru(10000, 5, TimeUnit.MINUTES);
 
-	private final Conduit conduit;
-	private long touchTime;
+	private final long maxConnections;
+	private final long idleNanos;
+	private final long checkNanos;
 
-	TimedConduit(Conduit conduit) {
-	    this.conduit = conduit;
-	    this.touchTime = System.currentTimeMillis();
+	private Eviction(long maxConnections, long idleNanos) {
+	    if (maxConnections < 1 || idleNanos <= 0) {
+		throw new IllegalArgumentException("Expected positive bounds.");
+	    }
+	    this.maxConnections = maxConnections;
+	    this.idleNanos = idleNanos;
+	    // an endpoint lives at most a quarter of its idle time longer
+	    this.checkNanos = Math.max(idleNanos / 4, TimeUnit.MILLISECONDS.toNanos(100));
 	}
-	
-	void tick() {
-	    touchTime = System.currentTimeMillis();
+
+	/**
+	 * Closes the least recently used endpoints over <code>maxConnections</code> (counting every possible stripe),
+	 * and the endpoints idle for longer than <code>idle</code>.
+	 */
+	public static Eviction lru(long maxConnections, long idle, TimeUnit unit) {
+	    return new Eviction(maxConnections, unit.toNanos(idle));
 	}
     }
 
-    static class EvictionWorker extends Thread {
+    /**
+     * The conduits of a <code>host:port</code>.
+     * <p>
+     * One stripe is opened at a time, the callers needing one meanwhile share it. It connects outside of the lock and
+     * is published under it, unless the endpoint was closed meanwhile: it is then closed and the callers get
+     * <code>null</code>, to retry through the pool.
+     */
+    private final class Endpoint {
+
+	private final String url;
+	private final AtomicReferenceArray<PooledConduit> conduits;
+	private final AtomicInteger next = new AtomicInteger();
+	private final AtomicReference<CompletableFuture<Conduit>> opening = new AtomicReference<>();
 
-	private static final Logger log = LoggerFactory.getLogger(EvictionWorker.class);
+	// published after its conduit
+	private volatile int opened = 0;
+	// guarded by this
+	private boolean closed = false;
 
-	boolean active = true;
-	private final Map<String, TimedConduit> pool;
+	Endpoint(String url) {
+	    this.url = url;
+	    this.conduits = new AtomicReferenceArray<>(striping.connections);
+	}
+
+	/**
+	 * A conduit, opened by the caller when due. <code>null</code> once the endpoint is closed.
+	 */
+	Conduit select() {
+	    final int size = opened;
+	    if (size == 0) {
+		return join(open(0, null));
+	    }
+	    final PooledConduit conduit = pick(size);
+	    if (!conduit.isOpen()) {
+		return join(open(size, conduit));
+	    }
+	    if (size < striping.connections && conduit.getInFlight() >= striping.growThreshold) {
+		return join(open(size, null));
+	    }
+	    return conduit;
+	}
 
-	public EvictionWorker(Map<String, TimedConduit> pool) {
-	    this.pool = pool;
-	    this.setName("EvictionWorker");
+	/**
+	 * Like {@link #select()}, completing once a stripe due to be opened is connected. A stripe due to be added is
+	 * opened in the background.
+	 */
+	CompletableFuture<Conduit> selectAsync() {
+	    final int size = opened;
+	    if (size == 0) {
+		return open(0, null);
+	    }
+	    final PooledConduit conduit = pick(size);
+	    if (!conduit.isOpen()) {
+		return open(size, conduit);
+	    }
+	    if (size < striping.connections && conduit.getInFlight() >= striping.growThreshold
+		    && opening.get() == null) {
+		open(size, null).exceptionally(e -> {
+		    log.warn("Cannot open a conduit to '" + url + "'.", e);
+		    return null;
+		});
+	    }
+	    return CompletableFuture.completedFuture(conduit);
+	}
+
+	private PooledConduit pick(int size) {
+	    if (striping.selection == Selection.ROUND_ROBIN) {
+		return conduits.get((next.getAndIncrement() & Integer.MAX_VALUE) % size);
+	    }
+	    return leastInFlight(size);
 	}
 
-	@Override
-	public void run() {
-	    while (active) {
-		final long now = System.currentTimeMillis();
-		for (Entry<String, TimedConduit> entry : pool.entrySet()) {
-		    if (now - entry.getValue().touchTime > 5 * 60 * 1000) {
-			try {
-			    final TimedConduit timedConduit = pool.remove(entry.getKey());
-			    timedConduit.conduit.close();
-			} catch (Exception e) {
-			    log.error("Cannot close.", e);
-			}
-		    }
+	private PooledConduit leastInFlight(int size) {
+	    PooledConduit least = conduits.get(0);
+	    int min = least.getInFlight();
+	    for (int i = 1; i < size && min > 0; i++) {
+		final PooledConduit candidate = conduits.get(i);
+		final int inFlight = candidate.getInFlight();
+		if (inFlight < min) {
+		    least = candidate;
+		    min = inFlight;
 		}
+	    }
+	    return least;
+	}
+
+	/**
+	 * Opens a stripe in place of the closed one, or a new one when <code>closed</code> is <code>null</code>, the
+	 * endpoint having <code>size</code> stripes. The endpoint is dropped from the pool when the conduit cannot be
+	 * opened and no other stripe is open.
+	 */
+	private CompletableFuture<Conduit> open(int size, PooledConduit closed) {
+	    final CompletableFuture<Conduit> future = new CompletableFuture<>();
+	    while (!opening.compareAndSet(null, future)) {
+		final CompletableFuture<Conduit> ongoing = opening.get();
+		if (ongoing != null) {
+		    return ongoing;
+		}
+	    }
+	    final int slot = closed == null ? size : indexOf(closed);
+	    if (isClosed() || (closed == null ? opened != size : slot < 0)) {
+		// closed, or opened meanwhile
+		opening.set(null);
+		future.complete(isClosed() ? null : pick(opened));
+		return future;
+	    }
+	    final CompletionStage<? extends Conduit> connecting;
+	    try {
+		connecting = factory.newConduitAsync(url);
+	    } catch (RuntimeException e) {
+		failed(future, e);
+		return future;
+	    }
+	    connecting.whenComplete((conduit, e) -> {
+		if (e == null) {
+		    future.complete(publish(slot, PooledConduit.of(ConduitPool.this, url, conduit)));
+		} else {
+		    failed(future, e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+		}
+	    });
+	    return future;
+	}
+
+	private void failed(CompletableFuture<Conduit> future, Throwable e) {
+	    opening.set(null);
+	    if (!isOpen()) {
+		pool.asMap().remove(url, this);
+	    }
+	    future.completeExceptionally(e);
+	}
+
+	private synchronized PooledConduit publish(int slot, PooledConduit conduit) {
+	    opening.set(null);
+	    if (closed) {
+		conduit.closeDelegate();
+		return null;
+	    }
+	    final PooledConduit replaced = conduits.getAndSet(slot, conduit);
+	    if (replaced != null) {
+		replaced.closeDelegate();
+	    } else {
+		opened = slot + 1;
+	    }
+	    return conduit;
+	}
+
+	private Conduit join(CompletableFuture<Conduit> conduit) {
+	    try {
+		return conduit.join();
+	    } catch (CompletionException e) {
+		if (e.getCause() instanceof RuntimeException) {
+		    throw (RuntimeException) e.getCause();
+		}
+		throw new IllegalStateException("Cannot open a conduit to '" + url + "'.", e.getCause());
+	    }
+	}
+
+	private int indexOf(PooledConduit conduit) {
+	    for (int i = 0; i < opened; i++) {
+		if (conduits.get(i) == conduit) {
+		    return i;
+		}
+	    }
+	    return -1;
+	}
+
+	private boolean isOpen() {
+	    for (int i = 0; i < opened; i++) {
+		if (conduits.get(i).isOpen()) {
+		    return true;
+		}
+	    }
+	    return false;
+	}
+
+	private synchronized boolean isClosed() {
+	    return closed;
+	}
+
+	synchronized void close() {
+	    closed = true;
+	    for (int i = 0; i < opened; i++) {
 		try {
-		    Thread.sleep(5000);
-		} catch (InterruptedException e) {
-		    log.error("Unexpected interruption.", e);
-		    Thread.interrupted(); // clean interrupt state
+		    conduits.get(i).closeDelegate();
+		} catch (Exception e) {
+		    log.error("Cannot close.", e);
 		}
 	    }
 	}
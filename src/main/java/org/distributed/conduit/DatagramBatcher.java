@@ -0,0 +1,141 @@
+package org.distributed.conduit;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.PromiseNotifier;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Packs the frames written to a datagram channel between two flushes into as few datagrams as possible.
+ * <p>
+ * Frames to the same recipient are copied, in order, into a pooled buffer of at most <code>budget</code> bytes. A frame
+ * not fitting the budget goes alone in its datagram. {@link DatagramToByteTransfer} unpacks them. A frame write
+ * completes when its datagram is written.
+ */
+public class DatagramBatcher extends ChannelOutboundHandlerAdapter {
+
+    /**
+     * Fits the minimum IPv6 MTU, IP and UDP headers included.
+     */
+    public static final int DEFAULT_BUDGET = 1200;
+
+    private final int budget;
+
+    // by recipient, null for the remote address of the channel, only accessed from the event loop
+    private final Map<SocketAddress, Batch> batches = new LinkedHashMap<>();
+
+    public DatagramBatcher() {
+	this(DEFAULT_BUDGET);
+    }
+
+    public DatagramBatcher(int budget) {
+	this.budget = budget;
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+	final ByteBuf frame;
+	final InetSocketAddress recipient;
+	if (msg instanceof DatagramPacket) {
+	    frame = ((DatagramPacket) msg).content();
+	    recipient = ((DatagramPacket) msg).recipient();
+	} else if (msg instanceof ByteBuf) {
+	    frame = (ByteBuf) msg;
+	    recipient = null;
+	} else {
+	    ctx.write(msg, promise);
+	    return;
+	}
+
+	Batch batch = batches.get(recipient);
+	if (batch != null && batch.buffer.readableBytes() + frame.readableBytes() > budget) {
+	    batches.remove(recipient).write(ctx);
+	    batch = null;
+	}
+	if (frame.readableBytes() >= budget) {
+	    ctx.write(msg, promise);
+	    return;
+	}
+	if (batch == null) {
+	    batch = new Batch(ctx.alloc().ioBuffer(budget), recipient);
+	    batches.put(recipient, batch);
+	}
+	batch.buffer.writeBytes(frame, frame.readerIndex(), frame.readableBytes());
+	batch.promises.add(promise);
+	ReferenceCountUtil.release(msg);
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception {
+	for (Batch batch : batches.values()) {
+	    batch.write(ctx);
+	}
+	batches.clear();
+	ctx.flush();
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+	discard(new IOException("Channel closed."));
+	ctx.close(promise);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+	discard(new IOException("Channel closed."));
+    }
+
+    private void discard(Throwable cause) {
+	for (Batch batch : batches.values()) {
+	    batch.buffer.release();
+	    for (ChannelPromise promise : batch.promises) {
+		promise.tryFailure(cause);
+	    }
+	}
+	batches.clear();
+    }
+
+    private static class Batch {
+
+	final ByteBuf buffer;
+	final InetSocketAddress recipient;
+	final List<ChannelPromise> promises = new ArrayList<>();
+
+	Batch(ByteBuf buffer, InetSocketAddress recipient) {
+	    this.buffer = buffer;
+	    this.recipient = recipient;
+	}
+
+	void write(ChannelHandlerContext ctx) {
+	    final Object datagram = recipient == null ? buffer : new DatagramPacket(buffer, recipient);
+	    if (promises.size() == 1) {
+		ctx.write(datagram, promises.get(0));
+		return;
+	    }
+	    final List<ChannelPromise> notified = new ArrayList<>(promises.size());
+	    for (ChannelPromise promise : promises) {
+		if (!promise.isVoid()) {
+		    notified.add(promise);
+		}
+	    }
+	    if (notified.isEmpty()) {
+		ctx.write(datagram, ctx.voidPromise());
+	    } else {
+		ctx.write(datagram).addListener(
+			new PromiseNotifier<Void, ChannelFuture>(notified.toArray(new ChannelPromise[0])));
+	    }
+	}
+    }
+}
@@ -6,15 +6,20 @@ import io.netty.handler.codec.MessageToMessageDecoder;
 
 import java.util.List;
 
+/**
+ * Reads the transfers packed in a datagram (see {@link DatagramBatcher}), sharing its content. A truncated transfer
+ * ends the datagram.
+ */
 public class DatagramToByteTransfer extends MessageToMessageDecoder<DatagramPacket> {
 
     @Override
     protected void decode(ChannelHandlerContext ctx, DatagramPacket msg, List<Object> out) throws Exception {
-	final ByteTransfer transfer = ByteTransfer.fromByteBuf(msg.content());
-	if (transfer != null) {
-	    transfer.setSenderHostname(msg.sender().getAddress().getHostAddress());
+	final String senderHostname = msg.sender().getAddress().getHostAddress();
+	final String receiverHostname = msg.recipient().getAddress().getHostAddress();
+	for (ByteTransfer transfer; (transfer = ByteTransfer.fromByteBuf(msg.content())) != null;) {
+	    transfer.setSenderHostname(senderHostname);
 	    transfer.setSenderPort(msg.sender().getPort());
-	    transfer.setReceiverHostname(msg.recipient().getAddress().getHostAddress());
+	    transfer.setReceiverHostname(receiverHostname);
 	    transfer.setReceiverPort(msg.recipient().getPort());
 	    out.add(transfer);
 	}
@@ -0,0 +1,292 @@
+package org.distributed.conduit;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandler;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelPipeline;
+import io.netty.util.ReferenceCountUtil;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Where the handler of a server runs.
+ * <p>
+ * By default ({@link #inline}) it runs on the event loop of the channel, which suits handlers answering in a few
+ * microseconds. An ordered stage runs it on a pool of workers instead, so a slow request does not stall the other
+ * channels of its event loop. The transfers of a same key are handled one at a time, in the order they were read. The
+ * default key is the peer: the channel for TCP, the sender address for UDP.
+ * <p>
+ * At most <code>maxQueued</code> transfers wait for a worker, across all the channels of the stage. Beyond, the
+ * {@link Rejection} applies.
+ */
+public class ExecutionStage {
+
+    /**
+     * What happens to transfers read while the stage is full.
+     */
+    public enum Rejection {
+	/**
+	 * The transfer is discarded, its request times out on the caller side.
+	 */
+	DROP,
+	/**
+	 * The transfer is queued anyway and the channel stops reading until half the queue drained. TCP peers are
+	 * pushed back, UDP peers see their datagrams dropped by the kernel.
+	 */
+	PAUSE_READS
+    }
+
+    /**
+     * The handler runs on the event loop.
+     */
+    public static final ExecutionStage inline = new ExecutionStage(null, 0, Rejection.DROP, transfer -> null);
+
+    // tasks run per lane before letting the other lanes use the worker
+    private static final int LANE_BATCH = 64;
+
+    private final Executor workers;
+    private final int maxQueued;
+    private final Rejection rejection;
+    private final Function<? super ByteTransfer, ?> key;
+
+    private final ConcurrentHashMap<Object, Lane> lanes = new ConcurrentHashMap<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+    private final Queue<Channel> paused = new ConcurrentLinkedQueue<>();
+
+    private ExecutionStage(Executor workers, int maxQueued, Rejection rejection,
+	    Function<? super ByteTransfer, ?> key) {
+	this.workers = workers;
+	this.maxQueued = maxQueued;
+	this.rejection = rejection;
+	this.key = key;
+    }
+
+    /**
+     * A stage running the handler on the given workers, ordered by peer. The workers are not shut down by the stage.
+     */
+    public static ExecutionStage ordered(Executor workers, int maxQueued, Rejection rejection) {
+	if (maxQueued < 1) {
+	    throw new IllegalArgumentException("Expected at least one queued transfer.");
+	}
+	return new ExecutionStage(workers, maxQueued, rejection, transfer -> null);
+    }
+
+    /**
+     * A stage like this one, ordering the transfers by the given key instead of the peer. A <code>null</code> key
+     * falls back to the peer.
+     */
+    public ExecutionStage orderedBy(Function<? super ByteTransfer, ?> key) {
+	if (isInline()) {
+	    throw new IllegalStateException("Inline handlers always run in order.");
+	}
+	return new ExecutionStage(workers, maxQueued, rejection, key);
+    }
+
+    public boolean isInline() {
+	return workers == null;
+    }
+
+    /**
+     * The number of transfers waiting for or being handled by a worker.
+     */
+    public int getQueued() {
+	return queued.get();
+    }
+
+    /**
+     * The number of transfers dropped, the stage being full.
+     */
+    public long getRejected() {
+	return rejected.sum();
+    }
+
+    /**
+     * Runs the given handler of the pipeline on this stage.
+     */
+    void install(ChannelPipeline pipeline, ChannelInboundHandler handler) {
+	if (!isInline() && handler != null) {
+	    pipeline.addBefore(pipeline.context(handler).name(), "execution-stage", new Dispatcher(handler));
+	}
+    }
+
+    private Object keyOf(ByteTransfer transfer, Channel channel) {
+	final Object custom = key.apply(transfer);
+	if (custom != null) {
+	    return custom;
+	}
+	return transfer.getSenderHostname() == null ? channel : transfer.getSenderHostname() + ':'
+		+ transfer.getSenderPort();
+    }
+
+    private boolean admit(Channel channel) {
+	if (queued.incrementAndGet() <= maxQueued) {
+	    return true;
+	}
+	if (rejection == Rejection.DROP) {
+	    queued.decrementAndGet();
+	    rejected.increment();
+	    return false;
+	}
+	ReadPause.pause(channel, this);
+	paused.add(channel);
+	resumeIfDrained(); // the queue may have drained meanwhile
+	return true;
+    }
+
+    private void done() {
+	queued.decrementAndGet();
+	resumeIfDrained();
+    }
+
+    private void resumeIfDrained() {
+	if (!paused.isEmpty() && queued.get() <= maxQueued / 2) {
+	    for (Channel channel; (channel = paused.poll()) != null;) {
+		ReadPause.resume(channel, this);
+	    }
+	}
+    }
+
+    private void execute(Object key, Delivery delivery) {
+	final boolean[] start = new boolean[1];
+	final Lane lane = lanes.compute(key, (k, current) -> {
+	    final Lane existing = current == null ? new Lane(k) : current;
+	    start[0] = current == null;
+	    existing.deliveries.add(delivery);
+	    return existing;
+	});
+	if (start[0]) {
+	    try {
+		workers.execute(lane);
+	    } catch (RejectedExecutionException e) {
+		abandon(lane);
+		throw e;
+	    }
+	}
+    }
+
+    // the workers rejected the lane, after a shutdown for instance: its transfers are released
+    private void abandon(Lane lane) {
+	final List<Delivery> pending = new ArrayList<>();
+	lanes.computeIfPresent(lane.key, (k, current) -> {
+	    if (current != lane) {
+		return current;
+	    }
+	    pending.addAll(lane.deliveries);
+	    lane.deliveries.clear();
+	    return null;
+	});
+	for (Delivery delivery : pending) {
+	    ReferenceCountUtil.release(delivery.msg);
+	    done();
+	}
+    }
+
+    /**
+     * The transfers of a key, run one at a time.
+     */
+    private final class Lane implements Runnable {
+
+	final Object key;
+	// only modified while computing the lane in the map
+	final ArrayDeque<Delivery> deliveries = new ArrayDeque<>();
+
+	Lane(Object key) {
+	    this.key = key;
+	}
+
+	@Override
+	public void run() {
+	    for (int i = 0; i < LANE_BATCH; i++) {
+		final Delivery[] next = new Delivery[1];
+		lanes.computeIfPresent(key, (k, lane) -> {
+		    next[0] = lane.deliveries.poll();
+		    return next[0] == null ? null : lane;
+		});
+		if (next[0] == null) {
+		    return;
+		}
+		try {
+		    next[0].run();
+		} finally {
+		    done();
+		}
+	    }
+	    try {
+		workers.execute(this); // more to do, after the other lanes
+	    } catch (RejectedExecutionException e) {
+		abandon(this);
+	    }
+	}
+    }
+
+    /**
+     * A transfer for the handler, invoked with its own context.
+     */
+    private static final class Delivery implements Runnable {
+
+	final ChannelInboundHandler handler;
+	final ChannelHandlerContext target;
+	final ChannelHandlerContext ctx;
+	final Object msg;
+
+	Delivery(ChannelInboundHandler handler, ChannelHandlerContext target, ChannelHandlerContext ctx, Object msg) {
+	    this.handler = handler;
+	    this.target = target;
+	    this.ctx = ctx;
+	    this.msg = msg;
+	}
+
+	@Override
+	public void run() {
+	    try {
+		handler.channelRead(target, msg);
+	    } catch (Throwable e) {
+		ctx.fireExceptionCaught(e); // back on the event loop
+	    }
+	}
+    }
+
+    /**
+     * Hands the transfers of a channel to the workers, which invoke the handler with its own context.
+     */
+    private final class Dispatcher extends ChannelInboundHandlerAdapter {
+
+	private final ChannelInboundHandler handler;
+	private ChannelHandlerContext target;
+
+	Dispatcher(ChannelInboundHandler handler) {
+	    this.handler = handler;
+	}
+
+	@Override
+	public void handlerAdded(ChannelHandlerContext ctx) {
+	    target = ctx.pipeline().context(handler);
+	}
+
+	@Override
+	public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+	    if (!(msg instanceof ByteTransfer)) {
+		ctx.fireChannelRead(msg);
+		return;
+	    }
+	    if (!admit(ctx.channel())) {
+		ReferenceCountUtil.release(msg);
+		return;
+	    }
+	    // released by the stage if rejected by the workers
+	    execute(keyOf((ByteTransfer) msg, ctx.channel()), new Delivery(handler, target, ctx, msg));
+	}
+    }
+}
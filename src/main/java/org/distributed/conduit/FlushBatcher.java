@@ -0,0 +1,118 @@
+package org.distributed.conduit;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces the flushes of a channel according to a {@link FlushPolicy}.
+ * <p>
+ * It must be the first handler of the pipeline, so it sees both the reads (replies written while reading are flushed
+ * once the read loop completes) and the encoded writes.
+ */
+class FlushBatcher extends ChannelDuplexHandler {
+
+    private final FlushPolicy policy;
+
+    private int pendingMessages = 0;
+    private long pendingBytes = 0;
+    private boolean reading = false;
+    private boolean scheduled = false;
+
+    private ChannelHandlerContext ctx;
+    private final Runnable flushTask = () -> {
+	scheduled = false;
+	flushNow(ctx);
+    };
+
+    FlushBatcher(FlushPolicy policy) {
+	this.policy = policy;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+	this.ctx = ctx;
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+	pendingMessages++;
+	pendingBytes += sizeOf(msg);
+	ctx.write(msg, promise);
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) {
+	if (pendingMessages >= policy.getMaxMessages() || pendingBytes >= policy.getMaxBytes()) {
+	    flushNow(ctx);
+	} else if (!reading && !scheduled) {
+	    // writes from other threads reach here one task at a time, flush after the ones already queued
+	    scheduled = true;
+	    if (policy.getMaxDelayNanos() > 0) {
+		ctx.executor().schedule(flushTask, policy.getMaxDelayNanos(), TimeUnit.NANOSECONDS);
+	    } else {
+		ctx.executor().execute(flushTask);
+	    }
+	}
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+	reading = true;
+	ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) {
+	reading = false;
+	flushNow(ctx);
+	ctx.fireChannelReadComplete();
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) {
+	if (!ctx.channel().isWritable()) {
+	    // let the outbound buffer drain
+	    flushNow(ctx);
+	}
+	ctx.fireChannelWritabilityChanged();
+    }
+
+    @Override
+    public void disconnect(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+	flushNow(ctx);
+	ctx.disconnect(promise);
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+	flushNow(ctx);
+	ctx.close(promise);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+	flushNow(ctx);
+    }
+
+    private void flushNow(ChannelHandlerContext ctx) {
+	if (pendingMessages > 0) {
+	    pendingMessages = 0;
+	    pendingBytes = 0;
+	    ctx.flush();
+	}
+    }
+
+    private static long sizeOf(Object msg) {
+	if (msg instanceof ByteBuf) {
+	    return ((ByteBuf) msg).readableBytes();
+	} else if (msg instanceof ByteBufHolder) {
+	    return ((ByteBufHolder) msg).content().readableBytes();
+	}
+	return 0;
+    }
+}
@@ -0,0 +1,56 @@
+package org.distributed.conduit;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides when the writes of a channel are flushed to the socket.
+ * <p>
+ * Pending writes are flushed as soon as either {@link #getMaxMessages()} or {@link #getMaxBytes()} is reached, and at
+ * the latest after {@link #getMaxDelayNanos()}. A zero delay flushes once per event loop tick, that is, after the
+ * writes already queued in the event loop (or the reads of the current read loop) have been processed.
+ */
+public class FlushPolicy {
+
+    /**
+     * Every write is flushed on its own.
+     */
+    public static final FlushPolicy immediate = new FlushPolicy(1, 1, 0);
+
+    /**
+     * Writes are flushed once per event loop tick, or every 256 messages / 64KB.
+     */
+    public static final FlushPolicy batched = new FlushPolicy(256, 64 * 1024, 0);
+
+    private final int maxMessages;
+    private final int maxBytes;
+    private final long maxDelayNanos;
+
+    private FlushPolicy(int maxMessages, int maxBytes, long maxDelayNanos) {
+	this.maxMessages = maxMessages;
+	this.maxBytes = maxBytes;
+	this.maxDelayNanos = maxDelayNanos;
+    }
+
+    public static FlushPolicy configurable(int maxMessages, int maxBytes, long maxDelay, TimeUnit unit) {
+	if (maxMessages < 1 || maxBytes < 1 || maxDelay < 0) {
+	    throw new IllegalArgumentException("Expected positive thresholds and a non-negative delay.");
+	}
+	return new FlushPolicy(maxMessages, maxBytes, unit.toNanos(maxDelay));
+    }
+
+    public int getMaxMessages() {
+	return maxMessages;
+    }
+
+    public int getMaxBytes() {
+	return maxBytes;
+    }
+
+    public long getMaxDelayNanos() {
+	return maxDelayNanos;
+    }
+
+    boolean isImmediate() {
+	return maxMessages == 1;
+    }
+}
@@ -0,0 +1,323 @@
+package org.distributed.conduit;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.distributed.metrics.Histogram;
+
+/**
+ * Lock-free table correlating the requests of a conduit with their answers.
+ * <p>
+ * Ids are taken from an atomic sequence and index a power of two ring of slots (<code>id & mask</code>). A slot is
+ * only reused once its request is done, so an id wrapping around the ring never overwrites a pending request, and a
+ * late answer never completes a newer request sharing its slot.
+ * <p>
+ * At most <code>capacity</code> requests are in flight, further requests wait for a free slot: blocked callers on a
+ * semaphore, asynchronous requests in a queue. Requests not answered within the timeout, waiting for a slot included,
+ * fail with a {@link TimeoutException}, freeing their slot.
+ * <p>
+ * Given a histogram, it records the round trip of every answered request, from the time it got a slot.
+ */
+class InFlightRequests {
+
+    static final int DEFAULT_CAPACITY = 4096;
+
+    private final AtomicInteger sequence = new AtomicInteger();
+    private final AtomicReferenceArray<Request<?>> slots;
+    private final int mask;
+
+    private final Semaphore window;
+    private final int capacity;
+    private final long timeoutNanos;
+    private final LongAdder timedOut = new LongAdder();
+    private final Queue<Queued<?>> queued = new ConcurrentLinkedQueue<>();
+    private final Histogram latency;
+
+    /**
+     * A table of at most <code>capacity</code> requests in flight. A non-positive timeout never times out.
+     */
+    InFlightRequests(int capacity, long timeout, TimeUnit unit) {
+	this(capacity, timeout, unit, null);
+    }
+
+    /**
+     * A table recording the round trips in the given histogram, if not <code>null</code>.
+     */
+    InFlightRequests(int capacity, long timeout, TimeUnit unit, Histogram latency) {
+	if (capacity <= 0) {
+	    throw new IllegalArgumentException("Capacity must be positive.");
+	}
+	final int size = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+	this.slots = new AtomicReferenceArray<>(size);
+	this.mask = size - 1;
+	this.window = new Semaphore(capacity);
+	this.capacity = capacity;
+	this.timeoutNanos = unit.toNanos(timeout);
+	this.latency = latency;
+    }
+
+    /**
+     * Registers a new request and returns it. The request id is the one to send along the transfer, its answer is read
+     * by the <code>decoder</code>.
+     * <p>
+     * If the window is full it waits for a request to be done, at most the timeout, unless <code>block</code> is
+     * <code>false</code>.
+     *
+     * @throws IllegalStateException
+     *             if the window is full and cannot block, or stays full until the timeout.
+     */
+    <T> Request<T> register(boolean block, Function<ByteBuf, T> decoder) {
+	final long deadline = System.nanoTime() + timeoutNanos;
+	if (block && timeoutNanos <= 0) {
+	    window.acquireUninterruptibly();
+	} else if (block) {
+	    acquire();
+	} else if (!window.tryAcquire()) {
+	    throw new IllegalStateException("Too many requests in flight.");
+	}
+
+	final Request<T> request = new Request<>(decoder);
+	slot(request, deadline);
+	return request;
+    }
+
+    private void acquire() {
+	try {
+	    if (window.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS)) {
+		return;
+	    }
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    throw new IllegalStateException("Interrupted while waiting for a request to be done.", e);
+	}
+	timedOut.increment();
+	throw new IllegalStateException("Too many requests in flight for "
+		+ TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + "ms.");
+    }
+
+    /**
+     * Registers a new request without ever blocking, and returns it. The request is passed to <code>send</code> once
+     * it has an id: right away, or by the thread freeing a slot if the window is full. The timeout starts right away,
+     * a request still waiting for a slot at the timeout fails.
+     */
+    <T> Request<T> registerAsync(Function<ByteBuf, T> decoder, Consumer<Request<T>> send) {
+	final Queued<T> next = new Queued<>(new Request<>(decoder), send, System.nanoTime() + timeoutNanos);
+	if (queued.isEmpty() && window.tryAcquire()) {
+	    next.start();
+	    return next.request;
+	}
+	queued.add(next);
+	// a request started meanwhile ignores its timeout
+	if (timeoutNanos > 0) {
+	    next.timeout = Timers.wheel.newTimeout(next, timeoutNanos, TimeUnit.NANOSECONDS);
+	}
+	drain();
+	return next.request;
+    }
+
+    // the request times out at the deadline, if there is a timeout
+    private void slot(Request<?> request, long deadline) {
+	// a permit guarantees a free slot, but not that this thread wins it first
+	do {
+	    // non-negative, negative ids stand for transfers without answer
+	    request.id = sequence.getAndIncrement() & Integer.MAX_VALUE;
+	} while (!slots.compareAndSet(request.id & mask, null, request));
+	if (latency != null) {
+	    request.start = System.nanoTime();
+	}
+	if (timeoutNanos > 0) {
+	    request.timeout = Timers.wheel.newTimeout(request, Math.max(0, deadline - System.nanoTime()),
+		    TimeUnit.NANOSECONDS);
+	}
+    }
+
+    // starts the queued requests the window has room for, in order
+    private void drain() {
+	while (!queued.isEmpty() && window.tryAcquire()) {
+	    final Queued<?> next = queued.poll();
+	    if (next == null) {
+		window.release();
+	    } else {
+		next.start();
+	    }
+	}
+    }
+
+    /**
+     * Completes the request identified by <code>id</code>, if still in flight, decoding the answer in place. A request
+     * whose answer cannot be decoded fails.
+     */
+    boolean complete(int id, ByteBuf answer) {
+	final Request<?> request = remove(id);
+	if (request == null) {
+	    return false;
+	}
+	if (latency != null) {
+	    latency.record(System.nanoTime() - request.start);
+	}
+	return request.decode(answer);
+    }
+
+    /**
+     * Fails the request identified by <code>id</code>, if still in flight.
+     */
+    boolean fail(int id, Throwable cause) {
+	final Request<?> request = remove(id);
+	return request != null && request.completeExceptionally(cause);
+    }
+
+    /**
+     * Fails every request in flight.
+     */
+    void failAll(Throwable cause) {
+	for (Queued<?> next; (next = queued.poll()) != null;) {
+	    next.request.completeExceptionally(cause);
+	}
+	for (int i = 0; i < slots.length(); i++) {
+	    final Request<?> request = slots.getAndSet(i, null);
+	    if (request != null) {
+		done(request);
+		request.completeExceptionally(cause);
+	    }
+	}
+    }
+
+    /**
+     * The number of requests in flight.
+     */
+    int size() {
+	return capacity - window.availablePermits();
+    }
+
+    /**
+     * The (estimated) number of callers waiting for a free slot.
+     */
+    int waiting() {
+	return window.getQueueLength() + queued.size();
+    }
+
+    /**
+     * The number of requests which timed out.
+     */
+    long timedOut() {
+	return timedOut.sum();
+    }
+
+    private Request<?> remove(int id) {
+	if (id < 0) {
+	    return null;
+	}
+	final int slot = id & mask;
+	final Request<?> request = slots.get(slot);
+	if (request != null && request.id == id && slots.compareAndSet(slot, request, null)) {
+	    done(request);
+	    return request;
+	}
+	return null;
+    }
+
+    private void done(Request<?> request) {
+	if (request.timeout != null) {
+	    request.timeout.cancel();
+	}
+	window.release();
+	drain();
+    }
+
+    /**
+     * A request waiting for a slot, and for its timeout meanwhile.
+     */
+    private class Queued<T> implements TimerTask {
+
+	final Request<T> request;
+	final Consumer<Request<T>> send;
+	final long deadline;
+	volatile Timeout timeout;
+
+	Queued(Request<T> request, Consumer<Request<T>> send, long deadline) {
+	    this.request = request;
+	    this.send = send;
+	    this.deadline = deadline;
+	}
+
+	void start() {
+	    if (timeout != null) {
+		timeout.cancel();
+	    }
+	    try {
+		slot(request, deadline);
+		send.accept(request);
+	    } catch (RuntimeException e) {
+		fail(request.id, e);
+		request.completeExceptionally(e);
+	    }
+	}
+
+	@Override
+	public void run(Timeout timeout) {
+	    if (queued.remove(this)) {
+		timedOut.increment();
+		request.completeExceptionally(new TimeoutException("No slot within "
+			+ TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + "ms."));
+	    }
+	}
+    }
+
+    /**
+     * An in flight request.
+     * <p>
+     * It listens to its own write, failing itself if the transfer cannot be written, and to its own timeout.
+     */
+    class Request<T> extends CompletableFuture<T> implements ChannelFutureListener, TimerTask {
+
+	private final Function<ByteBuf, T> decoder;
+
+	// published by the slot CAS
+	int id;
+	long start;
+	volatile Timeout timeout;
+
+	Request(Function<ByteBuf, T> decoder) {
+	    this.decoder = decoder;
+	}
+
+	private boolean decode(ByteBuf answer) {
+	    try {
+		return complete(decoder.apply(answer));
+	    } catch (RuntimeException e) {
+		return completeExceptionally(e);
+	    }
+	}
+
+	@Override
+	public void operationComplete(ChannelFuture future) {
+	    if (!future.isSuccess()) {
+		fail(id, future.cause());
+	    }
+	}
+
+	@Override
+	public void run(Timeout timeout) {
+	    if (remove(id) == this) {
+		timedOut.increment();
+		completeExceptionally(new TimeoutException("No answer within "
+			+ TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + "ms."));
+	    }
+	}
+    }
+}
@@ -1,48 +1,53 @@
 package org.distributed.conduit;
 
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
 
+/**
+ * Creates the event loop groups of conduits and servers.
+ * <p>
+ * The provided factories use the native transport when available (see {@link Transport#best()}) and NIO otherwise.
+ */
 public interface NioGroupFactory {
 
     EventLoopGroup createParentGroup();
 
     EventLoopGroup createChildrenGroup();
 
-    public static final NioGroupFactory defau1t = new NioGroupFactory() {
-	@Override
-	public EventLoopGroup createParentGroup() {
-	    return new NioEventLoopGroup(1);
-	}
-
-	@Override
-	public EventLoopGroup createChildrenGroup() {
-	    return new NioEventLoopGroup();
-	}
-    };
-
-    public static final NioGroupFactory minimal = new NioGroupFactory() {
-	@Override
-	public EventLoopGroup createParentGroup() {
-	    return new NioEventLoopGroup(1);
-	}
-
-	@Override
-	public EventLoopGroup createChildrenGroup() {
-	    return new NioEventLoopGroup(1);
-	}
-    };
+    /**
+     * Releases a group created by this factory.
+     */
+    default void release(EventLoopGroup group) {
+	group.shutdownGracefully();
+    }
+
+    /**
+     * One group, with one event loop per core, shared by all its users in the JVM. It shuts down when the last user
+     * releases it.
+     */
+    public static final NioGroupFactory shared = new SharedGroupFactory(Transport.best(), Runtime.getRuntime()
+	    .availableProcessors());
+
+    public static final NioGroupFactory defau1t = configurable(1, 0);
+
+    public static final NioGroupFactory minimal = configurable(1, 1);
 
     public static NioGroupFactory configurable(int parentGroupSize, int childrenGroupSize) {
+	return configurable(Transport.best(), parentGroupSize, childrenGroupSize);
+    }
+
+    /**
+     * A factory of the given transport. A non-positive children group size defaults to twice the cores.
+     */
+    public static NioGroupFactory configurable(Transport transport, int parentGroupSize, int childrenGroupSize) {
 	return new NioGroupFactory() {
 	    @Override
 	    public EventLoopGroup createParentGroup() {
-		return new NioEventLoopGroup(parentGroupSize);
+		return transport.newGroup(parentGroupSize, null);
 	    }
 
 	    @Override
 	    public EventLoopGroup createChildrenGroup() {
-		return childrenGroupSize > 0 ? new NioEventLoopGroup(childrenGroupSize) : new NioEventLoopGroup();
+		return transport.newGroup(Math.max(childrenGroupSize, 0), null);
 	    }
 	};
     }
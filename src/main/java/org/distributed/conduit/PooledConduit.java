@@ -1,34 +1,112 @@
 package org.distributed.conduit;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.Future;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 public class PooledConduit implements Conduit {
 
     final String url;
+    private final ConduitPool pool;
     private final Conduit delegate;
 
-    PooledConduit(String url, Conduit delegate) {
+    private PooledConduit(ConduitPool pool, String url, Conduit delegate) {
+	this.pool = pool;
 	this.url = url;
 	this.delegate = delegate;
     }
 
+    /**
+     * A streaming conduit when the pooled one is.
+     */
+    static PooledConduit of(ConduitPool pool, String url, Conduit delegate) {
+	if (delegate instanceof StreamingConduit) {
+	    return new Streaming(pool, url, (StreamingConduit) delegate);
+	}
+	return new PooledConduit(pool, url, delegate);
+    }
+
     @Override
     public void send(Object message) {
+	pool.tick(url);
 	delegate.send(message);
     }
 
     @Override
     public <T> Future<T> send(Object message, Class<T> type) {
+	pool.tick(url);
 	return delegate.send(message, type);
     }
 
     @Override
     public <T> Future<T> send(Object message, Function<byte[], T> transformer) {
+	pool.tick(url);
 	return delegate.send(message, transformer);
     }
 
+    @Override
+    public <T> CompletionStage<T> sendAsync(Object message, Class<T> type) {
+	pool.tick(url);
+	return delegate.sendAsync(message, type);
+    }
+
+    @Override
+    public boolean isWritable() {
+	return delegate.isWritable();
+    }
+
+    @Override
+    public CompletionStage<Void> whenWritable() {
+	return delegate.whenWritable();
+    }
+
+    @Override
+    public void addWritabilityListener(Consumer<Boolean> listener) {
+	delegate.addWritabilityListener(listener);
+    }
+
+    @Override
+    public boolean isOpen() {
+	return delegate.isOpen();
+    }
+
+    @Override
+    public int getInFlight() {
+	return delegate.getInFlight();
+    }
+
+    @Override
+    public long getTimedOut() {
+	return delegate.getTimedOut();
+    }
+
+    /**
+     * No-op, the pool owns the conduit.
+     */
     @Override
     public void close() {
     }
+
+    void closeDelegate() {
+	delegate.close();
+    }
+
+    static final class Streaming extends PooledConduit implements StreamingConduit {
+
+	private final StreamingConduit streaming;
+
+	private Streaming(ConduitPool pool, String url, StreamingConduit delegate) {
+	    super(pool, url, delegate);
+	    this.streaming = delegate;
+	}
+
+	@Override
+	public <T> Future<T> stream(InputStream input, Class<T> type) throws IOException {
+	    super.pool.tick(url);
+	    return streaming.stream(input, type);
+	}
+    }
 }
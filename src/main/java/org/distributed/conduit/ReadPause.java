@@ -0,0 +1,49 @@
+package org.distributed.conduit;
+
+import io.netty.channel.Channel;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The reads of a channel paused on behalf of several owners, such as an {@link ExecutionStage} and the
+ * {@link TransferStream}s of the channel. The channel reads again once none of them holds it paused, so that an owner
+ * never resumes the reads another one paused.
+ */
+final class ReadPause {
+
+    private static final AttributeKey<Set<Object>> OWNERS = AttributeKey.valueOf(ReadPause.class, "owners");
+
+    private ReadPause() {
+    }
+
+    static void pause(Channel channel, Object owner) {
+	final Set<Object> owners = owners(channel);
+	synchronized (owners) {
+	    owners.add(owner);
+	    channel.config().setAutoRead(false);
+	}
+    }
+
+    static void resume(Channel channel, Object owner) {
+	final Set<Object> owners = owners(channel);
+	synchronized (owners) {
+	    if (owners.remove(owner) && owners.isEmpty()) {
+		channel.config().setAutoRead(true);
+	    }
+	}
+    }
+
+    private static Set<Object> owners(Channel channel) {
+	final Attribute<Set<Object>> attribute = channel.attr(OWNERS);
+	final Set<Object> owners = attribute.get();
+	if (owners != null) {
+	    return owners;
+	}
+	final Set<Object> created = new HashSet<>();
+	final Set<Object> existing = attribute.setIfAbsent(created);
+	return existing == null ? created : existing;
+    }
+}
@@ -0,0 +1,558 @@
+package org.distributed.conduit;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reliable delivery of the frames of a datagram channel, without handshake.
+ * <p>
+ * Frames are split into fragments of at most {@value #MAX_FRAGMENT} bytes, so datagrams are never fragmented by IP.
+ * Every fragment is a packet numbered per peer. Once per read loop, receivers acknowledge the packets received so far:
+ * a cumulative sequence plus a bitmap of the following {@value #WINDOW} packets (selective acknowledgment). Duplicates
+ * are dropped and frames are reassembled, in any order, before going up the pipeline.
+ * <p>
+ * Senders keep at most a congestion window of packets unacknowledged. The window grows in slow start, then by one
+ * packet per round trip, and is halved on loss. New packets are paced over the smoothed round trip time. A packet is
+ * retransmitted after the retransmission timeout (RFC 6298 estimation, Karn's rule, exponential backoff) or as soon as
+ * three later packets are acknowledged. A write completes once all its fragments are acknowledged, and fails after
+ * {@value #MAX_TRANSMISSIONS} transmissions of one of them.
+ * <p>
+ * Every sender picks a random session, so a peer restarting on the same address is never confused with the former
+ * one. Both ends of a channel must be reliable.
+ */
+class ReliableDatagramHandler extends ChannelDuplexHandler {
+
+    static final int MAX_FRAGMENT = 1200;
+
+    private static final int WINDOW = Long.SIZE;
+    private static final int MAX_FRAGMENTS = 0xFFFF;
+    private static final int MAX_TRANSMISSIONS = 10;
+
+    private static final long MIN_RTO = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long MAX_RTO = TimeUnit.SECONDS.toNanos(2);
+    private static final long INITIAL_RTO = TimeUnit.MILLISECONDS.toNanos(200);
+    private static final long TICK = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final long IDLE = TimeUnit.SECONDS.toNanos(60);
+    // packets sent back to back before pacing
+    private static final long MAX_BURST = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private static final byte DATA = 1;
+    private static final byte ACK = 2;
+
+    // type + session + base + packet + message + fragment + fragments
+    private static final int DATA_HEADER = Byte.BYTES + 4 * Integer.BYTES + 2 * Short.BYTES;
+    // type + session + cumulative + trigger + bitmap
+    private static final int ACK_LENGTH = Byte.BYTES + 3 * Integer.BYTES + Long.BYTES;
+
+    // only accessed from the event loop
+    private final Map<InetSocketAddress, Peer> peers = new HashMap<>();
+    private ChannelHandlerContext ctx;
+    private ScheduledFuture<?> tick;
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+	this.ctx = ctx;
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+	final ByteBuf frame;
+	final SocketAddress recipient;
+	if (msg instanceof DatagramPacket) {
+	    frame = ((DatagramPacket) msg).content();
+	    recipient = ((DatagramPacket) msg).recipient();
+	} else if (msg instanceof ByteBuf) {
+	    frame = (ByteBuf) msg;
+	    recipient = ctx.channel().remoteAddress();
+	} else {
+	    ctx.write(msg, promise);
+	    return;
+	}
+
+	final int fragments = Math.max(1, (frame.readableBytes() + MAX_FRAGMENT - 1) / MAX_FRAGMENT);
+	if (!(recipient instanceof InetSocketAddress)) {
+	    frame.release();
+	    promise.setFailure(new IllegalStateException("No recipient."));
+	} else if (fragments > MAX_FRAGMENTS) {
+	    frame.release();
+	    promise.setFailure(new IllegalArgumentException("Frame too large for a datagram channel."));
+	} else {
+	    peer((InetSocketAddress) recipient).enqueue(frame, fragments, promise);
+	}
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception {
+	final long now = System.nanoTime();
+	for (Peer peer : peers.values()) {
+	    peer.send(now);
+	}
+	ctx.flush();
+	scheduleTick();
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+	if (!(msg instanceof DatagramPacket)) {
+	    ctx.fireChannelRead(msg);
+	    return;
+	}
+
+	final DatagramPacket packet = (DatagramPacket) msg;
+	try {
+	    final ByteBuf content = packet.content();
+	    if (content.readableBytes() < Math.min(DATA_HEADER, ACK_LENGTH)) {
+		return; // not ours
+	    }
+	    final Peer peer = peer(packet.sender());
+	    final byte type = content.readByte();
+	    if (type == DATA && content.readableBytes() >= DATA_HEADER - Byte.BYTES) {
+		peer.receive(content, packet.recipient());
+	    } else if (type == ACK && content.readableBytes() >= ACK_LENGTH - Byte.BYTES) {
+		peer.acknowledge(content.readInt(), content.readInt(), content.readInt(), content.readLong());
+	    }
+	} finally {
+	    packet.release();
+	}
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+	for (Peer peer : peers.values()) {
+	    peer.sendAck();
+	}
+	flush(ctx);
+	ctx.fireChannelReadComplete();
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+	clear(new IOException("Channel closed."));
+	super.channelInactive(ctx);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+	clear(new IOException("Channel closed."));
+    }
+
+    private Peer peer(InetSocketAddress address) {
+	Peer peer = peers.get(address);
+	if (peer == null) {
+	    peer = new Peer(address);
+	    peers.put(address, peer);
+	}
+	return peer;
+    }
+
+    private void clear(Throwable cause) {
+	if (tick != null) {
+	    tick.cancel(false);
+	    tick = null;
+	}
+	for (Peer peer : peers.values()) {
+	    peer.clear(cause);
+	}
+	peers.clear();
+    }
+
+    private void scheduleTick() {
+	if (tick == null && !peers.isEmpty()) {
+	    tick = ctx.executor().schedule(this::onTick, TICK, TimeUnit.NANOSECONDS);
+	}
+    }
+
+    // retransmissions and idle peers
+    private void onTick() {
+	tick = null;
+	final long now = System.nanoTime();
+	for (Iterator<Peer> it = peers.values().iterator(); it.hasNext();) {
+	    final Peer peer = it.next();
+	    peer.retransmit(now);
+	    if (peer.isIdle(now)) {
+		peer.clear(new IOException("Idle."));
+		it.remove();
+	    }
+	}
+	ctx.flush();
+	scheduleTick();
+    }
+
+    private final class Peer {
+
+	private final InetSocketAddress address;
+	private long lastActivity = System.nanoTime();
+
+	// sending side
+	private final int session = ThreadLocalRandom.current().nextInt();
+	private final Queue<Packet> pending = new ArrayDeque<>();
+	private final ArrayDeque<Packet> unacked = new ArrayDeque<>();
+	private int nextPacket = 0;
+	private int nextMessage = 0;
+	private double cwnd = 2;
+	private double ssthresh = WINDOW;
+	private int recovery = 0;
+	private long srtt = -1;
+	private long rttvar = 0;
+	private long rto = INITIAL_RTO;
+	private long nextSend = 0;
+	private boolean pacing = false;
+
+	// receiving side
+	private boolean receiving = false;
+	private int peerSession;
+	private int cumulative;
+	private long received;
+	private int trigger;
+	private boolean ackPending = false;
+	private final Map<Integer, Assembly> assemblies = new HashMap<>();
+
+	Peer(InetSocketAddress address) {
+	    this.address = address;
+	}
+
+	void enqueue(ByteBuf frame, int fragments, ChannelPromise promise) {
+	    final Message message = new Message(nextMessage++, fragments, promise);
+	    for (int i = 0; i < fragments; i++) {
+		final ByteBuf fragment = frame.readRetainedSlice(Math.min(MAX_FRAGMENT, frame.readableBytes()));
+		pending.add(new Packet(message, i, fragment));
+	    }
+	    frame.release();
+	}
+
+	void send(long now) {
+	    while (!pending.isEmpty() && unacked.size() < (int) cwnd) {
+		if (nextSend - now > MAX_BURST) {
+		    schedulePacing(nextSend - now);
+		    return;
+		}
+		final Packet packet = pending.poll();
+		packet.seq = nextPacket++;
+		transmit(packet, now);
+		unacked.add(packet);
+		if (srtt > 0) {
+		    nextSend = Math.max(nextSend, now) + (long) (srtt / cwnd);
+		}
+	    }
+	}
+
+	private void schedulePacing(long delay) {
+	    if (!pacing) {
+		pacing = true;
+		ctx.executor().schedule(() -> {
+		    pacing = false;
+		    send(System.nanoTime());
+		    ctx.flush();
+		}, delay, TimeUnit.NANOSECONDS);
+	    }
+	}
+
+	private void transmit(Packet packet, long now) {
+	    final ByteBuf datagram = ctx.alloc().ioBuffer(DATA_HEADER + packet.fragment.readableBytes());
+	    datagram.writeByte(DATA);
+	    datagram.writeInt(session);
+	    datagram.writeInt(unacked.isEmpty() ? packet.seq : Math.min(unacked.peekFirst().seq, packet.seq));
+	    datagram.writeInt(packet.seq);
+	    datagram.writeInt(packet.message.id);
+	    datagram.writeShort(packet.index);
+	    datagram.writeShort(packet.message.fragments);
+	    datagram.writeBytes(packet.fragment, packet.fragment.readerIndex(), packet.fragment.readableBytes());
+	    ctx.write(new DatagramPacket(datagram, address), ctx.voidPromise());
+	    packet.sentAt = now;
+	    packet.transmissions++;
+	    lastActivity = now;
+	}
+
+	void acknowledge(int session, int cumulative, int trigger, long bitmap) {
+	    if (session != this.session) {
+		return;
+	    }
+	    final long now = System.nanoTime();
+	    lastActivity = now;
+	    final int highest = bitmap == 0 ? cumulative - 1 : cumulative + 63 - Long.numberOfLeadingZeros(bitmap);
+	    for (Iterator<Packet> it = unacked.iterator(); it.hasNext();) {
+		final Packet packet = it.next();
+		final int distance = packet.seq - cumulative;
+		if (distance < 0 || (distance < WINDOW && (bitmap >>> distance & 1) != 0)) {
+		    it.remove();
+		    if (packet.seq == trigger && packet.transmissions == 1) {
+			sample(now - packet.sentAt);
+		    }
+		    cwnd = Math.min(WINDOW, cwnd < ssthresh ? cwnd + 1 : cwnd + 1 / cwnd);
+		    packet.acknowledged();
+		} else if (highest - packet.seq >= 3 && !packet.fastRetransmitted) {
+		    packet.fastRetransmitted = true;
+		    lost(packet, false);
+		    transmit(packet, now);
+		}
+	    }
+	    send(now);
+	}
+
+	private void sample(long rtt) {
+	    if (srtt < 0) {
+		srtt = rtt;
+		rttvar = rtt / 2;
+	    } else {
+		rttvar = (3 * rttvar + Math.abs(srtt - rtt)) / 4;
+		srtt = (7 * srtt + rtt) / 8;
+	    }
+	    rto = Math.min(MAX_RTO, Math.max(MIN_RTO, srtt + Math.max(TICK, 4 * rttvar)));
+	}
+
+	// once per window of packets
+	private void lost(Packet packet, boolean timeout) {
+	    if (packet.seq - recovery >= 0) {
+		recovery = nextPacket;
+		ssthresh = Math.max(2, cwnd / 2);
+		cwnd = timeout ? 1 : ssthresh;
+	    }
+	}
+
+	void retransmit(long now) {
+	    boolean backoff = false;
+	    for (Iterator<Packet> it = unacked.iterator(); it.hasNext();) {
+		final Packet packet = it.next();
+		if (now - packet.sentAt < rto) {
+		    continue;
+		}
+		if (packet.transmissions >= MAX_TRANSMISSIONS) {
+		    it.remove();
+		    packet.failed(new IOException("Datagram not acknowledged after " + MAX_TRANSMISSIONS
+			    + " transmissions to " + address + "."));
+		} else {
+		    lost(packet, true);
+		    transmit(packet, now);
+		    backoff = true;
+		}
+	    }
+	    if (backoff) {
+		rto = Math.min(MAX_RTO, rto * 2);
+	    }
+	    send(now);
+	}
+
+	void receive(ByteBuf content, InetSocketAddress recipient) {
+	    final int session = content.readInt();
+	    final int base = content.readInt();
+	    final int seq = content.readInt();
+	    final int message = content.readInt();
+	    final int index = content.readUnsignedShort();
+	    final int fragments = content.readUnsignedShort();
+	    lastActivity = System.nanoTime();
+
+	    if (!receiving || session != peerSession) {
+		// a new sender on this address
+		releaseAssemblies();
+		receiving = true;
+		peerSession = session;
+		cumulative = base;
+		received = 0;
+	    } else if (base - cumulative > 0) {
+		// the sender gave up on the packets before base
+		final int shift = base - cumulative;
+		received = shift >= WINDOW ? 0 : received >>> shift;
+		cumulative = base;
+		advance();
+		dropAssemblies(base);
+	    }
+
+	    ackPending = true;
+	    trigger = seq;
+	    final int distance = seq - cumulative;
+	    if (distance < 0 || distance >= WINDOW || (received >>> distance & 1) != 0 || index >= fragments) {
+		return; // duplicate or out of window
+	    }
+	    received |= 1L << distance;
+	    advance();
+
+	    if (fragments == 1) {
+		ctx.fireChannelRead(new DatagramPacket(content.readRetainedSlice(content.readableBytes()), recipient,
+			address));
+		return;
+	    }
+	    // the fragments of a frame are sent in a row
+	    Assembly assembly = assemblies.get(message);
+	    if (assembly == null) {
+		assembly = new Assembly(seq - index, fragments);
+		assemblies.put(message, assembly);
+	    } else if (!assembly.accepts(seq - index, fragments, index)) {
+		return; // not a fragment of this frame, or already received
+	    }
+	    if (assembly.add(index, content.readRetainedSlice(content.readableBytes()))) {
+		assemblies.remove(message);
+		ctx.fireChannelRead(new DatagramPacket(assembly.compose(), recipient, address));
+	    }
+	}
+
+	private void advance() {
+	    while ((received & 1) != 0) {
+		received >>>= 1;
+		cumulative++;
+	    }
+	}
+
+	void sendAck() {
+	    if (ackPending) {
+		ackPending = false;
+		final ByteBuf ack = ctx.alloc().ioBuffer(ACK_LENGTH);
+		ack.writeByte(ACK);
+		ack.writeInt(peerSession);
+		ack.writeInt(cumulative);
+		ack.writeInt(trigger);
+		ack.writeLong(received);
+		ctx.write(new DatagramPacket(ack, address), ctx.voidPromise());
+	    }
+	}
+
+	boolean isIdle(long now) {
+	    return pending.isEmpty() && unacked.isEmpty() && now - lastActivity > IDLE;
+	}
+
+	void clear(Throwable cause) {
+	    for (Packet packet : unacked) {
+		packet.failed(cause);
+	    }
+	    for (Packet packet : pending) {
+		packet.failed(cause);
+	    }
+	    unacked.clear();
+	    pending.clear();
+	    releaseAssemblies();
+	}
+
+	// the sender gave up on the packets before base, a frame missing one of them never completes
+	private void dropAssemblies(int base) {
+	    for (Iterator<Assembly> it = assemblies.values().iterator(); it.hasNext();) {
+		final Assembly assembly = it.next();
+		if (assembly.misses(base)) {
+		    assembly.release();
+		    it.remove();
+		}
+	    }
+	}
+
+	private void releaseAssemblies() {
+	    for (Assembly assembly : assemblies.values()) {
+		assembly.release();
+	    }
+	    assemblies.clear();
+	}
+    }
+
+    /**
+     * A written frame.
+     */
+    private static final class Message {
+
+	final int id;
+	final int fragments;
+	final ChannelPromise promise;
+	int unacknowledged;
+
+	Message(int id, int fragments, ChannelPromise promise) {
+	    this.id = id;
+	    this.fragments = fragments;
+	    this.promise = promise;
+	    this.unacknowledged = fragments;
+	}
+    }
+
+    /**
+     * A fragment of a frame.
+     */
+    private static final class Packet {
+
+	final Message message;
+	final int index;
+	final ByteBuf fragment;
+	int seq;
+	long sentAt;
+	int transmissions = 0;
+	boolean fastRetransmitted = false;
+
+	Packet(Message message, int index, ByteBuf fragment) {
+	    this.message = message;
+	    this.index = index;
+	    this.fragment = fragment;
+	}
+
+	void acknowledged() {
+	    fragment.release();
+	    if (--message.unacknowledged == 0) {
+		message.promise.trySuccess();
+	    }
+	}
+
+	void failed(Throwable cause) {
+	    fragment.release();
+	    message.promise.tryFailure(cause);
+	}
+    }
+
+    /**
+     * The fragments of a frame received so far.
+     */
+    private final class Assembly {
+
+	// the packet of the first fragment
+	final int first;
+	final ByteBuf[] fragments;
+	int missing;
+
+	Assembly(int first, int fragments) {
+	    this.first = first;
+	    this.fragments = new ByteBuf[fragments];
+	    this.missing = fragments;
+	}
+
+	boolean accepts(int first, int fragments, int index) {
+	    return first == this.first && fragments == this.fragments.length && this.fragments[index] == null;
+	}
+
+	// true once complete
+	boolean add(int index, ByteBuf fragment) {
+	    fragments[index] = fragment;
+	    return --missing == 0;
+	}
+
+	// whether a missing fragment was sent before the packet
+	boolean misses(int seq) {
+	    for (int i = 0; i < fragments.length; i++) {
+		if (fragments[i] == null && first + i - seq < 0) {
+		    return true;
+		}
+	    }
+	    return false;
+	}
+
+	ByteBuf compose() {
+	    final CompositeByteBuf frame = ctx.alloc().compositeBuffer(fragments.length);
+	    return frame.addComponents(true, fragments);
+	}
+
+	void release() {
+	    for (ByteBuf fragment : fragments) {
+		if (fragment != null) {
+		    fragment.release();
+		}
+	    }
+	}
+    }
+}
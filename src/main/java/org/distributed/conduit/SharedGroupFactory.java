@@ -0,0 +1,56 @@
+package org.distributed.conduit;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+/**
+ * Hands out one event loop group, shared by every conduit and server in the JVM.
+ * <p>
+ * The group has one event loop per core. It is created by the first user and shut down when the last user releases
+ * it.
+ */
+class SharedGroupFactory implements NioGroupFactory {
+
+    private final Transport transport;
+    private final int size;
+
+    private EventLoopGroup group = null;
+    private int users = 0;
+
+    SharedGroupFactory(Transport transport, int size) {
+	this.transport = transport;
+	this.size = size;
+    }
+
+    @Override
+    public EventLoopGroup createParentGroup() {
+	return acquire();
+    }
+
+    @Override
+    public EventLoopGroup createChildrenGroup() {
+	return acquire();
+    }
+
+    @Override
+    public synchronized void release(EventLoopGroup group) {
+	if (group != this.group) {
+	    group.shutdownGracefully();
+	} else if (--users == 0) {
+	    this.group.shutdownGracefully();
+	    this.group = null;
+	}
+    }
+
+    synchronized int users() {
+	return users;
+    }
+
+    private synchronized EventLoopGroup acquire() {
+	if (group == null) {
+	    group = transport.newGroup(size, new DefaultThreadFactory("shared-transport"));
+	}
+	users++;
+	return group;
+    }
+}
@@ -0,0 +1,24 @@
+package org.distributed.conduit;
+
+import io.netty.buffer.Unpooled;
+
+/**
+ * A transfer whose payload is streamed in chunks.
+ * <p>
+ * It reaches the handlers as soon as its first chunk arrives, with an empty content. The payload is read from
+ * {@link #stream()}, from a thread other than the event loop. The answer, if any, is written as usual with the id of
+ * the transfer.
+ */
+public class StreamedTransfer extends ByteTransfer {
+
+    private final TransferStream stream;
+
+    StreamedTransfer(int id, TransferStream stream) {
+	super(id, Unpooled.EMPTY_BUFFER);
+	this.stream = stream;
+    }
+
+    public TransferStream stream() {
+	return stream;
+    }
+}
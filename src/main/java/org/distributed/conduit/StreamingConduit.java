@@ -0,0 +1,24 @@
+package org.distributed.conduit;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Future;
+
+/**
+ * A conduit streaming inputs of any size, like {@link TCPConduit}. The conduits of a {@link ConduitPool} are streaming
+ * ones when the conduits they pool are.
+ */
+public interface StreamingConduit extends Conduit {
+
+    /**
+     * Streams the content of the input in chunks, interleaved with the other transfers, and returns the answer. It
+     * blocks until the last chunk is written, while a bounded number of chunks are waiting to be written.
+     * <p>
+     * The request timeout includes the time spent streaming. The peer reads the content from a
+     * {@link StreamedTransfer}.
+     *
+     * @throws IOException
+     *             if the input cannot be read, the peer is then told the stream is aborted.
+     */
+    <T> Future<T> stream(InputStream input, Class<T> type) throws IOException;
+}
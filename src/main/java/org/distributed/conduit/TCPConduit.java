@@ -1,51 +1,134 @@
 package org.distributed.conduit;
 
 import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
 
-import java.util.Map;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
-import org.dev.future.TransformableFuture;
-import org.dev.serialize.Serializer;
-import org.dev.serialize.impl.KryoSerializer;
+import org.distributed.conduit.InFlightRequests.Request;
 
-public class TCPConduit extends AbstractConduit<ByteTransfer, SocketChannel> implements Conduit {
+public class TCPConduit extends AbstractConduit<ByteTransfer, SocketChannel> implements StreamingConduit {
 
     private final Channel channel;
+    private final NioGroupFactory factory;
     private final EventLoopGroup group;
+    private final ChannelFuture connecting;
+    private final AtomicBoolean closed = new AtomicBoolean();
 
-    // the default message serializer
-    private Serializer serializer = new KryoSerializer();
+    private final TransferSerializer serializer;
+    private final Writability writability = new Writability();
 
-    // ongoing messages
-    protected final Map<Integer, CompletableFuture<byte[]>> ongoing = new ConcurrentHashMap<>();
+    // chunks of a stream waiting to be written
+    private static final int STREAM_WINDOW = 4;
 
-    // counter to identify messages
-    private int id = 0;
+    // ongoing messages
+    protected final InFlightRequests ongoing;
     
     public TCPConduit(String host, int port) throws InterruptedException {
-	this(host, port, NioGroupFactory.defau1t);
+	this(host, port, NioGroupFactory.shared);
     }
 
     public TCPConduit(String host, int port, NioGroupFactory factory) throws InterruptedException {
-	super(host, port, Protocol.TCP);
-	group = factory.createParentGroup();
+	this(host, port, factory, TransportOptions.defaults());
+    }
+
+    public TCPConduit(String host, int port, NioGroupFactory factory, TransportOptions options)
+	    throws InterruptedException {
+	this(factory, host, port, options);
+	try {
+	    connecting.sync();
+	} catch (Throwable e) {
+	    // the channel is closed on failure, the group is not
+	    factory.release(group);
+	    throw e;
+	}
+	options.getMetrics().register(metrics);
+    }
+
+    // starts connecting
+    private TCPConduit(NioGroupFactory factory, String host, int port, TransportOptions options) {
+	super(host, port, Protocol.TCP, options);
+	this.factory = factory;
+	this.group = factory.createParentGroup();
+	this.serializer = options.getSerializer();
+	this.ongoing = new InFlightRequests(options.getMaxInFlight(), options.getRequestTimeoutNanos(),
+		TimeUnit.NANOSECONDS, options.getMetrics().isEnabled() ? metrics.histogram("latency") : null);
+	metrics.gauge("inFlight", ongoing::size).gauge("waiting", ongoing::waiting).gauge("timedOut",
+		ongoing::timedOut);
 
 	final Bootstrap bootstrap = new Bootstrap();
 	bootstrap.group(group) //
-		.channel(NioSocketChannel.class) //
+		.channel(Transport.of(group).socketChannel()) //
+		.option(ChannelOption.WRITE_BUFFER_WATER_MARK, options.getWriteWatermarks()) //
 		.handler(this);
 
-	channel = bootstrap.connect(hostname, port).sync().channel();
+	connecting = bootstrap.connect(hostname, port);
+	channel = connecting.channel();
+    }
+
+    /**
+     * Connects without blocking the caller. The stage completes on the event loop once connected.
+     */
+    public static CompletionStage<TCPConduit> connect(String host, int port, NioGroupFactory factory,
+	    TransportOptions options) {
+	final TCPConduit conduit = new TCPConduit(factory, host, port, options);
+	final CompletableFuture<TCPConduit> connected = new CompletableFuture<>();
+	conduit.connecting.addListener(future -> {
+	    if (future.isSuccess()) {
+		options.getMetrics().register(conduit.metrics);
+		connected.complete(conduit);
+	    } else {
+		factory.release(conduit.group);
+		connected.completeExceptionally(future.cause());
+	    }
+	});
+	return connected;
+    }
+
+    /**
+     * Creates the conduits of <code>hostname:port</code> urls, {@link ConduitFactory#newConduitAsync(Object)}
+     * connecting without blocking.
+     */
+    public static ConduitFactory<String> factory(NioGroupFactory factory, TransportOptions options) {
+	return new ConduitFactory<String>() {
+
+	    @Override
+	    public Conduit newConduit(String url) {
+		try {
+		    final String[] hostPort = url.split(":");
+		    return new TCPConduit(hostPort[0], Integer.valueOf(hostPort[1]), factory, options);
+		} catch (Exception e) {
+		    throw new IllegalArgumentException("Cannot create. Expected format 'hostname:port'", e);
+		}
+	    }
+
+	    @Override
+	    public CompletionStage<TCPConduit> newConduitAsync(String url) {
+		final String[] hostPort = url.split(":");
+		if (hostPort.length != 2) {
+		    throw new IllegalArgumentException("Cannot create. Expected format 'hostname:port'");
+		}
+		return connect(hostPort[0], Integer.valueOf(hostPort[1]), factory, options);
+	    }
+	};
     }
 
     @Override
@@ -55,56 +138,176 @@ public class TCPConduit extends AbstractConduit<ByteTransfer, SocketChannel> imp
     
     @Override
     public void send(Object message) {
+	awaitWritable();
 	if (message instanceof ByteTransfer) {
 	    channel.writeAndFlush(message);
 	} else {
-	    final ByteTransfer transfer = new ByteTransfer(-1, serializer.serialize(message));
-	    channel.writeAndFlush(transfer);
+	    channel.writeAndFlush(new ByteTransfer(-1, serializer.serialize(channel.alloc(), message)));
 	}
     }
 
     @Override
     public <E> Future<E> send(Object message, Class<E> type) {
-	final int currentId = id++;
-	final CompletableFuture<byte[]> answer = new CompletableFuture<>();
-	ongoing.put(currentId, answer);
-	final ByteTransfer transfer = new ByteTransfer(currentId, serializer.serialize(message));
-	channel.writeAndFlush(transfer);
-	return new TransformableFuture<>(answer, f -> serializer.deserialize(f, type));
+	return request(message, answer -> serializer.deserialize(answer, type));
     }
 
     @Override
     public <E> Future<E> send(Object message, Function<byte[], E> transformer) {
-	final int currentId = id++;
-	final CompletableFuture<byte[]> answer = new CompletableFuture<>();
-	ongoing.put(currentId, answer);
-	final ByteTransfer transfer = new ByteTransfer(currentId, serializer.serialize(message));
-	channel.writeAndFlush(transfer);
-	return new TransformableFuture<byte[], E>(answer, transformer);
+	return request(message,
+		answer -> transformer.apply(answer.isReadable() ? ByteBufUtil.getBytes(answer) : null));
+    }
+
+    @Override
+    public <E> CompletionStage<E> sendAsync(Object message, Class<E> type) {
+	return ongoing.registerAsync(answer -> serializer.deserialize(answer, type), request -> {
+	    final ByteBuf payload = serializer.serialize(channel.alloc(), message);
+	    channel.writeAndFlush(new ByteTransfer(request.id, payload)).addListener(request);
+	});
+    }
+
+    // answers are decoded in the event loop, straight from the inbound buffer
+    private <E> Request<E> request(Object message, Function<ByteBuf, E> decoder) {
+	awaitWritable();
+	final ByteBuf payload = serializer.serialize(channel.alloc(), message);
+	final Request<E> answer;
+	try {
+	    answer = ongoing.register(!channel.eventLoop().inEventLoop(), decoder);
+	} catch (RuntimeException e) {
+	    payload.release();
+	    throw e;
+	}
+	channel.writeAndFlush(new ByteTransfer(answer.id, payload)).addListener(answer);
+	return answer;
+    }
+
+    @Override
+    public <E> Future<E> stream(InputStream input, Class<E> type) throws IOException {
+	if (channel.eventLoop().inEventLoop()) {
+	    throw new IllegalStateException("Cannot stream from the event loop.");
+	}
+
+	final Request<E> answer = ongoing.register(true, a -> serializer.deserialize(a, type));
+	final Queue<ChannelFuture> writes = new ArrayDeque<>(STREAM_WINDOW);
+	int sequence = 0;
+	try {
+	    boolean last;
+	    do {
+		final ByteBuf chunk = channel.alloc().ioBuffer(options.getChunkSize(), options.getChunkSize());
+		try {
+		    last = fill(chunk, input);
+		} catch (IOException e) {
+		    chunk.release();
+		    throw e;
+		}
+		if (writes.size() == STREAM_WINDOW) {
+		    awaitWritten(writes.poll());
+		}
+		writes.add(channel.writeAndFlush(new Chunk(answer.id, sequence++, last, chunk)).addListener(answer));
+	    } while (!last);
+	} catch (IOException e) {
+	    channel.writeAndFlush(Chunk.aborted(answer.id, sequence));
+	    ongoing.fail(answer.id, e);
+	    throw e;
+	}
+	return answer;
+    }
+
+    // true once the end of the input is reached
+    private static boolean fill(ByteBuf chunk, InputStream input) throws IOException {
+	while (chunk.isWritable()) {
+	    if (chunk.writeBytes(input, chunk.writableBytes()) < 0) {
+		return true;
+	    }
+	}
+	return false;
+    }
+
+    private static void awaitWritten(ChannelFuture write) throws IOException {
+	if (!write.awaitUninterruptibly().isSuccess()) {
+	    throw new IOException("Cannot write chunk.", write.cause());
+	}
+    }
+
+    private void awaitWritable() {
+	if (options.isBlockWhenUnwritable()) {
+	    writability.await(channel, options.getRequestTimeoutNanos());
+	}
+    }
+
+    @Override
+    public boolean isWritable() {
+	return channel.isWritable();
+    }
+
+    @Override
+    public CompletionStage<Void> whenWritable() {
+	return writability.when(channel);
+    }
+
+    @Override
+    public void addWritabilityListener(Consumer<Boolean> listener) {
+	writability.addListener(listener);
+    }
+
+    @Override
+    public boolean isOpen() {
+	return !closed.get() && channel.isActive();
+    }
+
+    @Override
+    public int getInFlight() {
+	return ongoing.size();
+    }
+
+    /**
+     * The number of callers waiting for a request to be done, the in flight window being full.
+     */
+    public int getWaiting() {
+	return ongoing.waiting();
+    }
+
+    @Override
+    public long getTimedOut() {
+	return ongoing.timedOut();
     }
 
     @Override
     public void close() {
-	group.shutdownGracefully();
-	channel.close();
+	if (closed.compareAndSet(false, true)) {
+	    channel.close();
+	    factory.release(group);
+	    options.getMetrics().unregister(metrics);
+	    ongoing.failAll(new IllegalStateException("Conduit closed."));
+	}
     }
 
     class Answer extends SimpleChannelInboundHandler<ByteTransfer> {
 
 	@Override
 	protected void channelRead0(ChannelHandlerContext ctx, final ByteTransfer msg) throws Exception {
-	    final CompletableFuture<byte[]> answer = ongoing.get(msg.id);
-	    if (answer != null) {
-		answer.complete(msg.payload);
-		ongoing.remove(msg.id);
+	    if (msg instanceof StreamedTransfer) {
+		((StreamedTransfer) msg).stream().close();
+		ongoing.fail(msg.id, new UnsupportedOperationException("Streamed answers are not supported."));
+	    } else {
+		ongoing.complete(msg.id, msg.content());
 	    }
 	}
 
+	@Override
+	public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+	    writability.changed(ctx.channel());
+	    super.channelWritabilityChanged(ctx);
+	}
+
+	@Override
+	public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+	    writability.release(ctx.channel());
+	    super.channelInactive(ctx);
+	}
+
 	@Override
 	public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
-	    for (CompletableFuture<byte[]> pending : ongoing.values()) {
-		pending.completeExceptionally(new IllegalStateException("Broken transfer.", cause));
-	    }
+	    ongoing.failAll(new IllegalStateException("Broken transfer.", cause));
 	    close();
 	}
     }
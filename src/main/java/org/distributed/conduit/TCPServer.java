@@ -2,12 +2,17 @@ package org.distributed.conduit;
 
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
+import io.netty.util.concurrent.GlobalEventExecutor;
+
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -18,7 +23,11 @@ public class TCPServer extends AbstractConduit<ByteTransfer, SocketChannel> {
 
     private final SimpleChannelInboundHandler<ByteTransfer> handler;
 
+    private final ChannelGroup children = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+    private final AtomicBoolean closed = new AtomicBoolean();
+
     private ChannelFuture channelFuture;
+    private NioGroupFactory factory;
     private EventLoopGroup parentGroup;
     private EventLoopGroup childrenGroup;
 
@@ -26,7 +35,7 @@ public class TCPServer extends AbstractConduit<ByteTransfer, SocketChannel> {
 	    SimpleChannelInboundHandler<ByteTransfer> handler, //
 	    String hostname, //
 	    int port) throws InterruptedException {
-	this(handler, hostname, port, NioGroupFactory.defau1t);
+	this(handler, hostname, port, NioGroupFactory.shared);
     }
 
     public TCPServer( //
@@ -34,34 +43,74 @@ public class TCPServer extends AbstractConduit<ByteTransfer, SocketChannel> {
 	    String hostname, //
 	    int port, //
 	    NioGroupFactory factory) throws InterruptedException {
+	this(handler, hostname, port, factory, TransportOptions.defaults());
+    }
+
+    public TCPServer( //
+	    SimpleChannelInboundHandler<ByteTransfer> handler, //
+	    String hostname, //
+	    int port, //
+	    NioGroupFactory factory, //
+	    TransportOptions options) throws InterruptedException {
 
-	super(hostname, port, Protocol.TCP);
+	super(hostname, port, Protocol.TCP, options);
 	this.handler = handler;
+	this.factory = factory;
 
 	parentGroup = factory.createParentGroup();
 	childrenGroup = factory.createChildrenGroup();
 
 	final ServerBootstrap server = new ServerBootstrap();
 	server.group(parentGroup, childrenGroup) //
-		.channel(NioServerSocketChannel.class) //
+		.channel(Transport.of(parentGroup).serverSocketChannel()) //
 		.handler(new LoggingHandler(LogLevel.INFO)) //
+		.childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, options.getWriteWatermarks()) //
 		.childHandler(this);
+	Transport.of(parentGroup).configure(server);
 
-	this.channelFuture = server.bind(hostname, port).sync();
+	try {
+	    this.channelFuture = server.bind(hostname, port).sync();
+	} catch (Throwable e) {
+	    // the channel is closed on failure, the groups are not
+	    factory.release(parentGroup);
+	    factory.release(childrenGroup);
+	    throw e;
+	}
+	metrics.gauge("connections", children::size) //
+		.gauge("queued", options.getExecution()::getQueued) //
+		.gauge("rejected", options.getExecution()::getRejected);
+	options.getMetrics().register(metrics);
     }
 
     @Override
     public void close() {
+	if (!closed.compareAndSet(false, true)) {
+	    return;
+	}
 	try {
-	    parentGroup.shutdownGracefully();
-	    childrenGroup.shutdownGracefully();
-	    channelFuture.channel().closeFuture().sync();
+	    // the groups might be shared, close the channels explicitly
+	    children.close();
+	    final ChannelFuture closing = channelFuture.channel().close();
+	    if (!closing.channel().eventLoop().inEventLoop()) {
+		closing.sync();
+	    }
 	} catch (InterruptedException e) {
 	    log.warn("Thread interrupted while trying to close server.", e);
 	    Thread.interrupted(); // clean interrupt status
+	} finally {
+	    options.getMetrics().unregister(metrics);
+	    factory.release(parentGroup);
+	    factory.release(childrenGroup);
 	}
     }
 
+    @Override
+    protected void initChannel(SocketChannel ch) {
+	children.add(ch);
+	super.initChannel(ch);
+	options.getExecution().install(ch.pipeline(), handler);
+    }
+
     @Override
     protected SimpleChannelInboundHandler<ByteTransfer> getHandler() {
 	return handler;
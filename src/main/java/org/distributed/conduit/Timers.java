@@ -0,0 +1,19 @@
+package org.distributed.conduit;
+
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timer;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timers shared by conduits and pools.
+ */
+class Timers {
+
+    /**
+     * A coarse (10ms ticks) hashed wheel timer for timeouts and expirations.
+     */
+    static final Timer wheel = new HashedWheelTimer(new DefaultThreadFactory("conduit-timer", true), 10,
+	    TimeUnit.MILLISECONDS);
+}
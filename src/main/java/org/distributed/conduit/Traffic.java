@@ -0,0 +1,86 @@
+package org.distributed.conduit;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.distributed.metrics.MetricSet;
+
+/**
+ * Counts the traffic of the channels of a conduit or a server: the bytes on the wire, next to the socket, and the
+ * transfers, next to the handler.
+ */
+class Traffic {
+
+    final ChannelHandler wire = new Wire();
+    final ChannelHandler frames = new Frames();
+
+    private final LongAdder bytesIn;
+    private final LongAdder bytesOut;
+    private final LongAdder framesIn;
+    private final LongAdder framesOut;
+
+    Traffic(MetricSet metrics) {
+	bytesIn = metrics.counter("bytesIn");
+	bytesOut = metrics.counter("bytesOut");
+	framesIn = metrics.counter("framesIn");
+	framesOut = metrics.counter("framesOut");
+    }
+
+    private static int sizeOf(Object msg) {
+	if (msg instanceof ByteBuf) {
+	    return ((ByteBuf) msg).readableBytes();
+	}
+	if (msg instanceof ByteBufHolder) {
+	    return ((ByteBufHolder) msg).content().readableBytes();
+	}
+	return 0;
+    }
+
+    // control transfers are not counted
+    private static boolean isFrame(Object msg) {
+	return msg instanceof ByteTransfer && ((ByteTransfer) msg).id != Capabilities.FRAME_ID;
+    }
+
+    @Sharable
+    private final class Wire extends ChannelDuplexHandler {
+
+	@Override
+	public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+	    bytesIn.add(sizeOf(msg));
+	    ctx.fireChannelRead(msg);
+	}
+
+	@Override
+	public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+	    bytesOut.add(sizeOf(msg));
+	    ctx.write(msg, promise);
+	}
+    }
+
+    @Sharable
+    private final class Frames extends ChannelDuplexHandler {
+
+	@Override
+	public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+	    if (isFrame(msg)) {
+		framesIn.increment();
+	    }
+	    ctx.fireChannelRead(msg);
+	}
+
+	@Override
+	public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+	    if (isFrame(msg)) {
+		framesOut.increment();
+	    }
+	    ctx.write(msg, promise);
+	}
+    }
+}
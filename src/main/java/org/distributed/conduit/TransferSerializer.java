@@ -0,0 +1,159 @@
+package org.distributed.conduit;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.util.concurrent.FastThreadLocal;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import org.objenesis.strategy.StdInstantiatorStrategy;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * Thread-safe Kryo serializer of transfer payloads.
+ * <p>
+ * Every thread owns its Kryo instance and its input / output buffers (event loop threads keep them in their fast
+ * thread locals), so serializing never locks. Messages are streamed into a pooled {@link ByteBuf} and read back from
+ * one, without an intermediate byte array.
+ * <p>
+ * Registered classes are written as a compact id instead of their name. Ids follow the registration order, therefore
+ * both ends of a conduit must use serializers registering the same classes in the same order.
+ */
+public class TransferSerializer {
+
+    /**
+     * Registers the usual collections, arrays and {@link BigInteger}.
+     */
+    public static final TransferSerializer defaults = new TransferSerializer(BigInteger.class, byte[].class,
+	    String[].class, Object[].class, ArrayList.class, HashMap.class, HashSet.class);
+
+    private static final int BUFFER_SIZE = 4096;
+    private static final byte[] EMPTY = new byte[0];
+
+    private final List<Class<?>> registered;
+
+    private final FastThreadLocal<Context> context = new FastThreadLocal<Context>() {
+	@Override
+	protected Context initialValue() {
+	    return new Context();
+	}
+    };
+
+    private TransferSerializer(Class<?>... registered) {
+	this.registered = Arrays.asList(registered);
+    }
+
+    /**
+     * A serializer registering the given classes, after the ones of {@link #defaults}.
+     */
+    public static TransferSerializer registering(Class<?>... types) {
+	final List<Class<?>> registered = new ArrayList<>(defaults.registered);
+	registered.addAll(Arrays.asList(types));
+	return new TransferSerializer(registered.toArray(new Class<?>[registered.size()]));
+    }
+
+    /**
+     * Serializes the message into a new buffer of the given allocator. The caller owns the buffer.
+     */
+    public ByteBuf serialize(ByteBufAllocator alloc, Object message) {
+	final ByteBuf buffer = alloc.ioBuffer();
+	try {
+	    final Context ctx = context.get();
+	    ctx.output.setOutputStream(new ByteBufOutputStream(buffer));
+	    try {
+		ctx.kryo.writeClassAndObject(ctx.output, message);
+		ctx.output.flush();
+	    } finally {
+		ctx.output.setOutputStream(null);
+	    }
+	    return buffer;
+	} catch (RuntimeException e) {
+	    buffer.release();
+	    throw e;
+	}
+    }
+
+    /**
+     * Deserializes the readable bytes of the buffer, leaving its indexes untouched. An empty buffer is read as
+     * <code>null</code>.
+     */
+    public <T> T deserialize(ByteBuf buffer, Class<T> type) {
+	if (buffer == null || !buffer.isReadable()) {
+	    return null;
+	}
+
+	final Context ctx = context.get();
+	if (buffer.hasArray()) {
+	    // read in place
+	    ctx.arrayInput.setBuffer(buffer.array(), buffer.arrayOffset() + buffer.readerIndex(),
+		    buffer.readableBytes());
+	    try {
+		return type.cast(ctx.kryo.readClassAndObject(ctx.arrayInput));
+	    } finally {
+		ctx.arrayInput.setBuffer(EMPTY);
+	    }
+	}
+
+	ctx.streamInput.setInputStream(new ByteBufInputStream(buffer.duplicate()));
+	try {
+	    return type.cast(ctx.kryo.readClassAndObject(ctx.streamInput));
+	} finally {
+	    ctx.streamInput.setInputStream(null);
+	}
+    }
+
+    /**
+     * Serializes the message into a byte array, for payloads kept around once the transfer is released.
+     */
+    public byte[] toByteArray(Object message) {
+	final Context ctx = context.get();
+	ctx.output.clear();
+	ctx.kryo.writeClassAndObject(ctx.output, message);
+	final byte[] bytes = ctx.output.toBytes();
+	ctx.output.clear();
+	return bytes;
+    }
+
+    /**
+     * Deserializes a byte array. A <code>null</code> or empty array is read as <code>null</code>.
+     */
+    public <T> T fromByteArray(byte[] bytes, Class<T> type) {
+	if (bytes == null || bytes.length == 0) {
+	    return null;
+	}
+
+	final Context ctx = context.get();
+	ctx.arrayInput.setBuffer(bytes);
+	try {
+	    return type.cast(ctx.kryo.readClassAndObject(ctx.arrayInput));
+	} finally {
+	    ctx.arrayInput.setBuffer(EMPTY);
+	}
+    }
+
+    private final class Context {
+
+	final Kryo kryo = new Kryo();
+	final Output output = new Output(BUFFER_SIZE, -1);
+	final Input arrayInput = new Input();
+	final Input streamInput = new Input(BUFFER_SIZE);
+
+	Context() {
+	    // classes without a no-arg constructor are still instantiated
+	    kryo.setInstantiatorStrategy(new Kryo.DefaultInstantiatorStrategy(new StdInstantiatorStrategy()));
+	    for (Class<?> type : registered) {
+		kryo.register(type);
+	    }
+	}
+    }
+}
@@ -0,0 +1,184 @@
+package org.distributed.conduit;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The payload of a streamed transfer, read as its chunks arrive.
+ * <p>
+ * At most {@value #HIGH_WATERMARK} bytes are buffered: past it the channel stops reading until the consumer drains
+ * the stream below {@value #LOW_WATERMARK} bytes, so the memory used does not depend on the size of the transfer.
+ * Meanwhile the other transfers of the channel wait too: a stream keeping the channel paused for
+ * {@value #MAX_STALL_MILLIS}ms fails, discarding the rest of its chunks, and the channel reads again.
+ * <p>
+ * Reading blocks until a chunk arrives, therefore the stream must not be read from the event loop.
+ * <p>
+ * Closing the stream before its end discards the chunks still to come.
+ */
+public class TransferStream extends InputStream {
+
+    static final int HIGH_WATERMARK = 1024 * 1024;
+    static final int LOW_WATERMARK = HIGH_WATERMARK / 4;
+    static final long MAX_STALL_MILLIS = 2000;
+
+    private final Channel channel;
+    private final Queue<ByteBuf> chunks = new ArrayDeque<>();
+
+    private int buffered = 0;
+    private boolean paused = false;
+    private boolean ended = false;
+    private boolean closed = false;
+    private IOException failure = null;
+    private ScheduledFuture<?> stall = null;
+
+    TransferStream(Channel channel) {
+	this.channel = channel;
+    }
+
+    /**
+     * Buffers a chunk, pausing the channel if the consumer lags behind and more chunks are to come.
+     */
+    synchronized void offer(ByteBuf chunk, boolean last) {
+	if (closed || failure != null) {
+	    chunk.release();
+	} else {
+	    chunks.add(chunk);
+	    buffered += chunk.readableBytes();
+	    if (last) {
+		resume();
+	    } else if (buffered >= HIGH_WATERMARK) {
+		pause();
+	    }
+	}
+	ended |= last;
+	notifyAll();
+    }
+
+    synchronized void fail(IOException cause) {
+	if (!ended) {
+	    failure = cause;
+	    ended = true;
+	    notifyAll();
+	}
+    }
+
+    @Override
+    public int read() throws IOException {
+	final byte[] b = new byte[1];
+	return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public synchronized int read(byte[] b, int off, int len) throws IOException {
+	if (len == 0) {
+	    return 0;
+	}
+	final ByteBuf chunk = await();
+	if (chunk == null) {
+	    return -1;
+	}
+
+	final int read = Math.min(len, chunk.readableBytes());
+	chunk.readBytes(b, off, read);
+	consumed(chunk, read);
+	return read;
+    }
+
+    @Override
+    public synchronized long skip(long n) throws IOException {
+	final ByteBuf chunk = n > 0 ? await() : null;
+	if (chunk == null) {
+	    return 0;
+	}
+
+	final int skipped = (int) Math.min(n, chunk.readableBytes());
+	chunk.skipBytes(skipped);
+	consumed(chunk, skipped);
+	return skipped;
+    }
+
+    @Override
+    public synchronized int available() {
+	return buffered;
+    }
+
+    @Override
+    public synchronized void close() {
+	if (!closed) {
+	    closed = true;
+	    discard();
+	    resume();
+	}
+    }
+
+    // the next readable chunk, or null at the end of the stream
+    private ByteBuf await() throws IOException {
+	if (closed) {
+	    throw new IOException("Stream closed.");
+	}
+	while (chunks.isEmpty() && !ended) {
+	    try {
+		wait();
+	    } catch (InterruptedException e) {
+		Thread.currentThread().interrupt();
+		throw new InterruptedIOException();
+	    }
+	}
+	if (chunks.isEmpty() && failure != null) {
+	    throw failure;
+	}
+	return chunks.peek();
+    }
+
+    private void consumed(ByteBuf chunk, int bytes) {
+	buffered -= bytes;
+	if (!chunk.isReadable()) {
+	    chunks.poll().release();
+	}
+	if (buffered <= LOW_WATERMARK) {
+	    resume();
+	}
+    }
+
+    private void discard() {
+	for (ByteBuf chunk : chunks) {
+	    chunk.release();
+	}
+	chunks.clear();
+	buffered = 0;
+    }
+
+    private void pause() {
+	if (!paused) {
+	    paused = true;
+	    ReadPause.pause(channel, this);
+	    stall = channel.eventLoop().schedule(this::stalled, MAX_STALL_MILLIS, TimeUnit.MILLISECONDS);
+	}
+    }
+
+    private void resume() {
+	if (paused) {
+	    paused = false;
+	    stall.cancel(false);
+	    ReadPause.resume(channel, this);
+	}
+    }
+
+    private synchronized void stalled() {
+	if (paused && !ended) {
+	    failure = new IOException("Stream not read for " + MAX_STALL_MILLIS + "ms, its chunks are discarded.");
+	    ended = true;
+	    discard();
+	    resume();
+	    notifyAll();
+	}
+    }
+}
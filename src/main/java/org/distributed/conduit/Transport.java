@@ -0,0 +1,141 @@
+package org.distributed.conduit;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollDatagramChannel;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.DatagramChannel;
+import io.netty.channel.socket.ServerSocketChannel;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * The netty transports conduits and servers can run on.
+ * <p>
+ * The channel classes are picked from the event loop group the channel is registered with, so any
+ * {@link NioGroupFactory} works with any conduit / server.
+ */
+public enum Transport {
+
+    /**
+     * Java NIO, available everywhere.
+     */
+    NIO {
+	@Override
+	public boolean isAvailable() {
+	    return true;
+	}
+
+	@Override
+	EventLoopGroup newGroup(int size, ThreadFactory threadFactory) {
+	    return threadFactory == null ? new NioEventLoopGroup(size) : new NioEventLoopGroup(size, threadFactory);
+	}
+
+	@Override
+	Class<? extends SocketChannel> socketChannel() {
+	    return NioSocketChannel.class;
+	}
+
+	@Override
+	Class<? extends ServerSocketChannel> serverSocketChannel() {
+	    return NioServerSocketChannel.class;
+	}
+
+	@Override
+	Class<? extends DatagramChannel> datagramChannel() {
+	    return NioDatagramChannel.class;
+	}
+    },
+
+    /**
+     * Native (edge-triggered) epoll, Linux only.
+     */
+    EPOLL {
+	@Override
+	public boolean isAvailable() {
+	    return Epoll.isAvailable();
+	}
+
+	@Override
+	EventLoopGroup newGroup(int size, ThreadFactory threadFactory) {
+	    return threadFactory == null ? new EpollEventLoopGroup(size) : new EpollEventLoopGroup(size, threadFactory);
+	}
+
+	@Override
+	Class<? extends SocketChannel> socketChannel() {
+	    return EpollSocketChannel.class;
+	}
+
+	@Override
+	Class<? extends ServerSocketChannel> serverSocketChannel() {
+	    return EpollServerSocketChannel.class;
+	}
+
+	@Override
+	Class<? extends DatagramChannel> datagramChannel() {
+	    return EpollDatagramChannel.class;
+	}
+
+	@Override
+	void configure(ServerBootstrap server) {
+	    server.option(EpollChannelOption.TCP_FASTOPEN, FAST_OPEN_QUEUE);
+	}
+
+	@Override
+	boolean reusePort(Bootstrap datagram) {
+	    datagram.option(EpollChannelOption.SO_REUSEPORT, true);
+	    return true;
+	}
+    };
+
+    // pending TCP fast open requests
+    private static final int FAST_OPEN_QUEUE = 256;
+
+    public abstract boolean isAvailable();
+
+    abstract EventLoopGroup newGroup(int size, ThreadFactory threadFactory);
+
+    abstract Class<? extends SocketChannel> socketChannel();
+
+    abstract Class<? extends ServerSocketChannel> serverSocketChannel();
+
+    abstract Class<? extends DatagramChannel> datagramChannel();
+
+    /**
+     * Sets the transport specific options of a server.
+     */
+    void configure(ServerBootstrap server) {
+    }
+
+    /**
+     * Lets several datagram channels bind the same port, the kernel spreading the datagrams among them. Returns
+     * <code>false</code> if the transport cannot.
+     */
+    boolean reusePort(Bootstrap datagram) {
+	return false;
+    }
+
+    /**
+     * The native transport if available, NIO otherwise.
+     */
+    public static Transport best() {
+	return EPOLL.isAvailable() ? EPOLL : NIO;
+    }
+
+    /**
+     * The transport of the given group.
+     */
+    public static Transport of(EventLoopGroup group) {
+	return group instanceof EpollEventLoopGroup ? EPOLL : NIO;
+    }
+}
@@ -0,0 +1,195 @@
+package org.distributed.conduit;
+
+import io.netty.channel.WriteBufferWaterMark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.distributed.metrics.MetricsRegistry;
+
+/**
+ * Options of conduits and servers.
+ * <p>
+ * <code>
+ * new TCPConduit("127.0.0.1", 19999, NioGroupFactory.shared, TransportOptions.defaults().compression(Compression.lz4));
+ * </code>
+ */
+public class TransportOptions {
+
+    private FlushPolicy flushPolicy = FlushPolicy.batched;
+    private int maxInFlight = InFlightRequests.DEFAULT_CAPACITY;
+    private long requestTimeoutNanos = TimeUnit.SECONDS.toNanos(30);
+    private TransferSerializer serializer = TransferSerializer.defaults;
+    private Compression compression = Compression.none;
+    private int chunkSize = 64 * 1024;
+    private boolean reliableUdp = false;
+    private int datagramBudget = DatagramBatcher.DEFAULT_BUDGET;
+    private ExecutionStage execution = ExecutionStage.inline;
+    private WriteBufferWaterMark writeWatermarks = WriteBufferWaterMark.DEFAULT;
+    private boolean blockWhenUnwritable = false;
+    private MetricsRegistry metrics = MetricsRegistry.none;
+
+    public static TransportOptions defaults() {
+	return new TransportOptions();
+    }
+
+    /**
+     * When the writes are flushed to the socket. Defaults to {@link FlushPolicy#batched}.
+     */
+    public TransportOptions flushPolicy(FlushPolicy flushPolicy) {
+	this.flushPolicy = flushPolicy;
+	return this;
+    }
+
+    public FlushPolicy getFlushPolicy() {
+	return flushPolicy;
+    }
+
+    /**
+     * The maximum number of requests a conduit keeps waiting for an answer. Callers exceeding it wait for a request to
+     * be done. Defaults to {@value InFlightRequests#DEFAULT_CAPACITY}.
+     */
+    public TransportOptions maxInFlight(int maxInFlight) {
+	if (maxInFlight < 1) {
+	    throw new IllegalArgumentException("Expected at least one request in flight.");
+	}
+	this.maxInFlight = maxInFlight;
+	return this;
+    }
+
+    public int getMaxInFlight() {
+	return maxInFlight;
+    }
+
+    /**
+     * How long a conduit waits for an answer before failing the request with a
+     * {@link java.util.concurrent.TimeoutException}. A non-positive timeout waits forever. Defaults to 30 seconds.
+     */
+    public TransportOptions requestTimeout(long timeout, TimeUnit unit) {
+	this.requestTimeoutNanos = unit.toNanos(timeout);
+	return this;
+    }
+
+    public long getRequestTimeoutNanos() {
+	return requestTimeoutNanos;
+    }
+
+    /**
+     * How the messages of a conduit are serialized. Both ends must register the same classes. Defaults to
+     * {@link TransferSerializer#defaults}.
+     */
+    public TransportOptions serializer(TransferSerializer serializer) {
+	this.serializer = serializer;
+	return this;
+    }
+
+    public TransferSerializer getSerializer() {
+	return serializer;
+    }
+
+    /**
+     * Which transfers are compressed, for peers able to decompress them. Defaults to {@link Compression#none}.
+     */
+    public TransportOptions compression(Compression compression) {
+	this.compression = compression;
+	return this;
+    }
+
+    public Compression getCompression() {
+	return compression;
+    }
+
+    /**
+     * The size of the chunks of a streamed transfer. Defaults to 64KB.
+     */
+    public TransportOptions chunkSize(int chunkSize) {
+	if (chunkSize < 1) {
+	    throw new IllegalArgumentException("Expected a positive chunk size.");
+	}
+	this.chunkSize = chunkSize;
+	return this;
+    }
+
+    public int getChunkSize() {
+	return chunkSize;
+    }
+
+    /**
+     * Whether UDP transfers are acknowledged, retransmitted when lost and fragmented to fit the path MTU, which lifts
+     * the size limit of a datagram. Both ends must enable it. Defaults to <code>false</code>.
+     */
+    public TransportOptions reliableUdp(boolean reliableUdp) {
+	this.reliableUdp = reliableUdp;
+	return this;
+    }
+
+    public boolean isReliableUdp() {
+	return reliableUdp;
+    }
+
+    /**
+     * How many bytes of UDP transfers written between two flushes are packed into one datagram. A budget of zero sends
+     * one transfer per datagram. Defaults to {@value DatagramBatcher#DEFAULT_BUDGET}.
+     */
+    public TransportOptions datagramBudget(int datagramBudget) {
+	if (datagramBudget < 0) {
+	    throw new IllegalArgumentException("Expected a non-negative datagram budget.");
+	}
+	this.datagramBudget = datagramBudget;
+	return this;
+    }
+
+    public int getDatagramBudget() {
+	return datagramBudget;
+    }
+
+    /**
+     * Where the handler of a server runs. Defaults to {@link ExecutionStage#inline}, on the event loop.
+     */
+    public TransportOptions execution(ExecutionStage execution) {
+	this.execution = execution;
+	return this;
+    }
+
+    public ExecutionStage getExecution() {
+	return execution;
+    }
+
+    /**
+     * The bytes waiting in the outbound buffer of a channel beyond which it stops being writable (<code>high</code>),
+     * and below which it becomes writable again (<code>low</code>). Defaults to 32KB / 64KB.
+     */
+    public TransportOptions writeWatermarks(int low, int high) {
+	this.writeWatermarks = new WriteBufferWaterMark(low, high);
+	return this;
+    }
+
+    public WriteBufferWaterMark getWriteWatermarks() {
+	return writeWatermarks;
+    }
+
+    /**
+     * Whether the blocking sends of a conduit wait for it to be writable, at most the request timeout. Asynchronous
+     * sends never block, see {@link Conduit#whenWritable()}. Defaults to <code>false</code>.
+     */
+    public TransportOptions blockWhenUnwritable(boolean blockWhenUnwritable) {
+	this.blockWhenUnwritable = blockWhenUnwritable;
+	return this;
+    }
+
+    public boolean isBlockWhenUnwritable() {
+	return blockWhenUnwritable;
+    }
+
+    /**
+     * Where conduits and servers publish their metrics, from creation to close. Unless a registry is given, they do
+     * not count their traffic nor record their latencies. Defaults to {@link MetricsRegistry#none}.
+     */
+    public TransportOptions metrics(MetricsRegistry metrics) {
+	this.metrics = metrics;
+	return this;
+    }
+
+    public MetricsRegistry getMetrics() {
+	return metrics;
+    }
+}
@@ -1,68 +1,93 @@
 package org.distributed.conduit;
 
 import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.channel.socket.DatagramChannel;
-import io.netty.channel.socket.nio.NioDatagramChannel;
 
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
-import java.util.Map;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
-import org.dev.future.TransformableFuture;
-import org.dev.serialize.Serializer;
-import org.dev.serialize.impl.KryoSerializer;
+import org.distributed.conduit.InFlightRequests.Request;
 
 public class UDPConduit extends AbstractConduit<ByteTransfer, DatagramChannel> implements Conduit {
 
     private final Channel channel;
+    private final NioGroupFactory factory;
     private final EventLoopGroup group;
+    private final AtomicBoolean closed = new AtomicBoolean();
 
-    // the default message serializer
-    private Serializer serializer = new KryoSerializer();
+    private final TransferSerializer serializer;
+    private final Writability writability = new Writability();
 
     // ongoing messages
-    protected final Map<Integer, CompletableFuture<byte[]>> ongoing = new ConcurrentHashMap<>();
-
-    // counter to identify messages
-    private int id = 0;
+    protected final InFlightRequests ongoing;
 
     private UDPServer server = null;
 
     public UDPConduit(String host, int port) throws InterruptedException {
-	this(host, port, NioGroupFactory.defau1t, false);
+	this(host, port, NioGroupFactory.shared, false);
     }
 
     public UDPConduit(String host, int port, boolean bidirectional) throws InterruptedException {
-	this(host, port, NioGroupFactory.defau1t, bidirectional);
+	this(host, port, NioGroupFactory.shared, bidirectional);
     }
 
     public UDPConduit(String host, int port, NioGroupFactory factory, boolean bidirectional)
 	    throws InterruptedException {
-	super(host, port, Protocol.UDP);
-	group = factory.createParentGroup();
+	this(host, port, factory, bidirectional, TransportOptions.defaults());
+    }
+
+    public UDPConduit(String host, int port, NioGroupFactory factory, boolean bidirectional, TransportOptions options)
+	    throws InterruptedException {
+	super(host, port, Protocol.UDP, options);
+	this.factory = factory;
+	this.group = factory.createParentGroup();
+	this.serializer = options.getSerializer();
+	this.ongoing = new InFlightRequests(options.getMaxInFlight(), options.getRequestTimeoutNanos(),
+		TimeUnit.NANOSECONDS, options.getMetrics().isEnabled() ? metrics.histogram("latency") : null);
+	metrics.gauge("inFlight", ongoing::size).gauge("waiting", ongoing::waiting).gauge("timedOut",
+		ongoing::timedOut);
 
 	final Bootstrap bootstrap = new Bootstrap();
 	bootstrap.group(group) //
-		.channel(NioDatagramChannel.class) //
+		.channel(Transport.of(group).datagramChannel()) //
+		.option(ChannelOption.SO_REUSEADDR, true) //
+		.option(ChannelOption.WRITE_BUFFER_WATER_MARK, options.getWriteWatermarks()) //
 		.handler(this);
 
-	channel = bootstrap.connect(hostname, port).sync().channel();
+	try {
+	    channel = bootstrap.connect(hostname, port).sync().channel();
+	} catch (Throwable e) {
+	    // the channel is closed on failure, the group is not
+	    factory.release(group);
+	    throw e;
+	}
 	if (bidirectional) {
 	    final SocketAddress localAddress = channel.localAddress();
 	    if (localAddress instanceof InetSocketAddress) {
 		final InetSocketAddress inetLocalAddress = (InetSocketAddress) localAddress;
-		server = new UDPServer(getHandler(), inetLocalAddress.getHostString(), inetLocalAddress.getPort(),
-			NioGroupFactory.minimal);
+		try {
+		    server = new UDPServer(getHandler(), inetLocalAddress.getHostString(), inetLocalAddress.getPort(),
+			    NioGroupFactory.shared, options);
+		} catch (Throwable e) {
+		    close();
+		    throw e;
+		}
 	    }
 	}
+	options.getMetrics().register(metrics);
     }
 
     @Override
@@ -76,60 +101,126 @@ public class UDPConduit extends AbstractConduit<ByteTransfer, DatagramChannel> i
 
     @Override
     public void send(Object message) {
+	awaitWritable();
 	if (message instanceof ByteTransfer) {
 	    channel.writeAndFlush(message);
 	} else {
-	    final ByteTransfer transfer = new ByteTransfer(-1, serializer.serialize(message));
-	    channel.writeAndFlush(transfer);
+	    channel.writeAndFlush(new ByteTransfer(-1, serializer.serialize(channel.alloc(), message)));
 	}
     }
 
     @Override
     public <E> Future<E> send(Object message, Class<E> type) {
-	final int currentId = id++;
-	final CompletableFuture<byte[]> answer = new CompletableFuture<>();
-	ongoing.put(currentId, answer);
-	final ByteTransfer transfer = new ByteTransfer(currentId, serializer.serialize(message));
-	channel.writeAndFlush(transfer);
-	return new TransformableFuture<>(answer, f -> serializer.deserialize(f, type));
+	return request(message, answer -> serializer.deserialize(answer, type));
     }
 
     @Override
     public <E> Future<E> send(Object message, Function<byte[], E> transformer) {
-	final int currentId = id++;
-	final CompletableFuture<byte[]> answer = new CompletableFuture<>();
-	ongoing.put(currentId, answer);
-	final ByteTransfer transfer = new ByteTransfer(currentId, serializer.serialize(message));
-	channel.writeAndFlush(transfer);
-	return new TransformableFuture<byte[], E>(answer, transformer);
+	return request(message,
+		answer -> transformer.apply(answer.isReadable() ? ByteBufUtil.getBytes(answer) : null));
+    }
+
+    @Override
+    public <E> CompletionStage<E> sendAsync(Object message, Class<E> type) {
+	return ongoing.registerAsync(answer -> serializer.deserialize(answer, type), request -> {
+	    final ByteBuf payload = serializer.serialize(channel.alloc(), message);
+	    channel.writeAndFlush(new ByteTransfer(request.id, payload)).addListener(request);
+	});
+    }
+
+    // answers are decoded in the event loop, straight from the inbound buffer
+    private <E> Request<E> request(Object message, Function<ByteBuf, E> decoder) {
+	awaitWritable();
+	final ByteBuf payload = serializer.serialize(channel.alloc(), message);
+	final Request<E> answer;
+	try {
+	    answer = ongoing.register(!channel.eventLoop().inEventLoop(), decoder);
+	} catch (RuntimeException e) {
+	    payload.release();
+	    throw e;
+	}
+	channel.writeAndFlush(new ByteTransfer(answer.id, payload)).addListener(answer);
+	return answer;
+    }
+
+    private void awaitWritable() {
+	if (options.isBlockWhenUnwritable()) {
+	    writability.await(channel, options.getRequestTimeoutNanos());
+	}
+    }
+
+    @Override
+    public boolean isWritable() {
+	return channel.isWritable();
+    }
+
+    @Override
+    public CompletionStage<Void> whenWritable() {
+	return writability.when(channel);
+    }
+
+    @Override
+    public void addWritabilityListener(Consumer<Boolean> listener) {
+	writability.addListener(listener);
+    }
+
+    @Override
+    public boolean isOpen() {
+	return !closed.get() && channel.isOpen();
+    }
+
+    @Override
+    public int getInFlight() {
+	return ongoing.size();
+    }
+
+    /**
+     * The number of callers waiting for a request to be done, the in flight window being full.
+     */
+    public int getWaiting() {
+	return ongoing.waiting();
+    }
+
+    @Override
+    public long getTimedOut() {
+	return ongoing.timedOut();
     }
 
     @Override
     public void close() {
-	group.shutdownGracefully();
-	channel.close();
-	if (server != null) {
-	    server.close();
+	if (closed.compareAndSet(false, true)) {
+	    channel.close();
+	    if (server != null) {
+		server.close();
+	    }
+	    factory.release(group);
+	    options.getMetrics().unregister(metrics);
+	    ongoing.failAll(new IllegalStateException("Conduit closed."));
 	}
-	ongoing.clear();
     }
 
     class Answer extends SimpleChannelInboundHandler<ByteTransfer> {
 
 	@Override
 	protected void channelRead0(ChannelHandlerContext ctx, final ByteTransfer msg) throws Exception {
-	    final CompletableFuture<byte[]> answer = ongoing.get(msg.id);
-	    if (answer != null) {
-		answer.complete(msg.payload);
-		ongoing.remove(msg.id);
-	    }
+	    ongoing.complete(msg.id, msg.content());
+	}
+
+	@Override
+	public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+	    writability.changed(ctx.channel());
+	    super.channelWritabilityChanged(ctx);
+	}
+
+	@Override
+	public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+	    writability.release(ctx.channel());
+	    super.channelInactive(ctx);
 	}
 
 	@Override
 	public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
-	    for (CompletableFuture<byte[]> pending : ongoing.values()) {
-		pending.completeExceptionally(new IllegalStateException("Broken transfer.", cause));
-	    }
+	    ongoing.failAll(new IllegalStateException("Broken transfer.", cause));
 	    close();
 	}
     }
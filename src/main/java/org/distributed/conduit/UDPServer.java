@@ -1,29 +1,46 @@
 package org.distributed.conduit;
 
 import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.channel.socket.DatagramChannel;
-import io.netty.channel.socket.nio.NioDatagramChannel;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * A UDP server.
+ * <p>
+ * With the native transport and a sharable handler, it binds one socket per event loop of its group to the same port
+ * (SO_REUSEPORT), the kernel spreading the peers among them. Otherwise all the datagrams are read by a single event
+ * loop.
+ */
 public class UDPServer extends AbstractConduit<ByteTransfer, DatagramChannel> {
 
     private static final Logger log = LoggerFactory.getLogger(TCPServer.class);
 
     private final SimpleChannelInboundHandler<ByteTransfer> handler;
 
-    private ChannelFuture channelFuture;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private final List<Channel> channels = new ArrayList<>();
+    private NioGroupFactory factory;
     private EventLoopGroup group;
 
     public UDPServer( //
 	    SimpleChannelInboundHandler<ByteTransfer> handler, //
 	    String hostname, //
 	    int port) throws InterruptedException {
-	this(handler, hostname, port, NioGroupFactory.defau1t);
+	this(handler, hostname, port, NioGroupFactory.shared);
     }
 
     public UDPServer( //
@@ -31,31 +48,96 @@ public class UDPServer extends AbstractConduit<ByteTransfer, DatagramChannel> {
 	    String hostname, //
 	    int port, //
 	    NioGroupFactory factory) throws InterruptedException {
+	this(handler, hostname, port, factory, TransportOptions.defaults());
+    }
+
+    public UDPServer( //
+	    SimpleChannelInboundHandler<ByteTransfer> handler, //
+	    String hostname, //
+	    int port, //
+	    NioGroupFactory factory, //
+	    TransportOptions options) throws InterruptedException {
 
-	super(hostname, port, Protocol.UDP);
+	super(hostname, port, Protocol.UDP, options);
 	this.handler = handler;
+	this.factory = factory;
 
 	group = factory.createChildrenGroup();
 
 	final Bootstrap server = new Bootstrap();
 	server.group(group) //
-		.channel(NioDatagramChannel.class) //
+		.channel(Transport.of(group).datagramChannel()) //
+		.option(ChannelOption.SO_REUSEADDR, true) //
+		.option(ChannelOption.WRITE_BUFFER_WATER_MARK, options.getWriteWatermarks()) //
 		.handler(this);
 
-	this.channelFuture = server.bind(hostname, port).sync();
+	final int sockets = handler != null && handler.isSharable() ? size(group) : 1;
+	final boolean reusePort = sockets > 1 && Transport.of(group).reusePort(server);
+
+	try {
+	    final Channel first = server.bind(hostname, port).sync().channel();
+	    channels.add(first);
+	    if (reusePort) {
+		// the actual port, if it was ephemeral
+		final int bound = ((InetSocketAddress) first.localAddress()).getPort();
+		for (int i = 1; i < sockets; i++) {
+		    channels.add(server.bind(hostname, bound).sync().channel());
+		}
+	    }
+	} catch (Throwable e) {
+	    // closes the sockets already bound and releases the group
+	    close();
+	    throw e;
+	}
+	metrics.gauge("sockets", channels::size) //
+		.gauge("queued", options.getExecution()::getQueued) //
+		.gauge("rejected", options.getExecution()::getRejected);
+	options.getMetrics().register(metrics);
+    }
+
+    private static int size(EventLoopGroup group) {
+	int size = 0;
+	for (Iterator<?> it = group.iterator(); it.hasNext(); it.next()) {
+	    size++;
+	}
+	return size;
+    }
+
+    /**
+     * The number of sockets bound to the port of this server.
+     */
+    public int getSockets() {
+	return channels.size();
     }
 
     @Override
     public void close() {
+	if (!closed.compareAndSet(false, true)) {
+	    return;
+	}
 	try {
-	    group.shutdownGracefully();
-	    channelFuture.channel().closeFuture().sync();
+	    // the group might be shared, close the channels explicitly
+	    for (Channel channel : channels) {
+		final ChannelFuture closing = channel.close();
+		if (!channel.eventLoop().inEventLoop()) {
+		    closing.sync();
+		}
+	    }
 	} catch (InterruptedException e) {
 	    log.warn("Thread interrupted while trying to close server.", e);
 	    Thread.interrupted(); // clean interrupt status
+	} finally {
+	    options.getMetrics().unregister(metrics);
+	    factory.release(group);
 	}
     }
 
+    @Override
+    protected void initChannel(DatagramChannel ch) {
+	super.initChannel(ch);
+	options.getExecution().install(ch.pipeline(), handler);
+    }
+
     @Override
     protected SimpleChannelInboundHandler<ByteTransfer> getHandler() {
 	return handler;
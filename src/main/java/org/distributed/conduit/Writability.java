@@ -0,0 +1,88 @@
+package org.distributed.conduit;
+
+import io.netty.channel.Channel;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * Tells the users of a conduit when its channel takes writes again, see {@link Conduit#whenWritable()}.
+ * <p>
+ * A channel stops being writable once more than the high watermark is waiting in its outbound buffer, and becomes
+ * writable again below the low watermark (see {@link TransportOptions#writeWatermarks(int, int)}).
+ */
+class Writability {
+
+    private static final CompletableFuture<Void> writable = CompletableFuture.completedFuture(null);
+
+    private final Queue<CompletableFuture<Void>> waiting = new ConcurrentLinkedQueue<>();
+    private final List<Consumer<Boolean>> listeners = new CopyOnWriteArrayList<>();
+
+    CompletionStage<Void> when(Channel channel) {
+	if (channel.isWritable()) {
+	    return writable;
+	}
+	final CompletableFuture<Void> future = new CompletableFuture<>();
+	waiting.add(future);
+	// the channel may have changed before the future was queued
+	release(channel);
+	return future;
+    }
+
+    /**
+     * Waits for the channel to be writable, at most <code>timeoutNanos</code> if positive. It gives up silently.
+     */
+    void await(Channel channel, long timeoutNanos) {
+	if (channel.isWritable() || channel.eventLoop().inEventLoop()) {
+	    return;
+	}
+	final CompletableFuture<Void> future = when(channel).toCompletableFuture();
+	try {
+	    if (timeoutNanos > 0) {
+		future.get(timeoutNanos, TimeUnit.NANOSECONDS);
+	    } else {
+		future.get();
+	    }
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	} catch (ExecutionException | TimeoutException e) {
+	    // the write fails or goes through anyway
+	}
+    }
+
+    void addListener(Consumer<Boolean> listener) {
+	listeners.add(listener);
+    }
+
+    /**
+     * Called by the event loop when the writability of the channel changed.
+     */
+    void changed(Channel channel) {
+	release(channel);
+	final boolean isWritable = channel.isWritable();
+	for (Consumer<Boolean> listener : listeners) {
+	    listener.accept(isWritable);
+	}
+    }
+
+    void release(Channel channel) {
+	if (channel.isWritable()) {
+	    for (CompletableFuture<Void> future; (future = waiting.poll()) != null;) {
+		future.complete(null);
+	    }
+	} else if (!channel.isActive()) {
+	    for (CompletableFuture<Void> future; (future = waiting.poll()) != null;) {
+		future.completeExceptionally(new ClosedChannelException());
+	    }
+	}
+    }
+}
@@ -0,0 +1,63 @@
+package org.distributed.dht;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+
+/**
+ * A {@link Storage} of byte arrays in a weighted Guava cache. The weight is kept as a running total, added on put and
+ * subtracted when a value is replaced, evicted or dropped.
+ */
+final class HeapStorage implements Storage {
+
+    private final Cache<Id, byte[]> cache;
+    private final LongAdder weight = new LongAdder();
+
+    HeapStorage(long maxWeight) {
+	this.cache = CacheBuilder.newBuilder() //
+		.weigher((Id key, byte[] value) -> value.length) //
+		.maximumWeight(maxWeight) //
+		.removalListener(this::onRemoval) //
+		.build();
+    }
+
+    @Override
+    public void put(Id key, ByteBuf value) {
+	final byte[] bytes = ByteBufUtil.getBytes(value);
+	// added first, the removal of the value may be notified within the put
+	weight.add(bytes.length);
+	cache.put(key, bytes);
+    }
+
+    @Override
+    public ByteBuf get(Id key, ByteBufAllocator alloc) {
+	final byte[] value = cache.getIfPresent(key);
+	return value == null ? null : Unpooled.wrappedBuffer(value);
+    }
+
+    @Override
+    public long size() {
+	return cache.size();
+    }
+
+    @Override
+    public long weight() {
+	return weight.sum();
+    }
+
+    @Override
+    public void close() {
+	cache.invalidateAll();
+    }
+
+    private void onRemoval(RemovalNotification<Id, byte[]> removal) {
+	weight.add(-removal.getValue().length);
+    }
+}
@@ -0,0 +1,225 @@
+package org.distributed.dht;
+
+import java.math.BigInteger;
+
+import com.esotericsoftware.kryo.DefaultSerializer;
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * An immutable 160-bit identifier of a key or a node, an unsigned integer held in two longs and an int.
+ * <p>
+ * Comparisons, on the line or on the ring, never allocate. On the wire an id takes 20 bytes, big-endian.
+ */
+@DefaultSerializer(Id.WireSerializer.class)
+public final class Id implements Comparable<Id> {
+
+    public static final int BITS = 160;
+    public static final int BYTES = BITS / Byte.SIZE;
+
+    private static final long LOW_MASK = 0xFFFFFFFFL;
+
+    // bits 159..96, 95..32 and 31..0
+    private final long high;
+    private final long middle;
+    private final int low;
+
+    private Id(long high, long middle, int low) {
+	this.high = high;
+	this.middle = middle;
+	this.low = low;
+    }
+
+    /**
+     * The id of the 20 given bytes, big-endian.
+     */
+    public static Id of(byte[] bytes) {
+	if (bytes.length != BYTES) {
+	    throw new IllegalArgumentException("Expected " + BYTES + " bytes, got " + bytes.length + ".");
+	}
+	return new Id(read(bytes, 0, 8), read(bytes, 8, 8), (int) read(bytes, 16, 4));
+    }
+
+    /**
+     * The id of the given integer, modulo 2^160.
+     */
+    public static Id of(BigInteger value) {
+	return new Id(value.shiftRight(96).longValue(), value.shiftRight(32).longValue(), value.intValue());
+    }
+
+    /**
+     * The id of the given 40 hexadecimal digits, as returned by {@link #toString()}.
+     */
+    public static Id parse(String hex) {
+	if (hex.length() != 2 * BYTES) {
+	    throw new IllegalArgumentException("Expected " + 2 * BYTES + " hexadecimal digits, got '" + hex + "'.");
+	}
+	return new Id(Long.parseUnsignedLong(hex.substring(0, 16), 16), Long.parseUnsignedLong(hex.substring(16, 32),
+		16), Integer.parseUnsignedInt(hex.substring(32), 16));
+    }
+
+    // big-endian
+    private static long read(byte[] bytes, int offset, int length) {
+	long value = 0;
+	for (int i = offset; i < offset + length; i++) {
+	    value = (value << 8) | (bytes[i] & 0xFF);
+	}
+	return value;
+    }
+
+    /**
+     * This id plus <code>2^bit</code>, modulo 2^160.
+     */
+    public Id plusPowerOfTwo(int bit) {
+	if (bit < 32) {
+	    final long sum = (low & LOW_MASK) + (1L << bit);
+	    return carry(high, middle, sum);
+	} else if (bit < 96) {
+	    final long sum = middle + (1L << (bit - 32));
+	    return new Id(Long.compareUnsigned(sum, middle) < 0 ? high + 1 : high, sum, low);
+	}
+	return new Id(high + (1L << (bit - 96)), middle, low);
+    }
+
+    private static Id carry(long high, long middle, long low) {
+	if (low <= LOW_MASK) {
+	    return new Id(high, middle, (int) low);
+	}
+	return new Id(middle == -1L ? high + 1 : high, middle + 1, (int) low);
+    }
+
+    /**
+     * Whether this id is in <code>(from, to]</code> clockwise on the ring. The whole ring when both ends are equal.
+     */
+    public boolean isBetween(Id from, Id to) {
+	final int order = from.compareTo(to);
+	if (order < 0) {
+	    return compareTo(from) > 0 && compareTo(to) <= 0;
+	}
+	// around zero
+	return order == 0 || compareTo(from) > 0 || compareTo(to) <= 0;
+    }
+
+    /**
+     * Compares <code>|a - ref|</code> and <code>|b - ref|</code>, the distances on the line from the reference.
+     */
+    public static int compareDistances(Id ref, Id a, Id b) {
+	final boolean aAbove = a.compareTo(ref) >= 0;
+	final boolean bAbove = b.compareTo(ref) >= 0;
+	final Id aLarge = aAbove ? a : ref;
+	final Id aSmall = aAbove ? ref : a;
+	final Id bLarge = bAbove ? b : ref;
+	final Id bSmall = bAbove ? ref : b;
+
+	// subtracted from the low bits, borrowing from the next part
+	final long aLow = (aLarge.low & LOW_MASK) - (aSmall.low & LOW_MASK);
+	final long bLow = (bLarge.low & LOW_MASK) - (bSmall.low & LOW_MASK);
+	final long aMiddle = aLarge.middle - aSmall.middle - (aLow < 0 ? 1 : 0);
+	final long bMiddle = bLarge.middle - bSmall.middle - (bLow < 0 ? 1 : 0);
+	final long aHigh = aLarge.high - aSmall.high - (borrows(aLarge.middle, aSmall.middle, aLow < 0) ? 1 : 0);
+	final long bHigh = bLarge.high - bSmall.high - (borrows(bLarge.middle, bSmall.middle, bLow < 0) ? 1 : 0);
+
+	int cmp = Long.compareUnsigned(aHigh, bHigh);
+	if (cmp == 0) {
+	    cmp = Long.compareUnsigned(aMiddle, bMiddle);
+	}
+	return cmp == 0 ? Long.compare(aLow & LOW_MASK, bLow & LOW_MASK) : cmp;
+    }
+
+    // whether large - small - borrow is negative, on 64 unsigned bits
+    private static boolean borrows(long large, long small, boolean borrow) {
+	final int cmp = Long.compareUnsigned(large, small);
+	return cmp < 0 || (cmp == 0 && borrow);
+    }
+
+    public BigInteger toBigInteger() {
+	return new BigInteger(1, toBytes());
+    }
+
+    /**
+     * The 20 bytes of this id, big-endian.
+     */
+    public byte[] toBytes() {
+	final byte[] bytes = new byte[BYTES];
+	for (int i = 0; i < 8; i++) {
+	    bytes[i] = (byte) (high >>> (56 - 8 * i));
+	    bytes[8 + i] = (byte) (middle >>> (56 - 8 * i));
+	}
+	for (int i = 0; i < 4; i++) {
+	    bytes[16 + i] = (byte) (low >>> (24 - 8 * i));
+	}
+	return bytes;
+    }
+
+    @Override
+    public int compareTo(Id o) {
+	int cmp = Long.compareUnsigned(high, o.high);
+	if (cmp == 0) {
+	    cmp = Long.compareUnsigned(middle, o.middle);
+	}
+	return cmp == 0 ? Integer.compareUnsigned(low, o.low) : cmp;
+    }
+
+    long high() {
+	return high;
+    }
+
+    long middle() {
+	return middle;
+    }
+
+    int low() {
+	return low;
+    }
+
+    @Override
+    public int hashCode() {
+	return hashCode(high, middle, low);
+    }
+
+    static int hashCode(long high, long middle, int low) {
+	return 31 * (31 * Long.hashCode(high) + Long.hashCode(middle)) + low;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+	if (this == obj)
+	    return true;
+	if (obj == null || getClass() != obj.getClass())
+	    return false;
+	final Id other = (Id) obj;
+	return high == other.high && middle == other.middle && low == other.low;
+    }
+
+    /**
+     * The 40 hexadecimal digits of this id.
+     */
+    @Override
+    public String toString() {
+	return String.format("%016x%016x%08x", high, middle, low);
+    }
+
+    /**
+     * Writes the 20 bytes of an id.
+     */
+    public static final class WireSerializer extends Serializer<Id> {
+
+	public WireSerializer() {
+	    setImmutable(true);
+	}
+
+	@Override
+	public void write(Kryo kryo, Output output, Id id) {
+	    output.writeLong(id.high);
+	    output.writeLong(id.middle);
+	    output.writeInt(id.low);
+	}
+
+	@Override
+	public Id read(Kryo kryo, Input input, Class<Id> type) {
+	    return new Id(input.readLong(), input.readLong(), input.readInt());
+	}
+    }
+}
@@ -1,14 +1,24 @@
 package org.distributed.dht;
 
-import java.math.BigInteger;
-
 import com.google.common.base.Charsets;
+import com.google.common.hash.Hasher;
 import com.google.common.hash.Hashing;
 
 public class Keys {
 
     @SuppressWarnings("deprecation")
-    public static BigInteger of(String s) {
-	return new BigInteger(Hashing.sha1().hashString(s, Charsets.UTF_8).toString(), 16);
+    public static Id of(String s) {
+	return Id.of(Hashing.sha1().hashString(s, Charsets.UTF_8).asBytes());
+    }
+
+    /**
+     * The id of the node listening on the given host and port.
+     */
+    public static Id of(String hostname, int port) {
+	@SuppressWarnings("deprecation")
+	final Hasher hasher = Hashing.sha1().newHasher();
+	hasher.putString(hostname, Charsets.UTF_8);
+	hasher.putInt(port);
+	return Id.of(hasher.hash().asBytes());
     }
 }
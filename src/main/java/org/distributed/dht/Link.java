@@ -0,0 +1,67 @@
+package org.distributed.dht;
+
+import com.esotericsoftware.kryo.DefaultSerializer;
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * The address and the id of a node, as carried by the messages. On the wire the id takes its 20 bytes.
+ */
+@DefaultSerializer(Link.WireSerializer.class)
+public final class Link {
+
+    private final String hostname;
+    private final int port;
+    private final Id id;
+
+    private Link(String hostname, int port, Id id) {
+	this.hostname = hostname;
+	this.port = port;
+	this.id = id;
+    }
+
+    public static Link of(Node node) {
+	return new Link(node.getHostname(), node.getPort(), node.getId());
+    }
+
+    public String getHostname() {
+	return hostname;
+    }
+
+    public int getPort() {
+	return port;
+    }
+
+    public Id getId() {
+	return id;
+    }
+
+    @Override
+    public String toString() {
+	return hostname + ":" + port + ":" + id;
+    }
+
+    /**
+     * Writes the hostname, the port as a variable length int and the 20 bytes of the id.
+     */
+    public static final class WireSerializer extends Serializer<Link> {
+
+	public WireSerializer() {
+	    setImmutable(true);
+	}
+
+	@Override
+	public void write(Kryo kryo, Output output, Link link) {
+	    output.writeString(link.hostname);
+	    output.writeInt(link.port, true);
+	    kryo.writeObject(output, link.id);
+	}
+
+	@Override
+	public Link read(Kryo kryo, Input input, Class<Link> type) {
+	    return new Link(input.readString(), input.readInt(true), kryo.readObject(input, Id.class));
+	}
+    }
+}
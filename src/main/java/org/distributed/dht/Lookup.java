@@ -0,0 +1,45 @@
+package org.distributed.dht;
+
+
+/**
+ * Where a key falls on the ring: between its predecessor and its successor, found in a number of hops.
+ */
+public final class Lookup {
+
+    private final Node predecessor;
+    private final Node successor;
+    private final int hops;
+
+    Lookup(Node predecessor, Node successor, int hops) {
+	this.predecessor = predecessor;
+	this.successor = successor;
+	this.hops = hops;
+    }
+
+    public Node getPredecessor() {
+	return predecessor;
+    }
+
+    public Node getSuccessor() {
+	return successor;
+    }
+
+    /**
+     * The number of nodes asked for the successor of the key.
+     */
+    public int getHops() {
+	return hops;
+    }
+
+    /**
+     * Whether the key falls in <code>(predecessor, successor]</code>.
+     */
+    boolean contains(Id key) {
+	return key.isBetween(predecessor.getId(), successor.getId());
+    }
+
+    @Override
+    public String toString() {
+	return "(" + predecessor + ", " + successor + "] in " + hops + " hop(s)";
+    }
+}
@@ -1,6 +1,5 @@
 package org.distributed.dht;
 
-import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -16,23 +15,50 @@ public class Message {
 	 */
 	SYNC_PUSH, //
 	/**
-	 * Puts a { key, value } pair into the remote storage.
+	 * Puts a { key, value } pair into the remote storage. Answered with nothing once stored, with a
+	 * {@link #REDIRECT} if the remote node does not own the key.
 	 */
 	PUT, //
 	/**
-	 * Gets a value from the remote storage.
+	 * Gets a value from the remote storage. Answered with the value, with a {@link #REDIRECT} if the remote node
+	 * does not own the key.
 	 */
-	GET
+	GET, //
+	/**
+	 * Asks the remote node for the successor of a key. It answers with itself and its successor if the key falls
+	 * between them, with the closest node it knows preceding the key otherwise.
+	 */
+	FIND_SUCCESSOR, //
+	/**
+	 * Puts { key, value } pairs into the remote storage. Answered with the keys the remote node does not own, the
+	 * other pairs being stored.
+	 */
+	PUT_ALL, //
+	/**
+	 * Gets values from the remote storage. Answered with the values in the order of the keys, and the keys the
+	 * remote node does not own.
+	 */
+	GET_ALL, //
+	/**
+	 * The answer of a node to a request for a key it does not own. It holds the predecessor and the successor of
+	 * the key if the node is one of them.
+	 */
+	REDIRECT
     };
 
     private MessageType type;
-    private String[] links;
+    private Link[] links;
 
     // V get (K)
     // put (K, V)
-    private BigInteger key;
+    private Id key;
     private Object value;
 
+    // getAll (K...)
+    // putAll (K..., V...)
+    private Id[] keys;
+    private Object[] values;
+
     public static Message sync() {
 	final Message message = new Message();
 	message.type = MessageType.SYNC_PULL;
@@ -51,7 +77,7 @@ public class Message {
 	return message;
     }
 
-    public static Message put(BigInteger key, Object value) {
+    public static Message put(Id key, Object value) {
 	final Message message = new Message();
 	message.type = MessageType.PUT;
 	message.setKey(key);
@@ -59,13 +85,95 @@ public class Message {
 	return message;
     }
 
-    public static Object get(BigInteger key) {
+    public static Object get(Id key) {
 	final Message message = new Message();
 	message.type = MessageType.GET;
 	message.setKey(key);
 	return message;
     }
 
+    public static Message putAll(Id[] keys, Object[] values) {
+	final Message message = new Message();
+	message.type = MessageType.PUT_ALL;
+	message.keys = keys;
+	message.values = values;
+	return message;
+    }
+
+    public static Message getAll(Id[] keys) {
+	final Message message = new Message();
+	message.type = MessageType.GET_ALL;
+	message.keys = keys;
+	return message;
+    }
+
+    /**
+     * The answer to a {@link MessageType#PUT_ALL} or a {@link MessageType#GET_ALL}: the stored values of the keys, in
+     * order, and the keys the node does not own.
+     */
+    public static Message batch(MessageType type, Object[] values, Id[] redirected) {
+	final Message message = new Message();
+	message.type = type;
+	message.keys = redirected;
+	message.values = values;
+	return message;
+    }
+
+    public static Message findSuccessor(Id key) {
+	final Message message = new Message();
+	message.type = MessageType.FIND_SUCCESSOR;
+	message.setKey(key);
+	return message;
+    }
+
+    /**
+     * The answer of a node preceding the key, whose successor follows it.
+     */
+    public static Message successor(Node node, Node successor) {
+	final Message message = new Message();
+	message.type = MessageType.FIND_SUCCESSOR;
+	message.links = new Link[] { Link.of(node), Link.of(successor) };
+	return message;
+    }
+
+    /**
+     * The answer of a node knowing a node closer to the key.
+     */
+    public static Message closer(Node node) {
+	final Message message = new Message();
+	message.type = MessageType.FIND_SUCCESSOR;
+	message.links = new Link[] { Link.of(node) };
+	return message;
+    }
+
+    /**
+     * The answer of a node not owning a key between the predecessor and the successor.
+     */
+    public static Message redirect(Node predecessor, Node successor) {
+	final Message message = new Message();
+	message.type = MessageType.REDIRECT;
+	message.links = new Link[] { Link.of(predecessor), Link.of(successor) };
+	return message;
+    }
+
+    /**
+     * The answer of a node not owning a key out of its own range.
+     */
+    public static Message redirect() {
+	final Message message = new Message();
+	message.type = MessageType.REDIRECT;
+	message.links = new Link[0];
+	return message;
+    }
+
+    /**
+     * Whether this {@link MessageType#FIND_SUCCESSOR} or {@link MessageType#REDIRECT} answer holds the successor
+     * (positions 0 and 1 of the links are the predecessor and the successor of the key), or not.
+     */
+    public boolean isResolved() {
+	return links.length == 2;
+    }
+
     public MessageType getType() {
 	return type;
     }
@@ -74,11 +182,11 @@ public class Message {
 	this.type = type;
     }
 
-    public BigInteger getKey() {
+    public Id getKey() {
 	return key;
     }
 
-    public void setKey(BigInteger key) {
+    public void setKey(Id key) {
 	this.key = key;
     }
 
@@ -90,42 +198,34 @@ public class Message {
 	this.value = value;
     }
 
+    public Id[] getKeys() {
+	return keys;
+    }
+
+    public Object[] getValues() {
+	return values;
+    }
+
     /**
-     * A String array of the known links of this node in the following form <code>hostname:port:id</code>.
+     * The known links of this node.
      * <p>
      * Position 0 is always the current node.<br>
      * Position 1 is always the previous link or <code>null</code> if no previous. <br>
-     * Position 0 is always the next link or <code>null</code> if no next. <br>
+     * Position 2 is always the next link or <code>null</code> if no next. <br>
      * Positions 3..n are the known fingers.
      */
-    public String[] getNodeLinks() {
+    public Link[] getNodeLinks() {
 	return links;
     }
 
     public void setNode(Node node) {
-	final List<String> links = new ArrayList<>();
-	links.add(node.getHostname() + ":" + node.getPort() + ":" + node.getId());
-	if (node.getPrev() != null) {
-	    links.add(node.getPrev().getHostname() + //
-		    ":" + //
-		    node.getPrev().getPort() + //
-		    ":" + //
-		    node.getPrev().getId());
-	} else {
-	    links.add(null);
-	}
-	if (node.getNext() != null) {
-	    links.add(node.getNext().getHostname() + //
-		    ":" + //
-		    node.getNext().getPort() + //
-		    ":" + //
-		    node.getNext().getId());
-	} else {
-	    links.add(null);
-	}
+	final List<Link> links = new ArrayList<>();
+	links.add(Link.of(node));
+	links.add(node.getPrev() != null ? Link.of(node.getPrev()) : null);
+	links.add(node.getNext() != null ? Link.of(node.getNext()) : null);
 	for (Node finger : node.getFingers()) {
-	    links.add(finger.getHostname() + ":" + finger.getPort() + ":" + finger.getId());
+	    links.add(Link.of(finger));
 	}
-	this.links = links.toArray(new String[links.size()]);
+	this.links = links.toArray(new Link[links.size()]);
     }
 }
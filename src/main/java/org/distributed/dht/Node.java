@@ -1,86 +1,132 @@
 package org.distributed.dht;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandler.Sharable;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.util.concurrent.DefaultThreadFactory;
 
-import java.math.BigInteger;
+import java.net.ConnectException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.NavigableMap;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
 
-import org.dev.serialize.impl.KryoSerializer;
 import org.distributed.conduit.ByteTransfer;
 import org.distributed.conduit.Conduit;
-import org.distributed.conduit.ConduitFactory;
 import org.distributed.conduit.ConduitPool;
+import org.distributed.conduit.ExecutionStage;
 import org.distributed.conduit.NioGroupFactory;
 import org.distributed.conduit.TCPConduit;
 import org.distributed.conduit.TCPServer;
+import org.distributed.conduit.TransferSerializer;
+import org.distributed.conduit.TransportOptions;
+import org.distributed.dht.Message.MessageType;
+import org.distributed.metrics.Histogram;
+import org.distributed.metrics.MetricSet;
+import org.distributed.metrics.MetricsRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.base.Charsets;
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.Weigher;
-import com.google.common.hash.Hasher;
-import com.google.common.hash.Hashing;
 
+/**
+ * A node of a Chord ring.
+ * <p>
+ * Every node knows its predecessor, its successor and its fingers, the successors of <code>id + 2^i</code>. A lookup
+ * asks the closest node it knows preceding the key for a closer one, until a node whose successor follows the key:
+ * O(log N) hops once the fingers are fixed. The fingers of a started node are fixed when it joins, then periodically.
+ * <p>
+ * A key is stored on the closest node to it, its predecessor or its successor. The ranges resolved by the lookups are
+ * cached, so the requests for a key of a known range go straight to its owner. A node receiving a request for a key it
+ * does not own redirects it, correcting the cache.
+ */
 public class Node implements Comparable<Node> {
 
+    private static final Logger log = LoggerFactory.getLogger(Node.class);
+
     private static final int STANDARD_CACHE_SIZE = 100 * 1024 * 1024;
+    private static final int MAX_QUEUED_REQUESTS = 4096;
+    private static final int STANDARD_ROUTING_CACHE_SIZE = 4096;
+    // a request redirected or retried further meets a changing ring
+    private static final int MAX_REDIRECTS = 3;
+
+    // a lookup going further is lost in a broken ring
+    private static final int MAX_HOPS = 2 * Id.BITS;
+    private static final long FINGERS_REFRESH_SECONDS = 10;
+    private static final long LEAVE_TIMEOUT_SECONDS = 5;
+
+    private static final ScheduledExecutorService maintenance = Executors.newSingleThreadScheduledExecutor(
+	    new DefaultThreadFactory("node-maintenance", true));
 
     private transient TCPServer server;
+    private transient ExecutorService workers;
+    private transient MetricsRegistry registry = MetricsRegistry.none;
+    private transient MetricSet metrics;
+    private transient final Map<MessageType, Histogram> serviceTimes = new EnumMap<>(MessageType.class);
+    private transient Histogram lookupHops;
+    private transient ScheduledFuture<?> refresh;
+    private transient final AtomicBoolean refreshing = new AtomicBoolean();
 
     private final String hostname;
     private final int port;
-    private final BigInteger id;
+    private final Id id;
 
-    private transient Node prev = null;
-    private transient Node next = null;
+    private transient volatile Node prev = null;
+    private transient volatile Node next = null;
 
-    private transient NavigableMap<BigInteger, Node> fingers = Collections.synchronizedNavigableMap(new TreeMap<>());
-    private transient final Weigher<BigInteger, byte[]> weigher = (key, value) -> value.length;
+    private transient NavigableMap<Id, Node> fingers = Collections.synchronizedNavigableMap(new TreeMap<>());
 
+    // a heap one by default, set when the node starts
     @VisibleForTesting
-    transient Cache<BigInteger, byte[]> cache = CacheBuilder.newBuilder() //
-	    .weigher(weigher) //
-	    .maximumWeight(STANDARD_CACHE_SIZE) //
-	    .build();
+    transient volatile Storage storage;
+
+    // created on first use, most proxies of remote nodes never route a request
+    private transient volatile RoutingCache routes;
+    private transient final LongAdder redirects = new LongAdder();
 
     private transient final ConduitPool pool;
 
     public Node(String hostname, int port) throws InterruptedException {
 	this.hostname = hostname;
 	this.port = port;
-	this.id = generateId(hostname, port);
+	this.id = Keys.of(hostname, port);
 
-	final ConduitFactory<String> factory = (url) -> {
-	    try {
-		final String[] hostPort = url.split(":");
-		return new TCPConduit(hostPort[0], Integer.valueOf(hostPort[1]), NioGroupFactory.minimal);
-	    } catch (Exception e) {
-		throw new IllegalArgumentException("Cannot create. Expected format 'hostname:port'", e);
-	    }
-	};
-	this.pool = new ConduitPool(factory);
+	this.pool = new ConduitPool(TCPConduit.factory(NioGroupFactory.shared, TransportOptions.defaults()));
     }
 
     @VisibleForTesting
     Node(String hostname, int port, ConduitPool pool) throws InterruptedException {
 	this.hostname = hostname;
 	this.port = port;
-	this.id = generateId(hostname, port);
+	this.id = Keys.of(hostname, port);
 	this.pool = pool;
     }
 
-    private Node(String hostname, int port, BigInteger id, ConduitPool pool) throws InterruptedException {
+    private Node(String hostname, int port, Id id, ConduitPool pool) {
 	this.hostname = hostname;
 	this.port = port;
 	this.id = id;
@@ -88,52 +134,195 @@ public class Node implements Comparable<Node> {
     }
 
     public Node start() throws InterruptedException {
-	server = new TCPServer(new Handler(), hostname, port);
+	return start(MetricsRegistry.none);
+    }
+
+    /**
+     * Starts the node, publishing the metrics of the node, of its server and of its conduit pool to the registry.
+     */
+    public Node start(MetricsRegistry registry) throws InterruptedException {
+	if (storage == null) {
+	    storage = Storage.heap(STANDARD_CACHE_SIZE);
+	}
+	this.registry = registry;
+	this.metrics = new MetricSet("Node", hostname + ':' + port);
+	for (MessageType type : MessageType.values()) {
+	    serviceTimes.put(type, metrics.histogram("service." + type));
+	}
+	lookupHops = metrics.histogram("lookup.hops");
+	metrics.gauge("routes.size", () -> routes().size()) //
+		.gauge("routes.hits", () -> routes().getHits()) //
+		.gauge("routes.misses", () -> routes().getMisses()) //
+		.gauge("routes.redirects", redirects::sum) //
+		.gauge("storage.size", () -> storage.size()) //
+		.gauge("storage.weight", () -> storage.weight());
+	// requests are deserialized and cached off the event loops, in order per connection
+	workers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new DefaultThreadFactory(
+		"node-worker", true));
+	final ExecutionStage stage = ExecutionStage.ordered(workers, MAX_QUEUED_REQUESTS,
+		ExecutionStage.Rejection.PAUSE_READS);
+	final TransportOptions options = TransportOptions.defaults().execution(stage).metrics(registry);
+	server = new TCPServer(new Handler(), hostname, port, NioGroupFactory.shared, options);
+	registry.register(metrics);
+	registry.register(pool.getMetrics());
+	refresh = maintenance.scheduleWithFixedDelay(this::refreshFingers, FINGERS_REFRESH_SECONDS,
+		FINGERS_REFRESH_SECONDS, TimeUnit.SECONDS);
 	return this;
     }
 
+    /**
+     * Leaves the ring, then stops serving. The nodes routing through fingers to this one find their way around it.
+     */
     public void stop() {
+	refresh.cancel(false);
+	leave();
+	crash();
+    }
+
+    /**
+     * Stops serving without leaving the ring, as a crashed node.
+     */
+    @VisibleForTesting
+    void crash() {
+	refresh.cancel(false);
 	server.close();
+	workers.shutdown();
+	storage.close();
+	registry.unregister(metrics);
+	registry.unregister(pool.getMetrics());
+    }
+
+    /**
+     * The time spent handling each type of message, in nanoseconds, the hops of the lookups started by this node, the
+     * use of its routing cache and of its storage. <code>null</code> until the node is started.
+     */
+    public MetricSet getMetrics() {
+	return metrics;
     }
 
+    /**
+     * Replaces the storage by an empty heap one, of the given maximum weight in bytes.
+     */
     public void resizeCache(long size) {
-	cache = CacheBuilder.newBuilder() //
-		.weigher(weigher) //
-		.maximumWeight(size) //
-		.build();
+	storage(Storage.heap(size));
     }
 
-    private BigInteger generateId(String hostname, int port) {
-	@SuppressWarnings("deprecation")
-	final Hasher hasher = Hashing.sha1().newHasher();
-	hasher.putString(hostname, Charsets.UTF_8);
-	hasher.putInt(port);
-	return new BigInteger(hasher.hash().toString(), 16);
+    /**
+     * Replaces the storage by the given one, closing the current one if any. The storage is closed when the node
+     * stops.
+     */
+    public Node storage(Storage storage) {
+	final Storage previous = this.storage;
+	this.storage = storage;
+	if (previous != null) {
+	    previous.close();
+	}
+	return this;
     }
 
-    private final KryoSerializer serializer = new KryoSerializer();
-    private final Function<byte[], Message> toMsg = bytes -> serializer.deserialize(bytes, Message.class);
+    /**
+     * Replaces the routing cache by an empty one, holding at most the given number of ranges.
+     */
+    public void resizeRoutingCache(long ranges) {
+	routes = new RoutingCache(ranges);
+    }
+
+    private final TransferSerializer serializer = TransferSerializer.defaults;
 
     @Sharable
     class Handler extends SimpleChannelInboundHandler<ByteTransfer> {
 
 	@Override
 	protected void channelRead0(ChannelHandlerContext ctx, ByteTransfer msg) throws Exception {
-	    final Message message = serializer.deserialize(msg.payload, Message.class);
+	    final long start = System.nanoTime();
+	    final Message message = serializer.deserialize(msg.content(), Message.class);
 	    switch (message.getType()) {
 	    case SYNC_PULL:
-		ctx.writeAndFlush(new ByteTransfer(msg.id, serializer.serialize(Message.dto(Node.this))));
+		ctx.writeAndFlush(new ByteTransfer(msg.id, serializer.serialize(ctx.alloc(), Message.dto(Node.this))));
 		break;
 	    case SYNC_PUSH:
 		updateNodeLinks(Node.this, message);
 		break;
 	    case PUT:
-		cache.put(message.getKey(), serializer.serialize(message.getValue()));
+		if (!owns(message.getKey())) {
+		    redirect(ctx, msg.id, message.getKey());
+		    break;
+		}
+		store(ctx, message.getKey(), message.getValue());
+		ctx.writeAndFlush(new ByteTransfer(msg.id, (byte[]) null));
 		break;
 	    case GET:
-		ctx.writeAndFlush(new ByteTransfer(msg.id, cache.getIfPresent(message.getKey())));
+		if (!owns(message.getKey())) {
+		    redirect(ctx, msg.id, message.getKey());
+		    break;
+		}
+		final ByteBuf value = storage.get(message.getKey(), ctx.alloc());
+		ctx.writeAndFlush(new ByteTransfer(msg.id, value == null ? Unpooled.EMPTY_BUFFER : value));
+		break;
+	    case PUT_ALL:
+		putAll(ctx, msg.id, message.getKeys(), message.getValues());
 		break;
+	    case GET_ALL:
+		getAll(ctx, msg.id, message.getKeys());
+		break;
+	    case FIND_SUCCESSOR:
+		ctx.writeAndFlush(new ByteTransfer(msg.id, serializer.serialize(ctx.alloc(), route(message.getKey()))));
+		break;
+	    }
+	    serviceTimes.get(message.getType()).record(System.nanoTime() - start);
+	}
+
+	private void putAll(ChannelHandlerContext ctx, int id, Id[] keys, Object[] values) {
+	    final List<Id> redirected = new ArrayList<>();
+	    for (int i = 0; i < keys.length; i++) {
+		if (owns(keys[i])) {
+		    store(ctx, keys[i], values[i]);
+		} else {
+		    redirected.add(keys[i]);
+		}
 	    }
+	    final Message answer = Message.batch(MessageType.PUT_ALL, null, redirected.toArray(new Id[0]));
+	    ctx.writeAndFlush(new ByteTransfer(id, serializer.serialize(ctx.alloc(), answer)));
+	}
+
+	private void getAll(ChannelHandlerContext ctx, int id, Id[] keys) {
+	    final List<Id> redirected = new ArrayList<>();
+	    final Object[] values = new Object[keys.length];
+	    for (int i = 0; i < keys.length; i++) {
+		if (owns(keys[i])) {
+		    values[i] = load(ctx, keys[i]);
+		} else {
+		    redirected.add(keys[i]);
+		}
+	    }
+	    final Message answer = Message.batch(MessageType.GET_ALL, values, redirected.toArray(new Id[0]));
+	    ctx.writeAndFlush(new ByteTransfer(id, serializer.serialize(ctx.alloc(), answer)));
+	}
+
+	private void store(ChannelHandlerContext ctx, Id key, Object value) {
+	    final ByteBuf bytes = serializer.serialize(ctx.alloc(), value);
+	    try {
+		storage.put(key, bytes);
+	    } finally {
+		bytes.release();
+	    }
+	}
+
+	// as a byte array, to be serialized with the others of a batch
+	private byte[] load(ChannelHandlerContext ctx, Id key) {
+	    final ByteBuf value = storage.get(key, ctx.alloc());
+	    if (value == null) {
+		return null;
+	    }
+	    try {
+		return ByteBufUtil.getBytes(value);
+	    } finally {
+		value.release();
+	    }
+	}
+
+	private void redirect(ChannelHandlerContext ctx, int id, Id key) {
+	    ctx.writeAndFlush(new ByteTransfer(id, serializer.serialize(ctx.alloc(), Node.this.redirect(key))));
 	}
     }
 
@@ -141,87 +330,293 @@ public class Node implements Comparable<Node> {
      * Joins a new node into an existing network.
      */
     public void join(Node node) throws InterruptedException, ExecutionException {
-	final Node[] prevNext = findEnclosingInterval(node, id);
-	add(prevNext[0], prevNext[1]);
+	joinAsync(node).toCompletableFuture().get();
+    }
+
+    /**
+     * Joins a new node into an existing network, without blocking.
+     */
+    public CompletionStage<Void> joinAsync(Node node) {
+	return node.lookup(id) //
+		.thenCompose(lookup -> lookup.getPredecessor().syncAsync() //
+			.thenCombine(lookup.getSuccessor().syncAsync(), (prev, next) -> new Node[] { prev, next })) //
+		.thenCompose(prevNext -> add(prevNext[0], prevNext[1])) //
+		.thenCompose(added -> fixFingersAsync());
+    }
+
+    // hands the neighbours of this node over to each other, so that the ring stays closed
+    private void leave() {
+	final Node prev = this.prev;
+	final Node next = this.next;
+	if (prev == null || next == null) {
+	    return;
+	}
+	try {
+	    // pushing sends every link, the current ones are pulled first
+	    final Node after = next.equals(prev) ? prev : next;
+	    CompletableFuture.allOf(prev.syncAsync().toCompletableFuture(), after.syncAsync().toCompletableFuture())
+		    .get(LEAVE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+	    prev.setNext(after);
+	    after.setPrev(prev);
+	    prev.fingers.remove(id);
+	    after.fingers.remove(id);
+	    // pulled behind the pushes, on the same conduits: done once the neighbours hold their new links
+	    CompletableFuture.allOf(prev.syncAsync(prev).thenCompose(Node::syncAsync).toCompletableFuture(), after
+		    .syncAsync(after).thenCompose(Node::syncAsync).toCompletableFuture()).get(LEAVE_TIMEOUT_SECONDS,
+			    TimeUnit.SECONDS);
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	} catch (ExecutionException | TimeoutException e) {
+	    log.warn("Cannot hand the neighbours of " + this + " over to each other.", e);
+	}
     }
 
-    private Node[] findEnclosingInterval(Node first, BigInteger id) throws InterruptedException, ExecutionException {
-	Node prev = getClosestStart(first.sync(), id), next = prev.getNext();
+    /**
+     * Finds the predecessor and the successor of the key, asking one node per hop.
+     */
+    public CompletionStage<Lookup> lookup(Id key) {
+	// a started node routes the first hop itself
+	final CompletionStage<Lookup> lookup = server == null ? lookup(this, key, 1, null) : next(route(key), key, 0,
+		null);
+	final Histogram hops = lookupHops;
+	return hops == null ? lookup : lookup.thenApply(found -> {
+	    hops.record(found.getHops());
+	    return found;
+	});
+    }
+
+    // the hops found unreachable by the lookup, null until one is
+    private CompletionStage<Lookup> lookup(Node hop, Id key, int hops, Set<Id> unreachable) {
+	if (hops > MAX_HOPS) {
+	    return failed(new IllegalStateException("No successor of " + key + " after " + MAX_HOPS + " hops."));
+	}
+	if (unreachable != null && unreachable.contains(hop.id)) {
+	    // still known by the other nodes
+	    return failed(new IllegalStateException("No successor of " + key + ", " + hop + " is unreachable."));
+	}
+	return pool.getOrCreateAsync(hop.hostname + ":" + hop.port) //
+		.thenCompose(channel -> channel.sendAsync(Message.findSuccessor(key), Message.class)) //
+		.handle((answer, e) -> e == null ? next(answer, key, hops, unreachable) : around(hop, key, hops,
+			unreachable, e)) //
+		.thenCompose(Function.identity());
+    }
 
-	// Handle one node scenario
-	if (next == null) {
-	    return new Node[] { first, first };
-	} else {
-	    next.sync();
-	}
-
-	int lhs = id.compareTo(prev.id);
-	int rhs = id.compareTo(next.id);
-	if (lhs > 0 && rhs < 0) {
-	    // lucky hit
-	} else if (lhs < 0) { // search backwards
-	    do {
-		next = prev;
-		prev = prev.sync().getPrev();
-		lhs = id.compareTo(prev.id);
-	    } while (lhs < 0 && prev.id.compareTo(next.id) < 0);
-	} else { // search forwards
-	    do {
-		prev = next;
-		next = next.sync().getNext();
-		rhs = id.compareTo(next.id);
-	    } while (rhs > 0 && prev.id.compareTo(next.id) < 0);
-	}
-	return new Node[] { prev, next };
-    }
-
-    private static Node getClosestStart(Node node, BigInteger id) throws InterruptedException, ExecutionException {
-	final Entry<BigInteger, Node> floor = node.fingers.floorEntry(id);
-	final Entry<BigInteger, Node> ceiling = node.fingers.ceilingEntry(id);
-
-	final Node closest;
-	if (floor != null && ceiling != null) {
-	    closest = getClosestBetween(id, node, getClosestBetween(id, floor.getValue(), ceiling.getValue()));
-	} else if (floor != null) {
-	    closest = getClosestBetween(id, node, floor.getValue());
-	} else if (ceiling != null) {
-	    closest = getClosestBetween(id, node, ceiling.getValue());
-	} else {
-	    return node;
+    // a started node forgets the unreachable hop, left or crashed, and routes the lookup again
+    private CompletionStage<Lookup> around(Node hop, Id key, int hops, Set<Id> unreachable, Throwable e) {
+	if (server == null) {
+	    return failed(e);
+	}
+	final Set<Id> skipped = unreachable == null ? new HashSet<>() : unreachable;
+	skipped.add(hop.id);
+	return forget(hop).thenCompose(replaced -> next(route(key), key, hops + 1, skipped));
+    }
+
+    private CompletionStage<Lookup> next(Message answer, Id key, int hops, Set<Id> unreachable) {
+	final Link[] links = answer.getNodeLinks();
+	if (answer.isResolved()) {
+	    return CompletableFuture.completedFuture(new Lookup(proxy(links[0]), proxy(links[1]), hops));
+	}
+	return lookup(proxy(links[0]), key, hops + 1, unreachable);
+    }
+
+    /**
+     * Stops routing to the unreachable node. An unreachable successor is replaced by the first live node following it,
+     * which is told that this node now precedes it. Completes once replaced, never exceptionally.
+     */
+    private CompletionStage<Void> forget(Node node) {
+	fingers.remove(node.id);
+	final Node successor = next;
+	if (successor == null || !successor.equals(node)) {
+	    return CompletableFuture.completedFuture(null);
+	}
+	final Node following = closestFollowing(node);
+	setNext(following);
+	if (following == null) {
+	    return CompletableFuture.completedFuture(null);
+	}
+	return firstFollowing(following, node, 0).thenCompose(first -> {
+	    setNext(first);
+	    if (node.equals(first.prev)) {
+		first.setPrev(this);
+	    }
+	    first.fingers.remove(node.id);
+	    return first.syncAsync(first);
+	}).handle((pushed, e) -> {
+	    if (e != null) {
+		log.debug("Cannot replace the unreachable successor " + node + " of " + this + ".", e);
+	    }
+	    return null;
+	});
+    }
+
+    // walks back from the candidate, a finger possibly far beyond the unreachable node, through the predecessors
+    private CompletionStage<Node> firstFollowing(Node candidate, Node unreachable, int hops) {
+	return candidate.syncAsync().thenCompose(pulled -> {
+	    final Node before = pulled.prev;
+	    if (hops == MAX_HOPS || before == null || before.equals(unreachable)
+		    || !before.id.isBetween(id, pulled.id)) {
+		return CompletableFuture.completedFuture(pulled);
+	    }
+	    return firstFollowing(before, unreachable, hops + 1);
+	});
+    }
+
+    // the closest finger clockwise, else the predecessor unless unreachable too
+    private Node closestFollowing(Node unreachable) {
+	synchronized (fingers) {
+	    // around zero
+	    final Map.Entry<Id, Node> finger = fingers.higherEntry(id) != null ? fingers.higherEntry(id)
+		    : fingers.firstEntry();
+	    if (finger != null && !finger.getKey().equals(id)) {
+		return finger.getValue();
+	    }
 	}
-	return closest == null || node.equals(closest) ? node : getClosestStart(closest.sync(), id);
+	final Node prev = this.prev;
+	return prev == null || prev.equals(unreachable) ? null : prev;
     }
 
-    private static Node getClosestBetween(BigInteger ref, Node n1, Node n2) {
-	final BigInteger n1Diff = ref.subtract(n1.getId()).abs();
-	final BigInteger n2Diff = ref.subtract(n2.getId()).abs();
-	final int cmp = n1Diff.compareTo(n2Diff);
-	if (cmp < 0) {
+    /**
+     * The answer of this node to a {@link MessageType#FIND_SUCCESSOR} of the key.
+     */
+    private Message route(Id key) {
+	final Node successor = next;
+	if (successor == null || key.isBetween(id, successor.id)) {
+	    return Message.successor(this, successor == null ? this : successor);
+	}
+	final Node closer = closestPreceding(key);
+	return closer == null ? Message.successor(this, successor) : Message.closer(closer);
+    }
+
+    // the known node furthest from this one, still preceding the key
+    private Node closestPreceding(Id key) {
+	Node closest = next;
+	if (closest != null && !precedes(closest.id, key)) {
+	    closest = null;
+	}
+	synchronized (fingers) {
+	    for (Node candidate : fingers.values()) {
+		if (precedes(candidate.id, key) && (closest == null || closest.id.isBetween(id, candidate.id))) {
+		    closest = candidate;
+		}
+	    }
+	}
+	return closest;
+    }
+
+    // whether the node is in (id, key) on the ring
+    private boolean precedes(Id node, Id key) {
+	return node.isBetween(id, key) && !node.equals(key);
+    }
+
+    /**
+     * Sets the fingers of this node to the successors of <code>id + 2^i</code>, for every bit of the ids.
+     */
+    public void fixFingers() throws InterruptedException, ExecutionException {
+	fixFingersAsync().toCompletableFuture().get();
+    }
+
+    /**
+     * Sets the fingers of this node, without blocking. A successor following several starts is only looked up once.
+     */
+    public CompletionStage<Void> fixFingersAsync() {
+	return fixFingers(0, null, new HashMap<>()).thenAccept(this::setFingers);
+    }
+
+    private CompletionStage<Map<Id, Node>> fixFingers(int bit, Node last, Map<Id, Node> found) {
+	if (bit == Id.BITS) {
+	    return CompletableFuture.completedFuture(found);
+	}
+	final Id start = id.plusPowerOfTwo(bit);
+	if (last != null && start.isBetween(id, last.id)) {
+	    return fixFingers(bit + 1, last, found);
+	}
+	return lookup(start).thenCompose(lookup -> {
+	    final Node successor = lookup.getSuccessor();
+	    if (successor.equals(this)) {
+		// every further start is past this node
+		return CompletableFuture.completedFuture(found);
+	    }
+	    found.put(successor.id, successor);
+	    return fixFingers(bit + 1, successor, found);
+	});
+    }
+
+    private void refreshFingers() {
+	if (refreshing.compareAndSet(false, true)) {
+	    fixFingersAsync().whenComplete((fixed, e) -> {
+		refreshing.set(false);
+		if (e != null) {
+		    log.debug("Cannot fix the fingers of " + this + ".", e);
+		}
+	    });
+	}
+    }
+
+    // a key belongs to its predecessor or to its successor
+    private static Node getClosestBetween(Id ref, Node n1, Node n2) {
+	if (Id.compareDistances(ref, n1.getId(), n2.getId()) < 0) {
 	    return n1;
 	} else {
 	    return n2;
 	}
     }
 
-    private void add(Node prev, Node next) throws InterruptedException, ExecutionException {
+    // whether this node is the closest to the key, as its predecessor or its successor
+    private boolean owns(Id key) {
+	final Node prev = this.prev;
+	final Node next = this.next;
+	if (prev == null || next == null) {
+	    // alone, or still joining
+	    return true;
+	}
+	if (key.isBetween(prev.id, id)) {
+	    return getClosestBetween(key, prev, this).equals(this);
+	}
+	return key.isBetween(id, next.id) && getClosestBetween(key, this, next).equals(this);
+    }
+
+    // the range of the key if this node borders it, to correct the routing cache of the sender
+    private Message redirect(Id key) {
+	final Node prev = this.prev;
+	final Node next = this.next;
+	if (prev != null && key.isBetween(prev.id, id)) {
+	    return Message.redirect(prev, this);
+	}
+	if (next != null && key.isBetween(id, next.id)) {
+	    return Message.redirect(this, next);
+	}
+	return Message.redirect();
+    }
+
+    private CompletionStage<Void> add(Node prev, Node next) {
 	setNext(next);
 	setPrev(prev);
 	prev.setNext(this);
 	next.setPrev(this);
-	prev.sync(prev);
-	next.sync(next);
-	sync(this);
+	// a started node already holds its links, pushing them could undo a concurrent update of its fingers
+	final CompletionStage<Node> self = server == null ? syncAsync(this) : CompletableFuture.completedFuture(this);
+	// pulled behind the pushes, on the same conduits: the neighbours route with their new links once joined
+	return CompletableFuture.allOf(prev.syncAsync(prev).thenCompose(Node::syncAsync).toCompletableFuture(), next
+		.syncAsync(next).thenCompose(Node::syncAsync).toCompletableFuture(), self.toCompletableFuture());
     }
 
     /**
      * Sync the remote node into its proxy.
      */
     public Node sync() throws InterruptedException, ExecutionException {
-	try (Conduit channel = pool.getOrCreate(hostname + ":" + port)) {
-	    final Message answer = channel.send(Message.sync(), toMsg).get();
-	    updateNodeLinks(this, answer);
-	}
-	return this;
+	return syncAsync().toCompletableFuture().get();
+    }
+
+    /**
+     * Sync the remote node into its proxy, without blocking.
+     */
+    public CompletionStage<Node> syncAsync() {
+	return pool.getOrCreateAsync(hostname + ":" + port) //
+		.thenCompose(channel -> channel.sendAsync(Message.sync(), Message.class)) //
+		.thenApply(answer -> {
+		    updateNodeLinks(this, answer);
+		    return this;
+		});
     }
 
     /**
@@ -234,59 +629,273 @@ public class Node implements Comparable<Node> {
 	return this;
     }
 
-    // links in the form hostname:port in the following order { prev, next, firger1, ..., fingerN }
-    private static void updateNodeLinks(Node node, Message message) throws InterruptedException {
-	final String[] nodeLinks = message.getNodeLinks();
-	final String[] prev = nodeLinks[1] != null ? nodeLinks[1].split(":") : null;
-	final String[] next = nodeLinks[2] != null ? nodeLinks[2].split(":") : null;
-	if (prev != null) {
-	    node.setPrev(new Node(prev[0], Integer.parseInt(prev[1]), new BigInteger(prev[2]), node.pool));
+    /**
+     * Sync the remote node with the contents of this proxy, without blocking. Completes once sent.
+     */
+    public CompletionStage<Node> syncAsync(Node node) {
+	return pool.getOrCreateAsync(hostname + ":" + port).thenApply(channel -> {
+	    channel.send(Message.sync(node));
+	    return this;
+	});
+    }
+
+    // links in the following order { self, prev, next, finger1, ..., fingerN }, a node linked to itself being alone
+    private static void updateNodeLinks(Node node, Message message) {
+	final Link[] nodeLinks = message.getNodeLinks();
+	if (nodeLinks[1] != null) {
+	    node.setPrev(node.neighbour(nodeLinks[1]));
 	}
-	if (next != null) {
-	    node.setNext(new Node(next[0], Integer.parseInt(next[1]), new BigInteger(next[2]), node.pool));
+	if (nodeLinks[2] != null) {
+	    node.setNext(node.neighbour(nodeLinks[2]));
 	}
 
-	final Map<BigInteger, Node> fingers = new HashMap<>();
+	final Map<Id, Node> fingers = new HashMap<>();
 	for (int i = 3; i < nodeLinks.length; i++) {
-	    final String[] finger = nodeLinks[i].split(":");
-	    final BigInteger fingerId = new BigInteger(finger[2]);
-	    fingers.put(fingerId, new Node(finger[0], Integer.parseInt(finger[1]), fingerId, node.pool));
+	    final Node finger = node.proxy(nodeLinks[i]);
+	    fingers.put(finger.id, finger);
 	}
 	node.setFingers(fingers);
     }
 
+    private Node neighbour(Link link) {
+	return link.getId().equals(id) ? null : proxy(link);
+    }
+
+    private Node proxy(Link link) {
+	return new Node(link.getHostname(), link.getPort(), link.getId(), pool);
+    }
+
     /**
      * Puts a { key, value } pair into the storage of the closest node to the key.
      */
-    public void put(BigInteger key, Object value) throws InterruptedException, ExecutionException {
-	final Node closest = findClosest(key);
-	try (Conduit channel = pool.getOrCreate(closest.hostname + ":" + closest.port)) {
-	    channel.send(Message.put(key, value));
-	}
+    public void put(Id key, Object value) throws InterruptedException, ExecutionException {
+	putAsync(key, value).toCompletableFuture().get();
+    }
+
+    /**
+     * Puts a { key, value } pair into the storage of the closest node to the key, without blocking. Completes once
+     * stored. The request is sent once the conduit to the node is writable: bulk loaders do not overflow slow nodes.
+     */
+    public CompletionStage<Void> putAsync(Id key, Object value) {
+	return request(key, Message.put(key, value), Object.class, 0).thenApply(stored -> null);
     }
 
     /**
      * Resolves the closest node to the key, and checks if its storage contains the value.
      */
-    public <T> T get(BigInteger key, Class<T> type) throws InterruptedException, ExecutionException {
-	final Node closer = findClosest(key);
-	try (Conduit channel = pool.getOrCreate(closer.hostname + ":" + closer.port)) {
-	    return channel.send(Message.get(key), type).get();
+    public <T> T get(Id key, Class<T> type) throws InterruptedException, ExecutionException {
+	return getAsync(key, type).toCompletableFuture().get();
+    }
+
+    /**
+     * Resolves the closest node to the key, and checks if its storage contains the value, without blocking.
+     */
+    public <T> CompletionStage<T> getAsync(Id key, Class<T> type) {
+	return request(key, Message.get(key), type, 0);
+    }
+
+    /**
+     * Puts the { key, value } pairs into the storage of the closest nodes to the keys.
+     */
+    public void putAll(Map<Id, ?> entries) throws InterruptedException, ExecutionException {
+	putAllAsync(entries).toCompletableFuture().get();
+    }
+
+    /**
+     * Puts the { key, value } pairs into the storage of the closest nodes to the keys, without blocking: a single
+     * request per node, all sent at once. Completes once every pair is stored.
+     */
+    public CompletionStage<Void> putAllAsync(Map<Id, ?> entries) {
+	return findOwners(entries.keySet()).thenCompose(owners -> {
+	    final List<CompletableFuture<Void>> batches = new ArrayList<>(owners.size());
+	    for (Map.Entry<Node, List<Id>> owner : owners.entrySet()) {
+		final Id[] keys = owner.getValue().toArray(new Id[0]);
+		final Object[] values = new Object[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+		    values[i] = entries.get(keys[i]);
+		}
+		batches.add(batch(owner.getKey(), Message.putAll(keys, values), keys) //
+			.thenCompose(answer -> forEachRedirected(answer, key -> putAsync(key, entries.get(key)))) //
+			.toCompletableFuture());
+	    }
+	    return CompletableFuture.allOf(batches.toArray(new CompletableFuture<?>[0]));
+	});
+    }
+
+    /**
+     * Resolves the closest nodes to the keys, and gets the values their storages contain. Keys without values are
+     * left out of the map.
+     */
+    public <T> Map<Id, T> getAll(Collection<Id> keys, Class<T> type) throws InterruptedException,
+	    ExecutionException {
+	return getAllAsync(keys, type).toCompletableFuture().get();
+    }
+
+    /**
+     * Resolves the closest nodes to the keys, and gets the values their storages contain, without blocking: a single
+     * request per node, all sent at once. Keys without values are left out of the map.
+     */
+    public <T> CompletionStage<Map<Id, T>> getAllAsync(Collection<Id> keys, Class<T> type) {
+	return findOwners(keys).thenCompose(owners -> {
+	    final Map<Id, T> found = new ConcurrentHashMap<>();
+	    final List<CompletableFuture<Void>> batches = new ArrayList<>(owners.size());
+	    for (Map.Entry<Node, List<Id>> owner : owners.entrySet()) {
+		final Id[] batch = owner.getValue().toArray(new Id[0]);
+		batches.add(batch(owner.getKey(), Message.getAll(batch), batch) //
+			.thenCompose(answer -> {
+			    final Object[] values = answer.getValues();
+			    for (int i = 0; i < batch.length; i++) {
+				if (values[i] != null) {
+				    found.put(batch[i], serializer.fromByteArray((byte[]) values[i], type));
+				}
+			    }
+			    return forEachRedirected(answer, key -> getAsync(key, type).thenAccept(value -> {
+				if (value != null) {
+				    found.put(key, value);
+				}
+			    }));
+			}) //
+			.toCompletableFuture());
+	    }
+	    return CompletableFuture.allOf(batches.toArray(new CompletableFuture<?>[0])).thenApply(all -> found);
+	});
+    }
+
+    // the keys grouped by the closest node to them
+    private CompletionStage<Map<Node, List<Id>>> findOwners(Collection<Id> keys) {
+	final List<Id> ordered = new ArrayList<>(keys);
+	final List<CompletableFuture<Node>> owners = new ArrayList<>(ordered.size());
+	for (Id key : ordered) {
+	    owners.add(findClosest(key).toCompletableFuture());
+	}
+	return CompletableFuture.allOf(owners.toArray(new CompletableFuture<?>[0])).thenApply(all -> {
+	    final Map<Node, List<Id>> grouped = new HashMap<>();
+	    for (int i = 0; i < ordered.size(); i++) {
+		grouped.computeIfAbsent(owners.get(i).join(), owner -> new ArrayList<>()).add(ordered.get(i));
+	    }
+	    return grouped;
+	});
+    }
+
+    // an unreachable owner redirects every key of the batch, each being looked up again
+    private CompletionStage<Message> batch(Node owner, Message message, Id[] keys) {
+	return send(owner, message, Message.class).exceptionally(e -> Message.batch(message.getType(),
+		new Object[keys.length], keys));
+    }
+
+    // the keys of a batch the node does not own are sent one by one, through fresh lookups
+    private CompletionStage<Void> forEachRedirected(Message answer, Function<Id, CompletionStage<?>> request) {
+	final Id[] redirected = answer.getKeys();
+	if (redirected.length == 0) {
+	    return CompletableFuture.completedFuture(null);
+	}
+	redirects.add(redirected.length);
+	final CompletableFuture<?>[] requests = new CompletableFuture<?>[redirected.length];
+	for (int i = 0; i < redirected.length; i++) {
+	    routes().invalidate(redirected[i]);
+	    requests[i] = request.apply(redirected[i]).toCompletableFuture();
+	}
+	return CompletableFuture.allOf(requests);
+    }
+
+    private <T> CompletionStage<T> send(Node owner, Object message, Class<T> type) {
+	return pool.getOrCreateAsync(owner.hostname + ":" + owner.port) //
+		.thenCompose(channel -> channel.whenWritable().thenCompose(writable -> channel.sendAsync(message,
+			type)));
+    }
+
+    // sends the message to the owner of the key, following its redirects, looking it up again if unreachable
+    private <T> CompletionStage<T> request(Id key, Object message, Class<T> type, int redirected) {
+	return findClosest(key) //
+		.thenCompose(closest -> {
+		    final CompletionStage<Object> sent = send(closest, message, Object.class);
+		    // retried once the unreachable node is forgotten
+		    return sent.handle((answer, e) -> e != null && isUnreachable(e) ? forget(closest).thenCompose(
+			    forgotten -> sent) : sent).thenCompose(Function.identity());
+		}) //
+		.handle((answer, e) -> {
+		    if (e == null && !isRedirect(answer)) {
+			return CompletableFuture.completedFuture(type.cast(answer));
+		    }
+		    if (e != null) {
+			// the owner may have left
+			routes().invalidate(key);
+		    } else {
+			redirects.increment();
+		    }
+		    if (redirected == MAX_REDIRECTS) {
+			return Node.<T> failed(e != null ? e : new IllegalStateException("Key " + key
+				+ " still redirected after " + MAX_REDIRECTS + " redirects."));
+		    }
+		    if (e == null) {
+			correct(key, (Message) answer);
+		    }
+		    return request(key, message, type, redirected + 1);
+		}) //
+		.thenCompose(Function.identity());
+    }
+
+    private static boolean isUnreachable(Throwable e) {
+	return (e instanceof CompletionException ? e.getCause() : e) instanceof ConnectException;
+    }
+
+    private static boolean isRedirect(Object answer) {
+	return answer instanceof Message && ((Message) answer).getType() == MessageType.REDIRECT;
+    }
+
+    private void correct(Id key, Message redirect) {
+	final RoutingCache routes = routes();
+	routes.invalidate(key);
+	if (redirect.isResolved()) {
+	    final Link[] links = redirect.getNodeLinks();
+	    routes.put(new Lookup(proxy(links[0]), proxy(links[1]), 0));
 	}
     }
 
-    private Node findClosest(BigInteger key) throws InterruptedException, ExecutionException {
-	final Node[] prevNext = findEnclosingInterval(this, key);
-	return getClosestBetween(key, prevNext[0], prevNext[1]);
+    // the owner of the key, looked up unless a cached range holds it
+    private CompletionStage<Node> findClosest(Id key) {
+	final RoutingCache routes = routes();
+	final Lookup cached = routes.get(key);
+	if (cached != null) {
+	    return CompletableFuture.completedFuture(getClosestBetween(key, cached.getPredecessor(),
+		    cached.getSuccessor()));
+	}
+	return lookup(key).thenApply(lookup -> {
+	    routes.put(lookup);
+	    return getClosestBetween(key, lookup.getPredecessor(), lookup.getSuccessor());
+	});
+    }
+
+    private RoutingCache routes() {
+	RoutingCache routes = this.routes;
+	if (routes == null) {
+	    synchronized (this) {
+		routes = this.routes;
+		if (routes == null) {
+		    this.routes = routes = new RoutingCache(STANDARD_ROUTING_CACHE_SIZE);
+		}
+	    }
+	}
+	return routes;
     }
 
-    public void setFingers(Map<BigInteger, Node> fingers) {
-	this.fingers.clear();
-	this.fingers.putAll(fingers);
+    private static <T> CompletionStage<T> failed(Throwable e) {
+	final CompletableFuture<T> failed = new CompletableFuture<>();
+	failed.completeExceptionally(e);
+	return failed;
+    }
+
+    public void setFingers(Map<Id, Node> fingers) {
+	synchronized (this.fingers) {
+	    this.fingers.clear();
+	    this.fingers.putAll(fingers);
+	}
     }
 
     public Collection<Node> getFingers() {
-	return fingers.values();
+	synchronized (fingers) {
+	    return new ArrayList<>(fingers.values());
+	}
     }
 
     public Node getPrev() {
@@ -313,7 +922,7 @@ public class Node implements Comparable<Node> {
 	return port;
     }
 
-    public BigInteger getId() {
+    public Id getId() {
 	return id;
     }
 
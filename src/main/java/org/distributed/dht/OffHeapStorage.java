@@ -0,0 +1,264 @@
+package org.distributed.dht;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
+
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A {@link Storage} of values in slabs of direct memory, indexed by an open-addressing table of primitive arrays: the
+ * heap holds no object per value.
+ * <p>
+ * Values are appended to the current slab, prefixed by their length, and an overwritten value is left in place. Once
+ * every slab is full, the oldest one is emptied at once to make room, its values being evicted: slabs are reused in
+ * order, as a ring. The index is not scanned on eviction, its entries record the generation of their slab and the stale
+ * ones are dropped when the table grows. Values larger than a slab are not stored.
+ * <p>
+ * Reads copy the value from its slab into a direct buffer of the caller allocator, under a read lock. Direct memory
+ * is limited by <code>-XX:MaxDirectMemorySize</code>.
+ */
+final class OffHeapStorage implements Storage {
+
+    private static final int SLABS = 16;
+    private static final int MAX_SLAB_SIZE = 1 << 30;
+    private static final int LENGTH_BYTES = Integer.BYTES;
+    private static final int MIN_TABLE_SIZE = 16;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final int slabSize;
+    private final ByteBuf[] slabs;
+    // the generation of every slab, incremented when it is emptied
+    private final int[] generations;
+    // the values and the bytes in every slab
+    private final long[] counts;
+    private final long[] weights;
+    private int slab = 0;
+    private int position = 0;
+    private long size = 0;
+    private long weight = 0;
+    private boolean closed = false;
+
+    // the index, a slot being empty while its slab is 0, slabs being numbered from 1 there
+    private long[] highs;
+    private long[] middles;
+    private int[] lows;
+    private int[] slotSlabs;
+    private int[] slotGenerations;
+    private int[] offsets;
+    private int used = 0;
+
+    OffHeapStorage(long capacity) {
+	this(capacity, (int) Math.min(MAX_SLAB_SIZE, Math.max(LENGTH_BYTES, (capacity + SLABS - 1) / SLABS)));
+    }
+
+    OffHeapStorage(long capacity, int slabSize) {
+	this.slabSize = slabSize;
+	this.slabs = new ByteBuf[(int) Math.max(1, capacity / slabSize)];
+	this.generations = new int[slabs.length];
+	this.counts = new long[slabs.length];
+	this.weights = new long[slabs.length];
+	allocateTable(MIN_TABLE_SIZE);
+    }
+
+    @Override
+    public void put(Id key, ByteBuf value) {
+	final int length = value.readableBytes();
+	lock.writeLock().lock();
+	try {
+	    if (closed) {
+		return;
+	    }
+	    if (LENGTH_BYTES + length > slabSize) {
+		remove(key);
+		return;
+	    }
+	    final int offset = allocate(LENGTH_BYTES + length);
+	    slabs[slab].setInt(offset, length);
+	    slabs[slab].setBytes(offset + LENGTH_BYTES, value, value.readerIndex(), length);
+
+	    // allocated first, the previous value may have just been evicted
+	    remove(key);
+	    final int index = find(key);
+	    if (slotSlabs[index] == 0) {
+		used++;
+	    }
+	    highs[index] = key.high();
+	    middles[index] = key.middle();
+	    lows[index] = key.low();
+	    slotSlabs[index] = slab + 1;
+	    slotGenerations[index] = generations[slab];
+	    offsets[index] = offset;
+	    counts[slab]++;
+	    size++;
+	    if (used > highs.length * 3 / 4) {
+		rehash();
+	    }
+	} finally {
+	    lock.writeLock().unlock();
+	}
+    }
+
+    @Override
+    public ByteBuf get(Id key, ByteBufAllocator alloc) {
+	lock.readLock().lock();
+	try {
+	    if (closed) {
+		return null;
+	    }
+	    final int index = find(key);
+	    if (!isLive(index)) {
+		return null;
+	    }
+	    final ByteBuf slab = slabs[slotSlabs[index] - 1];
+	    final int length = slab.getInt(offsets[index]);
+	    return alloc.directBuffer(length).writeBytes(slab, offsets[index] + LENGTH_BYTES, length);
+	} finally {
+	    lock.readLock().unlock();
+	}
+    }
+
+    @Override
+    public long size() {
+	lock.readLock().lock();
+	try {
+	    return size;
+	} finally {
+	    lock.readLock().unlock();
+	}
+    }
+
+    /**
+     * The bytes written in the slabs, the overwritten values included until their slab is emptied.
+     */
+    @Override
+    public long weight() {
+	lock.readLock().lock();
+	try {
+	    return weight;
+	} finally {
+	    lock.readLock().unlock();
+	}
+    }
+
+    @Override
+    public void close() {
+	lock.writeLock().lock();
+	try {
+	    if (closed) {
+		return;
+	    }
+	    closed = true;
+	    for (ByteBuf slab : slabs) {
+		if (slab != null) {
+		    slab.release();
+		}
+	    }
+	    allocateTable(MIN_TABLE_SIZE);
+	    size = 0;
+	    weight = 0;
+	} finally {
+	    lock.writeLock().unlock();
+	}
+    }
+
+    // the offset of the bytes in the current slab, moving to the next slab if needed
+    private int allocate(int bytes) {
+	if (slabs[slab] == null) {
+	    slabs[slab] = UnpooledByteBufAllocator.DEFAULT.directBuffer(slabSize, slabSize);
+	} else if (position + bytes > slabSize) {
+	    slab = (slab + 1) % slabs.length;
+	    position = 0;
+	    if (slabs[slab] == null) {
+		slabs[slab] = UnpooledByteBufAllocator.DEFAULT.directBuffer(slabSize, slabSize);
+	    } else {
+		evict(slab);
+	    }
+	}
+	final int offset = position;
+	position += bytes;
+	weights[slab] += bytes;
+	weight += bytes;
+	return offset;
+    }
+
+    private void evict(int slab) {
+	generations[slab]++;
+	size -= counts[slab];
+	weight -= weights[slab];
+	counts[slab] = 0;
+	weights[slab] = 0;
+    }
+
+    private void remove(Id key) {
+	final int index = find(key);
+	if (isLive(index)) {
+	    counts[slotSlabs[index] - 1]--;
+	    size--;
+	    // stale, but still holding its slot for the probing
+	    slotGenerations[index] = -1;
+	}
+    }
+
+    private boolean isLive(int index) {
+	final int slab = slotSlabs[index] - 1;
+	return slab >= 0 && slotGenerations[index] == generations[slab];
+    }
+
+    // the slot of the key, or the empty slot ending its probing
+    private int find(Id key) {
+	final int mask = highs.length - 1;
+	final long high = key.high();
+	final long middle = key.middle();
+	final int low = key.low();
+	int index = spread(key.hashCode()) & mask;
+	while (slotSlabs[index] != 0 && (highs[index] != high || middles[index] != middle || lows[index] != low)) {
+	    index = (index + 1) & mask;
+	}
+	return index;
+    }
+
+    private static int spread(int hash) {
+	return hash ^ (hash >>> 16);
+    }
+
+    // to twice the live entries, dropping the stale ones
+    private void rehash() {
+	final long[] highs = this.highs;
+	final long[] middles = this.middles;
+	final int[] lows = this.lows;
+	final int[] slotSlabs = this.slotSlabs;
+	final int[] slotGenerations = this.slotGenerations;
+	final int[] offsets = this.offsets;
+	allocateTable(Math.max(MIN_TABLE_SIZE, Integer.highestOneBit((int) Math.max(1, size)) << 2));
+	final int mask = this.highs.length - 1;
+	for (int i = 0; i < highs.length; i++) {
+	    final int slab = slotSlabs[i] - 1;
+	    if (slab < 0 || slotGenerations[i] != generations[slab]) {
+		continue;
+	    }
+	    int index = spread(Id.hashCode(highs[i], middles[i], lows[i])) & mask;
+	    while (this.slotSlabs[index] != 0) {
+		index = (index + 1) & mask;
+	    }
+	    this.highs[index] = highs[i];
+	    this.middles[index] = middles[i];
+	    this.lows[index] = lows[i];
+	    this.slotSlabs[index] = slotSlabs[i];
+	    this.slotGenerations[index] = slotGenerations[i];
+	    this.offsets[index] = offsets[i];
+	    used++;
+	}
+    }
+
+    private void allocateTable(int slots) {
+	highs = new long[slots];
+	middles = new long[slots];
+	lows = new int[slots];
+	slotSlabs = new int[slots];
+	slotGenerations = new int[slots];
+	offsets = new int[slots];
+	used = 0;
+    }
+}
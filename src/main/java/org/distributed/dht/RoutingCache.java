@@ -0,0 +1,89 @@
+package org.distributed.dht;
+
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+
+/**
+ * The ranges of the ring resolved by past lookups: every key of a range <code>(predecessor, successor]</code> has the
+ * same owner, found without asking the ring again.
+ * <p>
+ * Ranges are indexed by the id of their predecessor. The least recently used ones are evicted past the maximum size,
+ * the stale ones are dropped or corrected by the redirects of the nodes.
+ */
+final class RoutingCache {
+
+    private final NavigableMap<Id, Lookup> ranges = new ConcurrentSkipListMap<>();
+    // in access order, evicting from the index
+    private final Cache<Id, Lookup> recent;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    RoutingCache(long maximumSize) {
+	this.recent = CacheBuilder.newBuilder() //
+		.maximumSize(maximumSize) //
+		.removalListener(this::onRemoval) //
+		.build();
+    }
+
+    /**
+     * The range holding the key, <code>null</code> if none is cached.
+     */
+    Lookup get(Id key) {
+	final Lookup range = find(key);
+	if (range != null && recent.getIfPresent(range.getPredecessor().getId()) == range) {
+	    hits.increment();
+	    return range;
+	}
+	misses.increment();
+	return null;
+    }
+
+    void put(Lookup range) {
+	final Id from = range.getPredecessor().getId();
+	recent.put(from, range);
+	ranges.put(from, range);
+    }
+
+    /**
+     * Drops the range holding the key, if any.
+     */
+    void invalidate(Id key) {
+	final Lookup range = find(key);
+	if (range != null) {
+	    final Id from = range.getPredecessor().getId();
+	    ranges.remove(from, range);
+	    recent.asMap().remove(from, range);
+	}
+    }
+
+    private Lookup find(Id key) {
+	Map.Entry<Id, Lookup> entry = ranges.lowerEntry(key);
+	if (entry == null) {
+	    // the range wrapping around zero, if any
+	    entry = ranges.lastEntry();
+	}
+	return entry != null && entry.getValue().contains(key) ? entry.getValue() : null;
+    }
+
+    private void onRemoval(RemovalNotification<Id, Lookup> removal) {
+	ranges.remove(removal.getKey(), removal.getValue());
+    }
+
+    long size() {
+	return recent.size();
+    }
+
+    long getHits() {
+	return hits.sum();
+    }
+
+    long getMisses() {
+	return misses.sum();
+    }
+}
@@ -0,0 +1,57 @@
+package org.distributed.dht;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+
+import java.io.Closeable;
+
+/**
+ * The serialized values stored by a node, evicted past a maximum weight in bytes.
+ * <p>
+ * <code>
+ * new Node("192.168.96.2", 10001).storage(Storage.offHeap(8L * 1024 * 1024 * 1024)).start();
+ * </code>
+ */
+public interface Storage extends Closeable {
+
+    /**
+     * Values held as byte arrays on the heap, the least recently used ones being evicted.
+     */
+    static Storage heap(long maxWeight) {
+	return new HeapStorage(maxWeight);
+    }
+
+    /**
+     * Values held in direct memory, out of the reach of the garbage collector, the oldest ones being evicted. See
+     * {@link OffHeapStorage}.
+     */
+    static Storage offHeap(long capacity) {
+	return new OffHeapStorage(capacity);
+    }
+
+    /**
+     * Stores a copy of the readable bytes of the value, leaving its indexes untouched.
+     */
+    void put(Id key, ByteBuf value);
+
+    /**
+     * A buffer holding the value of the key, <code>null</code> if none. The caller releases it.
+     */
+    ByteBuf get(Id key, ByteBufAllocator alloc);
+
+    /**
+     * The number of values stored.
+     */
+    long size();
+
+    /**
+     * The bytes taken by the values.
+     */
+    long weight();
+
+    /**
+     * Drops every value, releasing their memory.
+     */
+    @Override
+    void close();
+}
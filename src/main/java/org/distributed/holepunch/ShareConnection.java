@@ -1,27 +1,28 @@
 package org.distributed.holepunch;
 
+import io.netty.channel.ChannelHandler.Sharable;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 
 import java.util.List;
 
-import org.dev.serialize.impl.KryoSerializer;
 import org.distributed.conduit.ByteTransfer;
-import org.distributed.conduit.UDPConduit;
+import org.distributed.conduit.TransferSerializer;
 
 import com.google.common.collect.LinkedListMultimap;
 import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Multimaps;
 
+@Sharable
 public class ShareConnection extends SimpleChannelInboundHandler<ByteTransfer> {
 
-    private final KryoSerializer serializer = new KryoSerializer();
+    private final TransferSerializer serializer = TransferSerializer.defaults;
     private final ListMultimap<String, Integer> lookup = Multimaps
 	    .synchronizedListMultimap(LinkedListMultimap.create());
 
     @Override
     protected void channelRead0(ChannelHandlerContext ctx, ByteTransfer msg) throws Exception {
-	final Message message = serializer.deserialize(msg.payload, Message.class);
+	final Message message = serializer.deserialize(msg.content(), Message.class);
 	switch (message.getType()) {
 	case HELLO:
 	    lookup.put(msg.getSenderHostname(), msg.getSenderPort());
@@ -36,9 +37,7 @@ public class ShareConnection extends SimpleChannelInboundHandler<ByteTransfer> {
 		    port = null;
 		}
 	    }
-	    try (UDPConduit conduit = new UDPConduit(msg.getSenderHostname(), msg.getSenderPort(), false)) {
-		conduit.send(new ByteTransfer(msg.id, serializer.serialize(port)));
-	    }
+	    ctx.writeAndFlush(msg.answer(serializer.serialize(ctx.alloc(), port)));
 	    break;
 	case FREE_PORT:
 	    lookup.put(message.getHostname(), message.getPort());
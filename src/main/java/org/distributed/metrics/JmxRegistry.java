@@ -0,0 +1,169 @@
+package org.distributed.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.function.LongSupplier;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Publishes every metric set as an MBean named
+ * <code>org.distributed:type=&lt;type&gt;,name="&lt;name&gt;",id=&lt;id&gt;</code>.
+ * <p>
+ * Counters and gauges are long attributes. A histogram <code>h</code> is published as <code>h.count</code>,
+ * <code>h.mean</code>, <code>h.p50</code>, <code>h.p90</code>, <code>h.p99</code>, <code>h.p999</code> and
+ * <code>h.max</code>. Attributes are computed when read.
+ */
+public class JmxRegistry implements MetricsRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(JmxRegistry.class);
+
+    private static final String[] percentiles = { "p50", "p90", "p99", "p999" };
+    private static final double[] values = { 50, 90, 99, 99.9 };
+
+    private final MBeanServer server;
+
+    public JmxRegistry(MBeanServer server) {
+	this.server = server;
+    }
+
+    public static ObjectName nameOf(MetricSet metrics) {
+	try {
+	    return new ObjectName("org.distributed:type=" + metrics.getType() + ",name="
+		    + ObjectName.quote(metrics.getName()) + ",id=" + metrics.getId());
+	} catch (MalformedObjectNameException e) {
+	    throw new IllegalArgumentException("Invalid metric set " + metrics + ".", e);
+	}
+    }
+
+    @Override
+    public void register(MetricSet metrics) {
+	try {
+	    server.registerMBean(new Bean(metrics), nameOf(metrics));
+	} catch (JMException e) {
+	    log.warn("Cannot register " + metrics + ".", e);
+	}
+    }
+
+    @Override
+    public void unregister(MetricSet metrics) {
+	try {
+	    server.unregisterMBean(nameOf(metrics));
+	} catch (InstanceNotFoundException e) {
+	    // never registered
+	} catch (JMException e) {
+	    log.warn("Cannot unregister " + metrics + ".", e);
+	}
+    }
+
+    /**
+     * The read-only attributes of a metric set.
+     */
+    private static class Bean implements DynamicMBean {
+
+	private final MetricSet metrics;
+
+	Bean(MetricSet metrics) {
+	    this.metrics = metrics;
+	}
+
+	@Override
+	public Object getAttribute(String attribute) throws AttributeNotFoundException {
+	    if (metrics.getCounters().containsKey(attribute)) {
+		return metrics.getCounters().get(attribute).sum();
+	    }
+	    final LongSupplier gauge = metrics.getGauges().get(attribute);
+	    if (gauge != null) {
+		return gauge.getAsLong();
+	    }
+	    final int dot = attribute.lastIndexOf('.');
+	    final Histogram histogram = dot < 0 ? null : metrics.getHistograms().get(attribute.substring(0, dot));
+	    if (histogram != null) {
+		final String statistic = attribute.substring(dot + 1);
+		switch (statistic) {
+		case "count":
+		    return histogram.getCount();
+		case "mean":
+		    return histogram.getMean();
+		case "max":
+		    return histogram.getMax();
+		default:
+		    for (int i = 0; i < percentiles.length; i++) {
+			if (percentiles[i].equals(statistic)) {
+			    return histogram.getPercentile(values[i]);
+			}
+		    }
+		}
+	    }
+	    throw new AttributeNotFoundException(attribute);
+	}
+
+	@Override
+	public AttributeList getAttributes(String[] attributes) {
+	    final AttributeList list = new AttributeList();
+	    for (String attribute : attributes) {
+		try {
+		    list.add(new Attribute(attribute, getAttribute(attribute)));
+		} catch (AttributeNotFoundException e) {
+		    // skipped, as expected by the callers
+		}
+	    }
+	    return list;
+	}
+
+	@Override
+	public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+	    throw new AttributeNotFoundException("Metrics are read-only.");
+	}
+
+	@Override
+	public AttributeList setAttributes(AttributeList attributes) {
+	    return new AttributeList();
+	}
+
+	@Override
+	public Object invoke(String actionName, Object[] params, String[] signature) {
+	    throw new UnsupportedOperationException("No operation on metrics.");
+	}
+
+	@Override
+	public MBeanInfo getMBeanInfo() {
+	    final List<MBeanAttributeInfo> attributes = new ArrayList<>();
+	    for (String counter : metrics.getCounters().keySet()) {
+		attributes.add(attribute(counter, long.class, "Counter"));
+	    }
+	    for (String gauge : metrics.getGauges().keySet()) {
+		attributes.add(attribute(gauge, long.class, "Gauge"));
+	    }
+	    for (Entry<String, Histogram> histogram : metrics.getHistograms().entrySet()) {
+		final String name = histogram.getKey();
+		attributes.add(attribute(name + ".count", long.class, "Number of values"));
+		attributes.add(attribute(name + ".mean", double.class, "Mean value"));
+		for (String percentile : percentiles) {
+		    attributes.add(attribute(name + "." + percentile, long.class, "Percentile"));
+		}
+		attributes.add(attribute(name + ".max", long.class, "Maximum value"));
+	    }
+	    return new MBeanInfo(getClass().getName(), metrics.toString(),
+		    attributes.toArray(new MBeanAttributeInfo[attributes.size()]), null, null, null);
+	}
+
+	private static MBeanAttributeInfo attribute(String name, Class<?> type, String description) {
+	    return new MBeanAttributeInfo(name, type.getName(), description, true, false, false);
+	}
+    }
+}
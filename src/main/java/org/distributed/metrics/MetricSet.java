@@ -0,0 +1,101 @@
+package org.distributed.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * The named counters, gauges and histograms of a component, e.g. a conduit or a server.
+ * <p>
+ * Metrics are created once, when the component is built, and updated without locking nor allocating afterwards.
+ */
+public class MetricSet {
+
+    private static final AtomicLong ids = new AtomicLong();
+
+    private final String type;
+    private final String name;
+    private final long id = ids.incrementAndGet();
+
+    private final Map<String, LongAdder> counters = new ConcurrentSkipListMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentSkipListMap<>();
+    private final Map<String, Histogram> histograms = new ConcurrentSkipListMap<>();
+
+    /**
+     * A set of metrics for the component of the given type (e.g. <code>TCPConduit</code>) and name (e.g. its
+     * <code>host:port</code>).
+     */
+    public MetricSet(String type, String name) {
+	this.type = type;
+	this.name = name;
+    }
+
+    /**
+     * The counter of the given name, created if needed.
+     */
+    public LongAdder counter(String name) {
+	return counters.computeIfAbsent(name, n -> new LongAdder());
+    }
+
+    /**
+     * Reads the given gauge on demand.
+     */
+    public MetricSet gauge(String name, LongSupplier gauge) {
+	gauges.put(name, gauge);
+	return this;
+    }
+
+    /**
+     * The histogram of the given name, created if needed.
+     */
+    public Histogram histogram(String name) {
+	return histograms.computeIfAbsent(name, n -> new Histogram());
+    }
+
+    /**
+     * The current value of a counter or of a gauge, 0 if there is none of the given name.
+     */
+    public long value(String name) {
+	final LongAdder counter = counters.get(name);
+	if (counter != null) {
+	    return counter.sum();
+	}
+	final LongSupplier gauge = gauges.get(name);
+	return gauge == null ? 0 : gauge.getAsLong();
+    }
+
+    public String getType() {
+	return type;
+    }
+
+    public String getName() {
+	return name;
+    }
+
+    /**
+     * Tells apart the sets of a same type and name, e.g. the conduits to a same peer.
+     */
+    public long getId() {
+	return id;
+    }
+
+    public Map<String, LongAdder> getCounters() {
+	return Collections.unmodifiableMap(counters);
+    }
+
+    public Map<String, LongSupplier> getGauges() {
+	return Collections.unmodifiableMap(gauges);
+    }
+
+    public Map<String, Histogram> getHistograms() {
+	return Collections.unmodifiableMap(histograms);
+    }
+
+    @Override
+    public String toString() {
+	return type + "[" + name + "]#" + id;
+    }
+}
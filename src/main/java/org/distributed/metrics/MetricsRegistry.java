@@ -0,0 +1,56 @@
+package org.distributed.metrics;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Where the metric sets of the conduits and servers are published.
+ * <p>
+ * <code>
+ * TransportOptions.defaults().metrics(MetricsRegistry.jmx());
+ * </code>
+ */
+public interface MetricsRegistry {
+
+    /**
+     * Publishes nothing. The components it is given to do not record their traffic nor their latencies.
+     */
+    MetricsRegistry none = new MetricsRegistry() {
+
+	@Override
+	public void register(MetricSet metrics) {
+	}
+
+	@Override
+	public void unregister(MetricSet metrics) {
+	}
+
+	@Override
+	public boolean isEnabled() {
+	    return false;
+	}
+    };
+
+    /**
+     * Publishes the metric sets as MBeans of the platform server, see {@link JmxRegistry}.
+     */
+    static MetricsRegistry jmx() {
+	return new JmxRegistry(ManagementFactory.getPlatformMBeanServer());
+    }
+
+    /**
+     * Called once the component is built.
+     */
+    void register(MetricSet metrics);
+
+    /**
+     * Called once the component is closed.
+     */
+    void unregister(MetricSet metrics);
+
+    /**
+     * Whether the components record the metrics which cost something on their hot path.
+     */
+    default boolean isEnabled() {
+	return true;
+    }
+}
@@ -0,0 +1,107 @@
+package org.distributed.dht;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.UnpooledByteBufAllocator;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import org.distributed.conduit.TransferSerializer;
+import org.junit.Test;
+
+public class TestId {
+
+    private static final BigInteger RING = BigInteger.ONE.shiftLeft(Id.BITS);
+
+    private final Random random = new Random(7);
+
+    @Test
+    public void testConversions() {
+	for (int i = 0; i < 1000; i++) {
+	    final BigInteger value = randomValue();
+	    final Id id = Id.of(value);
+	    assertThat(id.toBigInteger(), is(value));
+	    assertThat(Id.of(id.toBytes()), is(id));
+	    assertThat(Id.parse(id.toString()), is(id));
+	    assertThat(new BigInteger(id.toString(), 16), is(value));
+	}
+	assertThat(Id.of(RING.subtract(BigInteger.ONE)).toString(), is("ffffffffffffffffffffffffffffffffffffffff"));
+	assertThat(Id.of(RING), is(Id.of(BigInteger.ZERO)));
+    }
+
+    @Test
+    public void testCompare() {
+	for (int i = 0; i < 1000; i++) {
+	    final BigInteger a = randomValue();
+	    final BigInteger b = i % 2 == 0 ? randomValue() : a.xor(BigInteger.ONE.shiftLeft(random.nextInt(Id.BITS)));
+	    assertThat(Id.of(a).compareTo(Id.of(b)), is(a.compareTo(b)));
+	    assertThat(Id.of(a).equals(Id.of(b)), is(a.equals(b)));
+	}
+    }
+
+    @Test
+    public void testRing() {
+	for (int i = 0; i < 1000; i++) {
+	    final BigInteger key = randomValue();
+	    final BigInteger from = randomValue();
+	    final BigInteger to = i % 10 == 0 ? from : randomValue();
+	    assertThat(Id.of(key).isBetween(Id.of(from), Id.of(to)), is(distance(from, key).compareTo(distance(from,
+		    to)) <= 0));
+	}
+	final Id id = Id.of(BigInteger.TEN);
+	assertThat(id.isBetween(id, Id.of(BigInteger.ONE)), is(false));
+	assertThat(id.isBetween(Id.of(BigInteger.ONE), id), is(true));
+    }
+
+    @Test
+    public void testDistances() {
+	for (int i = 0; i < 1000; i++) {
+	    final BigInteger ref = randomValue();
+	    final BigInteger a = randomValue();
+	    final BigInteger b = i % 2 == 0 ? randomValue() : ref.shiftLeft(1).subtract(a).mod(RING);
+	    final int expected = Integer.signum(ref.subtract(a).abs().compareTo(ref.subtract(b).abs()));
+	    assertThat(Integer.signum(Id.compareDistances(Id.of(ref), Id.of(a), Id.of(b))), is(expected));
+	}
+    }
+
+    @Test
+    public void testPowersOfTwo() {
+	for (int i = 0; i < 1000; i++) {
+	    final BigInteger value = i % 4 == 0 ? RING.subtract(BigInteger.ONE) : randomValue();
+	    final int bit = random.nextInt(Id.BITS);
+	    assertThat(Id.of(value).plusPowerOfTwo(bit).toBigInteger(), is(value.add(BigInteger.ONE.shiftLeft(bit)).mod(
+		    RING)));
+	}
+    }
+
+    @Test
+    public void testWire() {
+	final Id id = Keys.of("key");
+	final ByteBuf buffer = TransferSerializer.defaults.serialize(UnpooledByteBufAllocator.DEFAULT, Message.get(id));
+	try {
+	    assertThat(TransferSerializer.defaults.deserialize(buffer, Message.class).getKey(), is(id));
+	} finally {
+	    buffer.release();
+	}
+    }
+
+    // with runs of zeros and ones, as the carries are on the edges of the parts
+    private BigInteger randomValue() {
+	BigInteger value = new BigInteger(Id.BITS, random);
+	if (random.nextBoolean()) {
+	    value = value.or(BigInteger.ONE.shiftLeft(random.nextInt(Id.BITS)).subtract(BigInteger.ONE));
+	}
+	if (random.nextBoolean()) {
+	    value = value.andNot(BigInteger.ONE.shiftLeft(random.nextInt(Id.BITS)).subtract(BigInteger.ONE));
+	}
+	return value;
+    }
+
+    private static BigInteger distance(BigInteger from, BigInteger to) {
+	final BigInteger distance = to.subtract(from).mod(RING);
+	return distance.signum() == 0 ? RING : distance;
+    }
+}
@@ -2,19 +2,28 @@ package org.distributed.dht;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
 
-import java.math.BigInteger;
+import io.netty.buffer.UnpooledByteBufAllocator;
+
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
-import org.distributed.conduit.ConduitFactory;
 import org.distributed.conduit.ConduitPool;
 import org.distributed.conduit.NioGroupFactory;
 import org.distributed.conduit.TCPConduit;
+import org.distributed.conduit.TransportOptions;
+import org.distributed.metrics.Histogram;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -28,15 +37,7 @@ public class TestNode {
 
     @BeforeClass
     public static void pre() throws Exception {
-	final ConduitFactory<String> factory = (url) -> {
-	    try {
-		final String[] hostPort = url.split(":");
-		return new TCPConduit(hostPort[0], Integer.valueOf(hostPort[1]), NioGroupFactory.minimal);
-	    } catch (Exception e) {
-		throw new IllegalArgumentException("Cannot create. Expected format 'hostname:port'", e);
-	    }
-	};
-	pool = new ConduitPool(factory);
+	pool = new ConduitPool(TCPConduit.factory(NioGroupFactory.shared, TransportOptions.defaults()));
 	first = new Node("127.0.0.1", 19999, pool);
 	first.start();
     }
@@ -90,10 +91,10 @@ public class TestNode {
 	    }
 
 	    // put the value into some node storage
-	    final BigInteger key = Keys.of("this is a key");
+	    final Id key = Keys.of("this is a key");
 	    first.put(key, "this is a value");
 	    assertThat(first.get(key, String.class), is("this is a value"));
-	    assertThat(first.cache.getIfPresent(key), is(nullValue()));
+	    assertThat(first.storage.get(key, UnpooledByteBufAllocator.DEFAULT), is(nullValue()));
 	} finally {
 	    for (Node node : nodes) {
 		node.stop();
@@ -116,13 +117,13 @@ public class TestNode {
 
 	    for (int i = 0; i < 1000; i++) {
 		@SuppressWarnings("deprecation")
-		final BigInteger key = new BigInteger(Hashing.sha1().hashInt(i).toString(), 16);
+		final Id key = Id.of(Hashing.sha1().hashInt(i).asBytes());
 		first.put(key, 1000 - i);
 	    }
 
 	    for (int i = 0; i < 1000; i++) {
 		@SuppressWarnings("deprecation")
-		final BigInteger key = new BigInteger(Hashing.sha1().hashInt(i).toString(), 16);
+		final Id key = Id.of(Hashing.sha1().hashInt(i).asBytes());
 		assertThat(first.get(key, Integer.class), is(1000 - i));
 	    }
 	} finally {
@@ -144,13 +145,13 @@ public class TestNode {
 
 	    for (int i = 0; i < 1000; i++) {
 		@SuppressWarnings("deprecation")
-		final BigInteger key = new BigInteger(Hashing.sha1().hashInt(i).toString(), 16);
+		final Id key = Id.of(Hashing.sha1().hashInt(i).asBytes());
 		first.put(key, 1000 - i);
 	    }
 
 	    for (int i = 0; i < 1000; i++) {
 		@SuppressWarnings("deprecation")
-		final BigInteger key = new BigInteger(Hashing.sha1().hashInt(i).toString(), 16);
+		final Id key = Id.of(Hashing.sha1().hashInt(i).asBytes());
 		assertThat(first.get(key, Integer.class), is(1000 - i));
 	    }
 	} finally {
@@ -159,4 +160,229 @@ public class TestNode {
 	    }
 	}
     }
+
+    @Test
+    public void testAsyncLookups() throws Exception {
+	final List<Node> nodes = new ArrayList<>();
+	try {
+	    for (int i = 0; i < 10; i++) {
+		final Node node = new Node("127.0.0.1", 20000 + i, pool).start();
+		node.joinAsync(first).toCompletableFuture().get();
+		nodes.add(node);
+	    }
+
+	    // all in flight at once, from this thread only
+	    final List<CompletableFuture<Void>> puts = new ArrayList<>();
+	    for (int i = 0; i < 5000; i++) {
+		puts.add(first.putAsync(key(i), i).toCompletableFuture());
+	    }
+	    CompletableFuture.allOf(puts.toArray(new CompletableFuture<?>[0])).get(30, TimeUnit.SECONDS);
+
+	    final List<CompletableFuture<Integer>> gets = new ArrayList<>();
+	    for (int i = 0; i < 5000; i++) {
+		gets.add(first.getAsync(key(i), Integer.class).toCompletableFuture());
+	    }
+	    for (int i = 0; i < gets.size(); i++) {
+		assertThat(gets.get(i).get(30, TimeUnit.SECONDS), is(i));
+	    }
+	} finally {
+	    for (Node node : nodes) {
+		node.stop();
+	    }
+	}
+    }
+
+    @Test
+    public void testLookupHops() throws Exception {
+	final List<Node> nodes = new ArrayList<>();
+	try {
+	    for (int i = 0; i < 31; i++) {
+		final Node node = new Node("127.0.0.1", 20000 + i, pool).start();
+		node.join(first);
+		nodes.add(node);
+	    }
+	    first.fixFingers();
+	    for (Node node : nodes) {
+		node.fixFingers();
+	    }
+
+	    final List<Id> ids = new ArrayList<>();
+	    ids.add(first.getId());
+	    for (Node node : nodes) {
+		ids.add(node.getId());
+	    }
+	    Collections.sort(ids);
+
+	    // log2(32) hops at most with exact fingers
+	    for (int i = 0; i < 200; i++) {
+		final Lookup lookup = first.lookup(key(i)).toCompletableFuture().get();
+		assertThat(lookup.getHops(), is(lessThanOrEqualTo(5)));
+		assertThat(lookup.getSuccessor().getId(), is(successor(ids, key(i))));
+	    }
+	} finally {
+	    for (Node node : nodes) {
+		node.stop();
+	    }
+	}
+    }
+
+    @Test
+    public void testRoutingCache() throws Exception {
+	final List<Node> nodes = new ArrayList<>();
+	try {
+	    for (int i = 0; i < 10; i++) {
+		final Node node = new Node("127.0.0.1", 20000 + i, pool).start();
+		node.join(first);
+		nodes.add(node);
+	    }
+
+	    // a lookup per range of the ring at most, then none
+	    final Histogram lookups = first.getMetrics().histogram("lookup.hops");
+	    final long joined = lookups.getCount();
+	    for (int i = 0; i < 1000; i++) {
+		first.put(key(i), i);
+	    }
+	    assertThat(lookups.getCount() - joined, is(lessThanOrEqualTo(11L)));
+	    final long cached = lookups.getCount();
+	    for (int i = 0; i < 1000; i++) {
+		assertThat(first.get(key(i), Integer.class), is(i));
+	    }
+	    assertThat(lookups.getCount(), is(cached));
+
+	    // a node joining takes over a part of the cached ranges
+	    final Node late = new Node("127.0.0.1", 20010, pool).start();
+	    late.join(first);
+	    nodes.add(late);
+	    for (int i = 0; i < 1000; i++) {
+		first.put(key(i), -i);
+	    }
+	    for (int i = 0; i < 1000; i++) {
+		assertThat(first.get(key(i), Integer.class), is(-i));
+	    }
+	    assertThat(first.getMetrics().value("routes.redirects"), is(greaterThan(0L)));
+	} finally {
+	    for (Node node : nodes) {
+		node.stop();
+	    }
+	}
+    }
+
+    @Test
+    public void testBatches() throws Exception {
+	final List<Node> nodes = new ArrayList<>();
+	try {
+	    for (int i = 0; i < 10; i++) {
+		final Node node = new Node("127.0.0.1", 20000 + i, pool).start();
+		node.join(first);
+		nodes.add(node);
+	    }
+
+	    final Map<Id, Integer> entries = new HashMap<>();
+	    for (int i = 0; i < 500; i++) {
+		entries.put(key(i), i);
+	    }
+	    first.putAll(entries);
+	    // one batch per node at most
+	    long batches = first.getMetrics().histogram("service.PUT_ALL").getCount();
+	    for (Node node : nodes) {
+		batches += node.getMetrics().histogram("service.PUT_ALL").getCount();
+	    }
+	    assertThat(batches, is(lessThanOrEqualTo(11L)));
+
+	    final List<Id> keys = new ArrayList<>(entries.keySet());
+	    keys.add(Keys.of("missing"));
+	    assertThat(first.getAll(keys, Integer.class), is(entries));
+	    assertThat(first.get(key(42), Integer.class), is(42));
+
+	    // the keys taken over by a late node are redirected
+	    final Node late = new Node("127.0.0.1", 20010, pool).start();
+	    late.join(first);
+	    nodes.add(late);
+	    entries.replaceAll((key, value) -> -value);
+	    first.putAll(entries);
+	    assertThat(first.getAll(entries.keySet(), Integer.class), is(entries));
+	    assertThat(first.getMetrics().value("routes.redirects"), is(greaterThan(0L)));
+	} finally {
+	    for (Node node : nodes) {
+		node.stop();
+	    }
+	}
+    }
+
+    @Test
+    public void testOffHeapStorage() throws Exception {
+	final List<Node> nodes = new ArrayList<>();
+	try {
+	    for (int i = 0; i < 5; i++) {
+		final Node node = new Node("127.0.0.1", 20000 + i, pool).storage(Storage.offHeap(16 * 1024 * 1024))
+			.start();
+		node.join(first);
+		nodes.add(node);
+	    }
+
+	    for (int i = 0; i < 1000; i++) {
+		first.put(key(i), "value-" + i);
+	    }
+	    long stored = 0;
+	    for (Node node : nodes) {
+		stored += node.getMetrics().value("storage.size");
+	    }
+	    assertThat(stored, is(greaterThan(0L)));
+	    for (int i = 0; i < 1000; i++) {
+		assertThat(first.get(key(i), String.class), is("value-" + i));
+	    }
+	} finally {
+	    for (Node node : nodes) {
+		node.stop();
+	    }
+	}
+    }
+
+    @Test
+    public void testCrashedSuccessor() throws Exception {
+	final List<Node> nodes = new ArrayList<>();
+	try {
+	    for (int i = 0; i < 3; i++) {
+		final Node node = new Node("127.0.0.1", 20000 + i, pool).start();
+		node.join(first);
+		nodes.add(node);
+	    }
+
+	    // gone without handing its neighbours over
+	    final Id successor = first.getNext().getId();
+	    final Node crashed = nodes.stream().filter(node -> node.getId().equals(successor)).findFirst().get();
+	    nodes.remove(crashed);
+	    crashed.crash();
+
+	    first.putAsync(successor, -1).toCompletableFuture().get(10, TimeUnit.SECONDS);
+	    assertThat(first.getAsync(successor, Integer.class).toCompletableFuture().get(10, TimeUnit.SECONDS),
+		    is(-1));
+	    for (int i = 0; i < 100; i++) {
+		first.putAsync(key(i), i).toCompletableFuture().get(10, TimeUnit.SECONDS);
+	    }
+	    for (int i = 0; i < 100; i++) {
+		assertThat(first.getAsync(key(i), Integer.class).toCompletableFuture().get(10, TimeUnit.SECONDS),
+			is(i));
+	    }
+	    assertThat(first.getNext().getId().equals(successor), is(false));
+	} finally {
+	    for (Node node : nodes) {
+		node.stop();
+	    }
+	}
+    }
+
+    private static Id successor(List<Id> ids, Id key) {
+	for (Id id : ids) {
+	    if (id.compareTo(key) >= 0) {
+		return id;
+	    }
+	}
+	return ids.get(0);
+    }
+
+    @SuppressWarnings("deprecation")
+    private static Id key(int i) {
+	return Id.of(Hashing.sha1().hashInt(i).asBytes());
+    }
 }
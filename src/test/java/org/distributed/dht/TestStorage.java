@@ -0,0 +1,143 @@
+package org.distributed.dht;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class TestStorage {
+
+    private final ByteBufAllocator alloc = PooledByteBufAllocator.DEFAULT;
+
+    @Test
+    public void testHeap() {
+	testPutGet(Storage.heap(1024 * 1024));
+    }
+
+    @Test
+    public void testOffHeap() {
+	testPutGet(Storage.offHeap(1024 * 1024));
+    }
+
+    private void testPutGet(Storage storage) {
+	try {
+	    // enough keys to grow the index
+	    for (int i = 0; i < 10000; i++) {
+		storage.put(Keys.of("key-" + i), bytes("value-" + i));
+	    }
+	    storage.put(Keys.of("key-0"), bytes("overwritten"));
+	    assertThat(storage.size(), is(10000L));
+	    assertThat(read(storage, Keys.of("key-0")), is("overwritten"));
+	    for (int i = 1; i < 10000; i++) {
+		assertThat(read(storage, Keys.of("key-" + i)), is("value-" + i));
+	    }
+	    assertThat(storage.get(Keys.of("missing"), alloc), is(nullValue()));
+	} finally {
+	    storage.close();
+	}
+	assertThat(storage.size(), is(0L));
+	assertThat(storage.weight(), is(0L));
+	assertThat(storage.get(Keys.of("key-1"), alloc), is(nullValue()));
+    }
+
+    @Test
+    public void testHeapWeight() {
+	final Storage storage = Storage.heap(64 * 1024);
+	try {
+	    storage.put(Keys.of("key"), Unpooled.wrappedBuffer(new byte[100]));
+	    storage.put(Keys.of("key"), Unpooled.wrappedBuffer(new byte[50]));
+	    assertThat(storage.weight(), is(50L));
+
+	    // the evicted values are subtracted
+	    for (int i = 0; i < 10000; i++) {
+		storage.put(Keys.of("key-" + i), Unpooled.wrappedBuffer(new byte[100]));
+	    }
+	    long stored = weight(storage, Keys.of("key"));
+	    for (int i = 0; i < 10000; i++) {
+		stored += weight(storage, Keys.of("key-" + i));
+	    }
+	    assertThat(storage.weight(), is(stored));
+	    assertThat(storage.weight(), is(lessThanOrEqualTo(64L * 1024)));
+	} finally {
+	    storage.close();
+	}
+    }
+
+    @Test
+    public void testOffHeapEviction() {
+	final Storage storage = new OffHeapStorage(64 * 1024, 4096);
+	try {
+	    final ByteBuf value = Unpooled.wrappedBuffer(new byte[100]);
+	    for (int i = 0; i < 10000; i++) {
+		storage.put(Keys.of("key-" + i), value);
+	    }
+	    assertThat(storage.weight(), is(lessThanOrEqualTo(64L * 1024)));
+
+	    // the oldest values are evicted, a slab at once
+	    long stored = 0;
+	    for (int i = 0; i < 10000; i++) {
+		final ByteBuf found = storage.get(Keys.of("key-" + i), alloc);
+		if (found != null) {
+		    assertThat(found.readableBytes(), is(100));
+		    found.release();
+		    stored++;
+		}
+	    }
+	    assertThat(storage.size(), is(stored));
+	    assertThat(stored, is(greaterThan(500L)));
+	    assertThat(storage.get(Keys.of("key-0"), alloc), is(nullValue()));
+	    assertThat(read(storage, Keys.of("key-9999")).length(), is(100));
+	} finally {
+	    storage.close();
+	}
+    }
+
+    @Test
+    public void testOffHeapTooLarge() {
+	final Storage storage = new OffHeapStorage(64 * 1024, 4096);
+	try {
+	    storage.put(Keys.of("key"), bytes("value"));
+	    storage.put(Keys.of("key"), Unpooled.wrappedBuffer(new byte[4096]));
+	    assertThat(storage.get(Keys.of("key"), alloc), is(nullValue()));
+	    assertThat(storage.size(), is(0L));
+	} finally {
+	    storage.close();
+	}
+    }
+
+    private long weight(Storage storage, Id key) {
+	final ByteBuf value = storage.get(key, alloc);
+	if (value == null) {
+	    return 0;
+	}
+	try {
+	    return value.readableBytes();
+	} finally {
+	    value.release();
+	}
+    }
+
+    private static ByteBuf bytes(String value) {
+	return Unpooled.wrappedBuffer(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String read(Storage storage, Id key) {
+	final ByteBuf value = storage.get(key, alloc);
+	try {
+	    return new String(ByteBufUtil.getBytes(value), StandardCharsets.UTF_8);
+	} finally {
+	    value.release();
+	}
+    }
+}
@@ -24,7 +24,7 @@ public class TCPEcho extends SimpleChannelInboundHandler<ByteTransfer> {
 	if (sleep > 0) {
 	    Thread.sleep(sleep);
 	}
-	ctx.writeAndFlush(msg);
+	ctx.writeAndFlush(msg.retain()); // released once written
     }
 
     @Override
@@ -0,0 +1,178 @@
+package org.distributed.network;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.channel.socket.DatagramPacket;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.distributed.conduit.ByteTransfer;
+import org.distributed.conduit.ByteTransferDecoder;
+import org.distributed.conduit.ByteTransferEncoder;
+import org.distributed.conduit.Compression;
+import org.distributed.conduit.DatagramBatcher;
+import org.distributed.conduit.DatagramToByteTransfer;
+import org.junit.Test;
+
+public class TestByteTransferCodec {
+
+    @Test
+    public void testRoundTrip() {
+	for (int size : new int[] { 0, 16, 64 * 1024 }) {
+	    final byte[] payload = new byte[size];
+	    Arrays.fill(payload, (byte) 7);
+
+	    final EmbeddedChannel encoder = new EmbeddedChannel(new ByteTransferEncoder());
+	    encoder.writeOutbound(new ByteTransfer(size, payload));
+	    final ByteBuf frame = encoder.readOutbound();
+
+	    // feed the frame byte by byte to simulate fragmentation
+	    final EmbeddedChannel decoder = new EmbeddedChannel(new ByteTransferDecoder());
+	    while (frame.isReadable()) {
+		decoder.writeInbound(frame.readRetainedSlice(1));
+	    }
+	    frame.release();
+
+	    final ByteTransfer transfer = decoder.readInbound();
+	    assertThat(transfer.id, is(size));
+	    assertThat(transfer.length(), is(size));
+	    assertThat(Arrays.equals(transfer.payload(), size == 0 ? null : payload), is(true));
+	    assertThat(transfer.release(), is(true));
+	    assertThat(decoder.finish(), is(false));
+	}
+    }
+
+    @Test
+    public void testFromByteBufSharesContent() {
+	final ByteBuf buffer = Unpooled.buffer();
+	buffer.writeBytes(new ByteTransfer(1, new byte[] { 1, 2, 3 }).toByteArray());
+
+	final ByteTransfer transfer = ByteTransfer.fromByteBuf(buffer);
+	assertThat(buffer.refCnt(), is(2));
+	assertThat(transfer.payload().length, is(3));
+	transfer.release();
+	assertThat(buffer.refCnt(), is(1));
+	buffer.release();
+    }
+
+    @Test
+    public void testCompressedRoundTrip() {
+	final byte[] payload = json(64 * 1024);
+
+	final EmbeddedChannel encoder = new EmbeddedChannel(new ByteTransferDecoder(),
+		new ByteTransferEncoder(Compression.lz4));
+	encoder.writeInbound(capabilities(1)); // the peer decompresses
+	encoder.writeOutbound(new ByteTransfer(1, payload));
+	final ByteBuf frame = encoder.readOutbound();
+	assertThat(frame.readableBytes(), is(lessThan(payload.length / 4)));
+
+	final EmbeddedChannel decoder = new EmbeddedChannel(new ByteTransferDecoder());
+	decoder.writeInbound(frame);
+	final ByteTransfer transfer = decoder.readInbound();
+	assertThat(Arrays.equals(transfer.payload(), payload), is(true));
+	transfer.release();
+	assertThat(encoder.finish(), is(false));
+    }
+
+    @Test
+    public void testCompressedFromByteArray() {
+	final byte[] payload = json(64 * 1024);
+
+	final EmbeddedChannel encoder = new EmbeddedChannel(new ByteTransferDecoder(),
+		new ByteTransferEncoder(Compression.lz4));
+	encoder.writeInbound(capabilities(1));
+	encoder.writeOutbound(new ByteTransfer(1, payload));
+	final ByteBuf frame = encoder.readOutbound();
+	final ByteTransfer transfer = ByteTransfer.fromByteArray(ByteBufUtil.getBytes(frame));
+	frame.release();
+	assertThat(transfer.id, is(1));
+	assertThat(Arrays.equals(transfer.payload(), payload), is(true));
+	transfer.release();
+    }
+
+    @Test
+    public void testShortControlFrame() {
+	final byte[] payload = json(64 * 1024);
+
+	// without capabilities, followed by a transfer whose id would read as LZ4
+	final EmbeddedChannel channel = new EmbeddedChannel(new ByteTransferDecoder(),
+		new ByteTransferEncoder(Compression.lz4));
+	channel.writeInbound(Unpooled.buffer().writeInt(Integer.MIN_VALUE).writeInt(0)
+		.writeBytes(new ByteTransfer(1, new byte[] { 1, 2, 3 }).toByteArray()));
+	final ByteTransfer transfer = channel.readInbound();
+	assertThat(transfer.id, is(1));
+	assertThat(transfer.length(), is(3));
+	transfer.release();
+
+	channel.writeOutbound(new ByteTransfer(2, payload));
+	final ByteBuf frame = channel.readOutbound();
+	assertThat(frame.readableBytes(), is(payload.length + 8));
+	frame.release();
+	assertThat(channel.finish(), is(false));
+    }
+
+    @Test(expected = CorruptedFrameException.class)
+    public void testDecompressedLengthOverFrameLimit() {
+	// flagged as compressed, announcing 1GB once decompressed
+	final ByteBuf frame = Unpooled.buffer().writeInt(1).writeInt(0x80000000 | 8).writeInt(1 << 30).writeInt(0);
+	new EmbeddedChannel(new ByteTransferDecoder()).writeInbound(frame);
+    }
+
+    @Test
+    public void testNotCompressedWithoutCapability() {
+	final byte[] payload = json(64 * 1024);
+
+	final EmbeddedChannel encoder = new EmbeddedChannel(new ByteTransferEncoder(Compression.lz4));
+	encoder.writeOutbound(new ByteTransfer(1, payload));
+	final ByteBuf frame = encoder.readOutbound();
+	assertThat(frame.readableBytes(), is(payload.length + 8));
+	frame.release();
+    }
+
+    @Test
+    public void testDatagramBatching() {
+	final EmbeddedChannel encoder = new EmbeddedChannel(new DatagramBatcher(64), new ByteTransferEncoder());
+	final Object[] transfers = new Object[5];
+	for (int i = 0; i < transfers.length; i++) {
+	    transfers[i] = new ByteTransfer(i, new byte[16]); // 24 bytes framed, two per datagram
+	}
+	encoder.writeOutbound(transfers);
+
+	final InetSocketAddress address = new InetSocketAddress("127.0.0.1", 20000);
+	final EmbeddedChannel decoder = new EmbeddedChannel(new DatagramToByteTransfer());
+	int datagrams = 0;
+	for (ByteBuf datagram; (datagram = encoder.readOutbound()) != null; datagrams++) {
+	    assertThat(datagram.readableBytes(), is(lessThanOrEqualTo(64)));
+	    decoder.writeInbound(new DatagramPacket(datagram, address, address));
+	}
+	assertThat(datagrams, is(3));
+	for (int i = 0; i < transfers.length; i++) {
+	    final ByteTransfer transfer = decoder.readInbound();
+	    assertThat(transfer.id, is(i));
+	    assertThat(transfer.length(), is(16));
+	    transfer.release();
+	}
+	assertThat(decoder.finish(), is(false));
+    }
+
+    static ByteBuf capabilities(int capabilities) {
+	return Unpooled.buffer().writeInt(Integer.MIN_VALUE).writeInt(Integer.BYTES).writeInt(capabilities);
+    }
+
+    static byte[] json(int size) {
+	final StringBuilder json = new StringBuilder("[");
+	for (int i = 0; json.length() < size; i++) {
+	    json.append("{\"id\":").append(i).append(",\"name\":\"node-").append(i % 64).append("\",\"alive\":true},");
+	}
+	return json.substring(0, size).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,34 @@
+package org.distributed.network;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import java.util.concurrent.TimeUnit;
+
+import org.distributed.conduit.Compression;
+import org.distributed.conduit.Conduit;
+import org.distributed.conduit.NioGroupFactory;
+import org.distributed.conduit.TCPConduit;
+import org.distributed.conduit.TCPServer;
+import org.distributed.conduit.TransportOptions;
+import org.junit.Test;
+
+/**
+ * Compressed transfers over TCP. The codec throughput and the compression ratios are measured by the
+ * <code>CompressionBenchmark</code> of the benchmarks module.
+ */
+public class TestCompression {
+
+    @Test
+    public void testTcpCompressedTransfer() throws Exception {
+	final String message = new String(TestByteTransferCodec.json(64 * 1024), "UTF-8");
+	final TransportOptions options = TransportOptions.defaults().compression(Compression.lz4);
+	final TCPServer server = new TCPServer(new TCPEcho(), "127.0.0.1", 19995, NioGroupFactory.shared, options);
+	try (Conduit conduit = new TCPConduit("127.0.0.1", 19995, NioGroupFactory.shared, options)) {
+	    for (int i = 0; i < 100; i++) {
+		assertThat(conduit.send(message, String.class).get(1, TimeUnit.SECONDS), is(message));
+	    }
+	} finally {
+	    server.close();
+	}
+    }
+}
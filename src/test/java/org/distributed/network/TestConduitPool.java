@@ -0,0 +1,397 @@
+package org.distributed.network;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.Matchers.contains;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+
+import java.net.ConnectException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import org.distributed.conduit.ByteTransfer;
+import org.distributed.conduit.Conduit;
+import org.distributed.conduit.ConduitFactory;
+import org.distributed.conduit.ConduitPool;
+import org.distributed.conduit.ConduitPool.Eviction;
+import org.distributed.conduit.ConduitPool.Selection;
+import org.distributed.conduit.ConduitPool.Striping;
+import org.distributed.conduit.NioGroupFactory;
+import org.distributed.conduit.StreamingConduit;
+import org.distributed.conduit.TCPConduit;
+import org.distributed.conduit.TCPServer;
+import org.distributed.conduit.TransportOptions;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestConduitPool {
+
+    private static final String URL = "127.0.0.1:19996";
+    private static final String HELD_URL = "127.0.0.1:19987";
+    private static final String CLOSING_URL = "127.0.0.1:19986";
+
+    private static TCPServer server = null;
+
+    private final AtomicInteger created = new AtomicInteger();
+    private ConduitFactory<String> factory;
+
+    @BeforeClass
+    public static void pre() throws InterruptedException {
+	server = new TCPServer(new TCPEcho(), "127.0.0.1", 19996);
+    }
+
+    @AfterClass
+    public static void post() {
+	server.close();
+    }
+
+    @Before
+    public void counting() {
+	created.set(0);
+	factory = (url) -> {
+	    try {
+		created.incrementAndGet();
+		final String[] hostPort = url.split(":");
+		return new TCPConduit(hostPort[0], Integer.valueOf(hostPort[1]));
+	    } catch (Exception e) {
+		throw new IllegalArgumentException("Cannot create. Expected format 'hostname:port'", e);
+	    }
+	};
+    }
+
+    @Test
+    public void testSingleConcurrentCreation() throws Exception {
+	final ConduitPool pool = new ConduitPool(factory);
+	final ExecutorService executor = Executors.newFixedThreadPool(16);
+	final CountDownLatch start = new CountDownLatch(1);
+	try {
+	    final List<Future<Conduit>> conduits = new ArrayList<>();
+	    for (int i = 0; i < 16; i++) {
+		conduits.add(executor.submit(() -> {
+		    start.await();
+		    return pool.getOrCreate(URL);
+		}));
+	    }
+	    start.countDown();
+	    for (Future<Conduit> conduit : conduits) {
+		assertThat(conduit.get(), is(sameInstance(conduits.get(0).get())));
+	    }
+	    assertThat(created.get(), is(1));
+	} finally {
+	    executor.shutdown();
+	    pool.close();
+	}
+    }
+
+    @Test
+    public void testAsyncCreation() throws Exception {
+	final ConduitPool pool = new ConduitPool(TCPConduit.factory(NioGroupFactory.shared,
+		TransportOptions.defaults()));
+	try {
+	    final List<CompletableFuture<Conduit>> conduits = new ArrayList<>();
+	    for (int i = 0; i < 16; i++) {
+		conduits.add(pool.getOrCreateAsync(URL).toCompletableFuture());
+	    }
+	    // the callers share the conduit being connected
+	    for (CompletableFuture<Conduit> conduit : conduits) {
+		assertThat(conduit.get(10, TimeUnit.SECONDS), is(sameInstance(conduits.get(0).get())));
+	    }
+	    assertThat(conduits.get(0).get().send("One", String.class).get(), is("One"));
+
+	    try {
+		pool.getOrCreateAsync("127.0.0.1:19985").toCompletableFuture().get(10, TimeUnit.SECONDS);
+		fail("Expected the connection to be refused.");
+	    } catch (ExecutionException e) {
+		assertThat(e.getCause() instanceof ConnectException, is(true));
+	    }
+	    assertThat(pool.size(), is(1L));
+	} finally {
+	    pool.close();
+	}
+    }
+
+    @Test
+    public void testFixedStriping() throws Exception {
+	final ConduitPool pool = new ConduitPool(factory, Striping.fixed(3, Selection.ROUND_ROBIN));
+	try {
+	    final List<Conduit> conduits = new ArrayList<>();
+	    for (int i = 0; i < 6; i++) {
+		final Conduit conduit = pool.getOrCreate(URL);
+		assertThat(conduit.send("One", String.class).get(), is("One"));
+		conduits.add(conduit);
+	    }
+	    assertThat(created.get(), is(3));
+	    // round robin over the three conduits
+	    assertThat(new HashSet<>(conduits.subList(3, 6)).size(), is(3));
+	    assertThat(new HashSet<>(conduits).size(), is(3));
+	} finally {
+	    pool.close();
+	}
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction() throws Exception {
+	final List<String> closed = new ArrayList<>();
+	final ConduitPool pool = new ConduitPool(url -> new NullConduit(() -> closed.add(url)), Striping.single,
+		Eviction.lru(2, 1, TimeUnit.MINUTES));
+	try {
+	    pool.getOrCreate("a:1");
+	    pool.getOrCreate("b:1");
+	    pool.getOrCreate("a:1").send("touch");
+	    pool.getOrCreate("c:1");
+	    assertThat(closed, contains("b:1"));
+	    assertThat(pool.size(), is(2L));
+	    assertThat(pool.getEvictions(), is(1L));
+	} finally {
+	    pool.close();
+	}
+    }
+
+    @Test
+    public void testEvictionWhileOpening() throws Exception {
+	final List<String> closed = new ArrayList<>();
+	final AtomicReference<ConduitPool> evicting = new AtomicReference<>();
+	final ConduitPool pool = new ConduitPool(url -> {
+	    final String name = url + "#" + created.incrementAndGet();
+	    if (created.get() == 1) {
+		// evicted before the conduit is published
+		evicting.get().clear();
+	    }
+	    return new NullConduit(() -> closed.add(name));
+	});
+	evicting.set(pool);
+	try {
+	    pool.getOrCreate("a:1").send("touch");
+	    // the conduit opened for the evicted endpoint is closed, the caller gets a conduit of a new one
+	    assertThat(closed, contains("a:1#1"));
+	    assertThat(created.get(), is(2));
+	    assertThat(pool.size(), is(1L));
+	} finally {
+	    pool.close();
+	}
+    }
+
+    @Test
+    public void testIdleEviction() throws Exception {
+	final List<String> closed = new ArrayList<>();
+	final ConduitPool pool = new ConduitPool(url -> new NullConduit(() -> closed.add(url)), Striping.single,
+		Eviction.lru(2, 100, TimeUnit.MILLISECONDS));
+	try {
+	    pool.getOrCreate("a:1");
+	    Thread.sleep(500); // no access, expired by the timer
+	    assertThat(closed, contains("a:1"));
+	    assertThat(pool.getEvictions(), is(1L));
+	} finally {
+	    pool.close();
+	}
+    }
+
+    @Test
+    public void testStreamingOnlyWhenPooledConduitsStream() throws Exception {
+	final ConduitPool pool = new ConduitPool(factory);
+	final ConduitPool nulls = new ConduitPool(url -> new NullConduit(() -> {
+	}));
+	try {
+	    assertThat(pool.getOrCreate(URL) instanceof StreamingConduit, is(true));
+	    assertThat(nulls.getOrCreate("a:1") instanceof StreamingConduit, is(false));
+	} finally {
+	    pool.close();
+	    nulls.close();
+	}
+    }
+
+    @Test
+    public void testAdaptiveStriping() throws Exception {
+	final ConduitPool pool = new ConduitPool(factory, Striping.adaptive(4, 1));
+	try {
+	    // idle conduits are reused
+	    for (int i = 0; i < 3; i++) {
+		assertThat(pool.getOrCreate(URL).send("One", String.class).get(), is("One"));
+	    }
+	    assertThat(created.get(), is(1));
+	} finally {
+	    pool.close();
+	}
+    }
+
+    @Test
+    public void testAdaptiveStripingUnderLoad() throws Exception {
+	final HeldEcho echo = new HeldEcho();
+	final TCPServer held = new TCPServer(echo, "127.0.0.1", 19987);
+	final ConduitPool pool = new ConduitPool(factory, Striping.adaptive(2, 1));
+	try {
+	    final Conduit first = pool.getOrCreate(HELD_URL);
+	    final List<Future<String>> answers = new ArrayList<>();
+	    for (String message : new String[] { "A", "B", "C" }) {
+		answers.add(first.send(message, String.class));
+	    }
+
+	    // the only conduit is loaded, a second stripe opens
+	    final Conduit second = pool.getOrCreate(HELD_URL);
+	    assertThat(created.get(), is(2));
+	    assertThat(second, is(not(sameInstance(first))));
+	    answers.add(second.send("D", String.class));
+
+	    // all stripes open, the least loaded one is picked
+	    assertThat(pool.getOrCreate(HELD_URL), is(sameInstance(second)));
+	    assertThat(created.get(), is(2));
+
+	    echo.release();
+	    for (int i = 0; i < answers.size(); i++) {
+		assertThat(answers.get(i).get(), is(String.valueOf((char) ('A' + i))));
+	    }
+	} finally {
+	    echo.release();
+	    pool.close();
+	    held.close();
+	}
+    }
+
+    @Test
+    public void testReopenClosedConduit() throws Exception {
+	TCPServer closing = new TCPServer(new TCPEcho(), "127.0.0.1", 19986);
+	final ConduitPool pool = new ConduitPool(factory);
+	try {
+	    final Conduit conduit = pool.getOrCreate(CLOSING_URL);
+	    assertThat(conduit.send("One", String.class).get(), is("One"));
+
+	    // the server side goes away, then comes back
+	    closing.close();
+	    awaitClosed(conduit);
+	    closing = new TCPServer(new TCPEcho(), "127.0.0.1", 19986);
+
+	    final Conduit reopened = pool.getOrCreate(CLOSING_URL);
+	    assertThat(reopened, is(not(sameInstance(conduit))));
+	    assertThat(reopened.send("Two", String.class).get(), is("Two"));
+	    assertThat(created.get(), is(2));
+	    assertThat(pool.size(), is(1L));
+	} finally {
+	    pool.close();
+	    closing.close();
+	}
+    }
+
+    @Test
+    public void testDropEndpointWithoutOpenConduit() throws Exception {
+	final TCPServer closing = new TCPServer(new TCPEcho(), "127.0.0.1", 19986);
+	final ConduitPool pool = new ConduitPool(factory);
+	try {
+	    final Conduit conduit = pool.getOrCreate(CLOSING_URL);
+	    assertThat(conduit.send("One", String.class).get(), is("One"));
+	    closing.close();
+	    awaitClosed(conduit);
+	    try {
+		pool.getOrCreate(CLOSING_URL);
+		fail("Nothing to connect to.");
+	    } catch (IllegalArgumentException expected) {
+	    }
+	    assertThat(pool.size(), is(0L));
+	} finally {
+	    pool.close();
+	}
+    }
+
+    private static void awaitClosed(Conduit conduit) throws InterruptedException {
+	final long deadline = System.currentTimeMillis() + 5000;
+	while (conduit.isOpen() && System.currentTimeMillis() < deadline) {
+	    Thread.sleep(10);
+	}
+	assertThat(conduit.isOpen(), is(false));
+    }
+
+    /**
+     * Echoes the messages once released, holding the requests in flight until then.
+     */
+    @Sharable
+    static class HeldEcho extends SimpleChannelInboundHandler<ByteTransfer> {
+
+	private final List<Runnable> held = new ArrayList<>();
+	private boolean released = false;
+
+	@Override
+	protected void channelRead0(ChannelHandlerContext ctx, ByteTransfer msg) {
+	    msg.retain();
+	    synchronized (this) {
+		if (!released) {
+		    held.add(() -> ctx.writeAndFlush(msg));
+		    return;
+		}
+	    }
+	    ctx.writeAndFlush(msg);
+	}
+
+	synchronized void release() {
+	    released = true;
+	    held.forEach(Runnable::run);
+	    held.clear();
+	}
+    }
+
+    static class NullConduit implements Conduit {
+
+	private final Runnable onClose;
+
+	NullConduit(Runnable onClose) {
+	    this.onClose = onClose;
+	}
+
+	@Override
+	public void close() {
+	    onClose.run();
+	}
+
+	@Override
+	public void send(Object message) {
+	}
+
+	@Override
+	public <T> Future<T> send(Object message, Class<T> type) {
+	    return CompletableFuture.completedFuture(null);
+	}
+
+	@Override
+	public <T> Future<T> send(Object message, Function<byte[], T> transformer) {
+	    return CompletableFuture.completedFuture(null);
+	}
+
+	@Override
+	public <T> CompletionStage<T> sendAsync(Object message, Class<T> type) {
+	    return CompletableFuture.completedFuture(null);
+	}
+
+	@Override
+	public boolean isOpen() {
+	    return true;
+	}
+
+	@Override
+	public int getInFlight() {
+	    return 0;
+	}
+
+	@Override
+	public long getTimedOut() {
+	    return 0;
+	}
+    }
+}
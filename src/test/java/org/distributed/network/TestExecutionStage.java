@@ -0,0 +1,145 @@
+package org.distributed.network;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.Assert.assertThat;
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.distributed.conduit.ByteTransfer;
+import org.distributed.conduit.ExecutionStage;
+import org.distributed.conduit.ExecutionStage.Rejection;
+import org.distributed.conduit.NioGroupFactory;
+import org.distributed.conduit.TCPConduit;
+import org.distributed.conduit.TCPServer;
+import org.distributed.conduit.TransferSerializer;
+import org.distributed.conduit.Transport;
+import org.distributed.conduit.TransportOptions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestExecutionStage {
+
+    // a single event loop, shared by all the connections
+    private static final NioGroupFactory factory = NioGroupFactory.configurable(Transport.best(), 1, 1);
+
+    private ExecutorService workers;
+
+    @Before
+    public void pre() {
+	workers = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void post() {
+	workers.shutdownNow();
+    }
+
+    @Test
+    public void testSlowRequestDoesNotStall() throws Exception {
+	final ExecutionStage stage = ExecutionStage.ordered(workers, 1024, Rejection.PAUSE_READS);
+	final TCPServer server = server(new Slow(), stage);
+	try (TCPConduit slow = new TCPConduit("127.0.0.1", 19990);
+		TCPConduit fast = new TCPConduit("127.0.0.1", 19990)) {
+	    final Future<Integer> slowAnswer = slow.send(2000, Integer.class);
+	    final long start = System.nanoTime();
+	    assertThat(fast.send(0, Integer.class).get(1, TimeUnit.SECONDS), is(0));
+	    assertThat(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(1000), is(true));
+	    assertThat(slowAnswer.get(5, TimeUnit.SECONDS), is(2000));
+	} finally {
+	    server.close();
+	}
+    }
+
+    @Test
+    public void testOrderPerChannel() throws Exception {
+	final Slow handler = new Slow();
+	final TCPServer server = server(handler, ExecutionStage.ordered(workers, 1024, Rejection.PAUSE_READS));
+	try (TCPConduit conduit = new TCPConduit("127.0.0.1", 19990)) {
+	    final List<Future<Integer>> answers = new ArrayList<>();
+	    for (int i = 0; i < 5000; i++) {
+		answers.add(conduit.send(i % 2, Integer.class)); // some sleep a millisecond
+	    }
+	    for (Future<Integer> answer : answers) {
+		answer.get(30, TimeUnit.SECONDS);
+	    }
+	} finally {
+	    server.close();
+	}
+	final List<Integer> sorted = new ArrayList<>(handler.ids);
+	Collections.sort(sorted);
+	assertThat(handler.ids, is(sorted));
+    }
+
+    @Test
+    public void testDropWhenFull() throws Exception {
+	final ExecutionStage stage = ExecutionStage.ordered(workers, 1, Rejection.DROP);
+	final TCPServer server = server(new Slow(), stage);
+	try (TCPConduit conduit = new TCPConduit("127.0.0.1", 19990)) {
+	    final Future<Integer> first = conduit.send(200, Integer.class);
+	    conduit.send(200, Integer.class);
+	    conduit.send(200, Integer.class);
+	    assertThat(first.get(5, TimeUnit.SECONDS), is(200));
+	    assertThat(stage.getRejected(), is(greaterThan(0L)));
+	} finally {
+	    server.close();
+	}
+    }
+
+    @Test
+    public void testWorkersShutDown() throws Exception {
+	final ExecutionStage stage = ExecutionStage.ordered(workers, 1024, Rejection.DROP);
+	final TCPServer server = server(new Slow(), stage);
+	try (TCPConduit conduit = new TCPConduit("127.0.0.1", 19990)) {
+	    // a single lane, with more than a batch queued behind the first transfer
+	    conduit.sendAsync(500, Integer.class);
+	    for (int i = 0; i < 199; i++) {
+		conduit.sendAsync(0, Integer.class);
+	    }
+	    awaitQueued(stage, 200);
+	    workers.shutdown();
+	    // the lane cannot run its next batch, the rest is released
+	    awaitQueued(stage, 0);
+	} finally {
+	    server.close();
+	}
+    }
+
+    private static void awaitQueued(ExecutionStage stage, int queued) throws InterruptedException {
+	final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+	while (stage.getQueued() != queued && System.nanoTime() < deadline) {
+	    Thread.sleep(10);
+	}
+	assertThat(stage.getQueued(), is(queued));
+    }
+
+    private static TCPServer server(Slow handler, ExecutionStage stage) throws InterruptedException {
+	return new TCPServer(handler, "127.0.0.1", 19990, factory, TransportOptions.defaults().execution(stage));
+    }
+
+    /**
+     * Sleeps the number of milliseconds it receives, then echoes it.
+     */
+    @Sharable
+    static class Slow extends SimpleChannelInboundHandler<ByteTransfer> {
+
+	final List<Integer> ids = Collections.synchronizedList(new ArrayList<>());
+
+	@Override
+	protected void channelRead0(ChannelHandlerContext ctx, ByteTransfer msg) throws Exception {
+	    ids.add(msg.id);
+	    Thread.sleep(TransferSerializer.defaults.deserialize(msg.content(), Integer.class));
+	    ctx.writeAndFlush(msg.retain());
+	}
+    }
+}
@@ -0,0 +1,97 @@
+package org.distributed.network;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.distributed.conduit.NioGroupFactory;
+import org.distributed.conduit.TCPConduit;
+import org.distributed.conduit.TCPServer;
+import org.distributed.conduit.TransportOptions;
+import org.distributed.metrics.Histogram;
+import org.distributed.metrics.JmxRegistry;
+import org.distributed.metrics.MetricSet;
+import org.distributed.metrics.MetricsRegistry;
+import org.junit.Test;
+
+public class TestMetrics {
+
+    @Test
+    public void testHistogramPercentiles() {
+	final Histogram histogram = new Histogram();
+	for (long i = 1; i <= 100000; i++) {
+	    histogram.record(i * 1000);
+	}
+	assertThat(histogram.getCount(), is(100000L));
+	assertThat(histogram.getMax(), is(100000000L));
+	assertWithin(histogram.getPercentile(50), 50000000L);
+	assertWithin(histogram.getPercentile(99), 99000000L);
+	assertWithin(histogram.getPercentile(99.9), 99900000L);
+	assertThat(histogram.getPercentile(100), is(100000000L));
+	assertThat(new Histogram().getPercentile(99), is(0L));
+    }
+
+    @Test
+    public void testSmallValuesAreExact() {
+	final Histogram histogram = new Histogram();
+	for (long i = 0; i < 64; i++) {
+	    histogram.record(i);
+	}
+	assertThat(histogram.getPercentile(50), is(31L));
+	assertThat(histogram.getMean(), is(31.5));
+    }
+
+    @Test
+    public void testConduitMetrics() throws Exception {
+	final MBeanServer mbeans = ManagementFactory.getPlatformMBeanServer();
+	final TransportOptions options = TransportOptions.defaults().metrics(new JmxRegistry(mbeans));
+	final TCPServer server = new TCPServer(new TCPEcho(), "127.0.0.1", 19988, NioGroupFactory.shared, options);
+	final ObjectName name;
+	try (TCPConduit conduit = new TCPConduit("127.0.0.1", 19988, NioGroupFactory.shared, options)) {
+	    for (int i = 0; i < 100; i++) {
+		conduit.send(i, Integer.class).get();
+	    }
+	    final MetricSet metrics = conduit.getMetrics();
+	    assertThat(metrics.value("framesOut"), is(100L));
+	    assertThat(metrics.value("framesIn"), is(100L));
+	    assertThat(metrics.value("bytesOut"), is(greaterThan(0L)));
+	    assertThat(metrics.histogram("latency").getCount(), is(100L));
+	    assertThat(server.getMetrics().value("connections"), is(1L));
+
+	    name = JmxRegistry.nameOf(metrics);
+	    assertThat(mbeans.getAttribute(name, "framesIn"), is((Object) 100L));
+	    assertThat((Long) mbeans.getAttribute(name, "latency.p99"), is(greaterThan(0L)));
+	    assertThat(mbeans.getAttribute(name, "inFlight"), is((Object) 0L));
+	} finally {
+	    server.close();
+	}
+	assertThat(mbeans.isRegistered(name), is(false));
+	assertThat(mbeans.isRegistered(JmxRegistry.nameOf(server.getMetrics())), is(false));
+    }
+
+    @Test
+    public void testNothingRecordedByDefault() throws Exception {
+	final TCPServer server = new TCPServer(new TCPEcho(), "127.0.0.1", 19988);
+	try (TCPConduit conduit = new TCPConduit("127.0.0.1", 19988)) {
+	    conduit.send(1, Integer.class).get();
+	    assertThat(conduit.getMetrics().value("framesOut"), is(0L));
+	    assertThat(conduit.getMetrics().getHistograms().isEmpty(), is(true));
+	    assertThat(TransportOptions.defaults().getMetrics(), is(MetricsRegistry.none));
+	} finally {
+	    server.close();
+	}
+    }
+
+    // within the precision of the histogram
+    private static void assertWithin(long actual, long expected) {
+	assertThat(actual, is(greaterThanOrEqualTo(expected)));
+	assertThat(actual, is(lessThanOrEqualTo(expected + expected / 32)));
+    }
+}
@@ -0,0 +1,176 @@
+package org.distributed.network;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.distributed.conduit.NioGroupFactory;
+import org.distributed.conduit.TransportOptions;
+import org.distributed.conduit.UDPConduit;
+import org.distributed.conduit.UDPServer;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestReliableUdp {
+
+    private static final TransportOptions reliable = TransportOptions.defaults().reliableUdp(true);
+
+    private static UDPServer server = null;
+    private static LossyRelay relay = null;
+
+    @BeforeClass
+    public static void pre() throws Exception {
+	server = new UDPServer(new UDPEcho(), "127.0.0.1", 19993, NioGroupFactory.shared, reliable);
+	relay = new LossyRelay(19992, new InetSocketAddress("127.0.0.1", 19993), 0.2);
+    }
+
+    @AfterClass
+    public static void post() {
+	relay.close();
+	server.close();
+    }
+
+    @Test
+    public void testLargeTransfer() throws Exception {
+	final byte[] payload = new byte[1024 * 1024]; // far above a datagram
+	new Random(7).nextBytes(payload);
+	try (UDPConduit conduit = new UDPConduit("127.0.0.1", 19993, NioGroupFactory.shared, false, reliable)) {
+	    for (int i = 0; i < 3; i++) {
+		assertArrayEquals(payload, conduit.send(payload, byte[].class).get(10, TimeUnit.SECONDS));
+	    }
+	    assertThat(conduit.send("One", String.class).get(10, TimeUnit.SECONDS), is("One"));
+	}
+    }
+
+    @Test
+    public void testLossyTransfer() throws Exception {
+	final byte[] payload = new byte[20 * 1024];
+	new Random(11).nextBytes(payload);
+	try (UDPConduit conduit = new UDPConduit("127.0.0.1", 19992, NioGroupFactory.shared, false, reliable)) {
+	    final List<Future<byte[]>> answers = new ArrayList<>();
+	    for (int i = 0; i < 50; i++) {
+		answers.add(conduit.send(payload, byte[].class));
+	    }
+	    for (Future<byte[]> answer : answers) {
+		assertArrayEquals(payload, answer.get(30, TimeUnit.SECONDS));
+	    }
+	}
+	assertThat(relay.dropped > 0, is(true));
+    }
+
+    @Test
+    public void testMalformedFragments() throws Exception {
+	final ByteBuffer frame = ByteBuffer.allocate(2 * Integer.BYTES + 6).putInt(7).putInt(6);
+	frame.put("abcdef".getBytes(StandardCharsets.US_ASCII));
+	try (DatagramSocket socket = new DatagramSocket(new InetSocketAddress("127.0.0.1", 0))) {
+	    socket.setSoTimeout(5000);
+	    final InetSocketAddress server = new InetSocketAddress("127.0.0.1", 19993);
+	    // a repeated fragment, then one of a frame of another size, are not part of the frame
+	    socket.send(fragment(server, 0, 0, 2, Arrays.copyOfRange(frame.array(), 0, 8)));
+	    socket.send(fragment(server, 3, 0, 2, Arrays.copyOfRange(frame.array(), 0, 8)));
+	    socket.send(fragment(server, 4, 1, 3, "uvwxyz".getBytes(StandardCharsets.US_ASCII)));
+	    socket.send(fragment(server, 1, 1, 2, Arrays.copyOfRange(frame.array(), 8, 14)));
+
+	    // the echo, acknowledgments aside
+	    final DatagramPacket packet = new DatagramPacket(new byte[2048], 2048);
+	    do {
+		socket.receive(packet);
+	    } while (packet.getData()[0] != 1);
+	    final ByteBuffer answer = ByteBuffer.wrap(packet.getData(), 0, packet.getLength());
+	    answer.position(1 + 4 * Integer.BYTES + 2 * Short.BYTES);
+	    assertThat(answer.getInt(), is(7));
+	    assertThat(answer.getInt(), is(6));
+	    final byte[] payload = new byte[6];
+	    answer.get(payload);
+	    assertThat(new String(payload, StandardCharsets.US_ASCII), is("abcdef"));
+	}
+    }
+
+    // a fragment of the first message of a sender, the first packet being 0
+    private static DatagramPacket fragment(SocketAddress server, int seq, int index, int fragments, byte[] bytes) {
+	final ByteBuffer datagram = ByteBuffer.allocate(1 + 4 * Integer.BYTES + 2 * Short.BYTES + bytes.length);
+	datagram.put((byte) 1).putInt(42).putInt(0).putInt(seq).putInt(0);
+	datagram.putShort((short) index).putShort((short) fragments).put(bytes);
+	return new DatagramPacket(datagram.array(), datagram.capacity(), server);
+    }
+
+    /**
+     * Relays the datagrams of a single client to a server, dropping some of them in both directions.
+     */
+    static class LossyRelay {
+
+	private final DatagramSocket front;
+	private final DatagramSocket back;
+	private final double loss;
+	private volatile SocketAddress client = null;
+	volatile int dropped = 0;
+
+	LossyRelay(int port, SocketAddress server, double loss) throws IOException {
+	    this.front = new DatagramSocket(new InetSocketAddress("127.0.0.1", port));
+	    this.back = new DatagramSocket(new InetSocketAddress("127.0.0.1", 0));
+	    this.loss = loss;
+	    start(() -> {
+		final DatagramPacket packet = receive(front);
+		client = packet.getSocketAddress();
+		packet.setSocketAddress(server);
+		return packet;
+	    }, back);
+	    start(() -> {
+		final DatagramPacket packet = receive(back);
+		packet.setSocketAddress(client);
+		return packet;
+	    }, front);
+	}
+
+	private static DatagramPacket receive(DatagramSocket socket) throws IOException {
+	    final DatagramPacket packet = new DatagramPacket(new byte[2048], 2048);
+	    socket.receive(packet);
+	    return packet;
+	}
+
+	private void start(Source source, DatagramSocket target) {
+	    final Thread thread = new Thread(() -> {
+		try {
+		    while (true) {
+			final DatagramPacket packet = source.next();
+			if (ThreadLocalRandom.current().nextDouble() < loss) {
+			    dropped++;
+			} else {
+			    target.send(packet);
+			}
+		    }
+		} catch (IOException e) {
+		    // closed
+		}
+	    });
+	    thread.setDaemon(true);
+	    thread.start();
+	}
+
+	void close() {
+	    front.close();
+	    back.close();
+	}
+    }
+
+    interface Source {
+
+	DatagramPacket next() throws IOException;
+    }
+}
@@ -0,0 +1,198 @@
+package org.distributed.network;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.distributed.conduit.ByteTransfer;
+import org.distributed.conduit.StreamedTransfer;
+import org.distributed.conduit.TCPConduit;
+import org.distributed.conduit.TCPServer;
+import org.distributed.conduit.TransferSerializer;
+import org.distributed.conduit.TransferStream;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestStreaming {
+
+    private static final ExecutorService consumers = Executors.newCachedThreadPool();
+    private static final CountDownLatch aborted = new CountDownLatch(1);
+
+    private static TCPServer server = null;
+
+    @BeforeClass
+    public static void pre() throws InterruptedException {
+	server = new TCPServer(new Counter(), "127.0.0.1", 19994);
+    }
+
+    @AfterClass
+    public static void post() {
+	server.close();
+	consumers.shutdown();
+    }
+
+    @Test
+    public void testStream() throws Exception {
+	final long size = 256L * 1024 * 1024; // never materialized
+	try (TCPConduit conduit = new TCPConduit("127.0.0.1", 19994)) {
+	    final Future<Long> answer = consumers.submit(() -> conduit.stream(new Generated(size, -1), Long.class)
+		    .get());
+	    // interleaved with the stream
+	    for (int i = 0; i < 100; i++) {
+		assertThat(conduit.send("One", String.class).get(10, TimeUnit.SECONDS), is("One"));
+	    }
+	    assertThat(answer.get(), is(size));
+	}
+    }
+
+    @Test
+    public void testAbortedStream() throws Exception {
+	try (TCPConduit conduit = new TCPConduit("127.0.0.1", 19994)) {
+	    conduit.stream(new Generated(1024 * 1024, 512 * 1024), Long.class);
+	    fail("Expected the input to fail.");
+	} catch (IOException e) {
+	    assertThat(aborted.await(10, TimeUnit.SECONDS), is(true));
+	}
+    }
+
+    @Test
+    public void testStalledStream() throws Exception {
+	final Stalled handler = new Stalled();
+	final TCPServer stalledServer = new TCPServer(handler, "127.0.0.1", 19981);
+	try (TCPConduit conduit = new TCPConduit("127.0.0.1", 19981)) {
+	    consumers.execute(() -> {
+		try {
+		    conduit.stream(new Generated(16 * 1024 * 1024, -1), Long.class);
+		} catch (IOException e) {
+		    // the answer is never awaited
+		}
+	    });
+	    assertThat(handler.paused.await(10, TimeUnit.SECONDS), is(true));
+	    // behind the chunks still to read, once the stream gave up
+	    assertThat(conduit.send("One", String.class).get(10, TimeUnit.SECONDS), is("One"));
+	    handler.reading.countDown();
+	    assertThat(handler.failure.get(10, TimeUnit.SECONDS).getMessage(), containsString("not read"));
+	} finally {
+	    stalledServer.close();
+	}
+    }
+
+    /**
+     * Answers the number of bytes of a stream, echoes the other transfers.
+     */
+    @Sharable
+    static class Counter extends SimpleChannelInboundHandler<ByteTransfer> {
+
+	@Override
+	protected void channelRead0(ChannelHandlerContext ctx, ByteTransfer msg) throws Exception {
+	    if (!(msg instanceof StreamedTransfer)) {
+		ctx.writeAndFlush(msg.retain());
+		return;
+	    }
+
+	    final TransferStream stream = ((StreamedTransfer) msg).stream();
+	    consumers.execute(() -> {
+		final byte[] buffer = new byte[8192];
+		long count = 0;
+		try (InputStream input = stream) {
+		    for (int read; (read = input.read(buffer)) != -1;) {
+			count += read;
+		    }
+		} catch (IOException e) {
+		    aborted.countDown();
+		    return;
+		}
+		ctx.writeAndFlush(new ByteTransfer(msg.id, TransferSerializer.defaults.serialize(ctx.alloc(), count)));
+	    });
+	}
+    }
+
+    /**
+     * Reads nothing of a stream until told to, echoes the other transfers.
+     */
+    @Sharable
+    static class Stalled extends SimpleChannelInboundHandler<ByteTransfer> {
+
+	final CountDownLatch paused = new CountDownLatch(1);
+	final CountDownLatch reading = new CountDownLatch(1);
+	final CompletableFuture<IOException> failure = new CompletableFuture<>();
+
+	@Override
+	protected void channelRead0(ChannelHandlerContext ctx, ByteTransfer msg) throws Exception {
+	    if (!(msg instanceof StreamedTransfer)) {
+		ctx.writeAndFlush(msg.retain());
+		return;
+	    }
+
+	    final TransferStream stream = ((StreamedTransfer) msg).stream();
+	    consumers.execute(() -> {
+		try (InputStream input = stream) {
+		    // a full buffer pauses the channel
+		    while (input.available() < 1024 * 1024) {
+			Thread.sleep(10);
+		    }
+		    paused.countDown();
+		    reading.await();
+		    while (input.read(new byte[8192]) != -1) {
+			// drained
+		    }
+		} catch (IOException e) {
+		    failure.complete(e);
+		} catch (InterruptedException e) {
+		    Thread.currentThread().interrupt();
+		}
+	    });
+	}
+    }
+
+    /**
+     * A stream of <code>size</code> bytes, failing after <code>failAt</code> bytes if not negative.
+     */
+    static class Generated extends InputStream {
+
+	private final long size;
+	private final long failAt;
+	private long position = 0;
+
+	Generated(long size, long failAt) {
+	    this.size = size;
+	    this.failAt = failAt;
+	}
+
+	@Override
+	public int read() throws IOException {
+	    final byte[] b = new byte[1];
+	    return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+	    if (failAt >= 0 && position >= failAt) {
+		throw new IOException("Broken input.");
+	    }
+	    if (position == size) {
+		return -1;
+	    }
+	    final int read = (int) Math.min(len, size - position);
+	    for (int i = 0; i < read; i++) {
+		b[off + i] = (byte) (position + i);
+	    }
+	    position += read;
+	    return read;
+	}
+    }
+}
@@ -1,14 +1,32 @@
 package org.distributed.network;
 
+import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.lessThan;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import io.netty.channel.EventLoopGroup;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.distributed.conduit.Conduit;
+import org.distributed.conduit.FlushPolicy;
+import org.distributed.conduit.NioGroupFactory;
 import org.distributed.conduit.TCPConduit;
 import org.distributed.conduit.TCPServer;
+import org.distributed.conduit.TransportOptions;
 import org.distributed.conduit.UDPConduit;
 import org.distributed.conduit.UDPServer;
 import org.junit.AfterClass;
@@ -43,6 +61,172 @@ public class TestTransfer {
 	assertThat(expected, contains("One", "Two", "Three"));
     }
 
+    @Test
+    public void testTcpConcurrentTransfer() throws Exception {
+	final ExecutorService executor = Executors.newFixedThreadPool(16);
+	try (Conduit conduit = new TCPConduit("127.0.0.1", 19999)) {
+	    final List<Future<Boolean>> results = new ArrayList<>();
+	    for (int i = 0; i < 10000; i++) {
+		final String message = String.valueOf(i);
+		results.add(executor.submit(() -> message.equals(conduit.send(message, String.class).get())));
+	    }
+	    for (Future<Boolean> result : results) {
+		assertThat(result.get(), is(true));
+	    }
+	} finally {
+	    executor.shutdown();
+	}
+    }
+
+    @Test
+    public void testTcpDelayedFlushTransfer() throws Exception {
+	final List<Future<String>> answers = new ArrayList<>();
+	final TransportOptions options = TransportOptions.defaults() //
+		.flushPolicy(FlushPolicy.configurable(2, 1024, 5, TimeUnit.MILLISECONDS));
+	try (Conduit conduit = new TCPConduit("127.0.0.1", 19999, NioGroupFactory.shared, options)) {
+	    answers.add(conduit.send("One", String.class));
+	    answers.add(conduit.send("Two", String.class));
+	    answers.add(conduit.send("Three", String.class)); // flushed by the delay
+	    final List<String> expected = new ArrayList<>();
+	    for (Future<String> answer : answers) {
+		expected.add(answer.get(1, TimeUnit.SECONDS));
+	    }
+	    assertThat(expected, contains("One", "Two", "Three"));
+	}
+    }
+
+    @Test
+    public void testTcpAsyncTransfer() throws Exception {
+	final List<CompletableFuture<String>> answers = new ArrayList<>();
+	final TransportOptions options = TransportOptions.defaults().maxInFlight(16);
+	try (Conduit conduit = new TCPConduit("127.0.0.1", 19999, NioGroupFactory.shared, options)) {
+	    // far more than the window, without blocking
+	    for (int i = 0; i < 10000; i++) {
+		answers.add(conduit.sendAsync(String.valueOf(i), String.class).toCompletableFuture());
+	    }
+	    for (int i = 0; i < answers.size(); i++) {
+		assertThat(answers.get(i).get(10, TimeUnit.SECONDS), is(String.valueOf(i)));
+	    }
+	    assertThat(conduit.getInFlight(), is(0));
+	}
+    }
+
+    @Test
+    public void testTcpRequestTimeout() throws Exception {
+	final TCPServer slowServer = new TCPServer(new TCPEcho(500), "127.0.0.1", 19997, NioGroupFactory.minimal);
+	final TransportOptions options = TransportOptions.defaults() //
+		.maxInFlight(1) //
+		.requestTimeout(50, TimeUnit.MILLISECONDS);
+	try (TCPConduit conduit = new TCPConduit("127.0.0.1", 19997, NioGroupFactory.shared, options)) {
+	    final Future<String> answer = conduit.send("One", String.class);
+	    assertThat(conduit.getInFlight(), is(1));
+	    try {
+		answer.get();
+		fail("Expected a timeout.");
+	    } catch (ExecutionException e) {
+		assertThat(e.getCause() instanceof TimeoutException, is(true));
+	    }
+	    assertThat(conduit.getInFlight(), is(0));
+	    assertThat(conduit.getTimedOut(), is(1L));
+	} finally {
+	    slowServer.close();
+	}
+    }
+
+    @Test
+    public void testTcpQueuedRequestTimeout() throws Exception {
+	final TCPServer slowServer = new TCPServer(new TCPEcho(1000), "127.0.0.1", 19997, NioGroupFactory.minimal);
+	final TransportOptions options = TransportOptions.defaults() //
+		.maxInFlight(1) //
+		.requestTimeout(500, TimeUnit.MILLISECONDS);
+	try (TCPConduit conduit = new TCPConduit("127.0.0.1", 19997, NioGroupFactory.shared, options)) {
+	    // the last two wait for a slot, their timeout running meanwhile
+	    final long start = System.nanoTime();
+	    final List<CompletableFuture<String>> answers = new ArrayList<>();
+	    for (int i = 0; i < 3; i++) {
+		answers.add(conduit.sendAsync(String.valueOf(i), String.class).toCompletableFuture());
+	    }
+	    for (CompletableFuture<String> answer : answers) {
+		try {
+		    answer.get();
+		    fail("Expected a timeout.");
+		} catch (ExecutionException e) {
+		    assertThat(e.getCause() instanceof TimeoutException, is(true));
+		}
+	    }
+	    assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), is(lessThan(1000L)));
+	    assertThat(conduit.getTimedOut(), is(3L));
+	} finally {
+	    slowServer.close();
+	}
+    }
+
+    @Test
+    public void testTcpWritability() throws Exception {
+	final TCPServer slowServer = new TCPServer(new TCPEcho(20), "127.0.0.1", 19989, NioGroupFactory.minimal);
+	final TransportOptions options = TransportOptions.defaults().writeWatermarks(16 * 1024, 32 * 1024);
+	try (Conduit conduit = new TCPConduit("127.0.0.1", 19989, NioGroupFactory.shared, options)) {
+	    final List<Boolean> changes = Collections.synchronizedList(new ArrayList<>());
+	    final CountDownLatch writableAgain = new CountDownLatch(1);
+	    conduit.addWritabilityListener(writable -> {
+		changes.add(writable);
+		if (writable) {
+		    writableAgain.countDown();
+		}
+	    });
+
+	    // the server reads 64KB every 20ms, far slower than this
+	    final byte[] payload = new byte[64 * 1024];
+	    for (int i = 0; i < 10000 && conduit.isWritable(); i++) {
+		conduit.send(payload);
+	    }
+	    assertThat(conduit.isWritable(), is(false));
+
+	    conduit.whenWritable().toCompletableFuture().get(30, TimeUnit.SECONDS);
+	    // the listeners may be told after the waiting writers
+	    assertThat(writableAgain.await(10, TimeUnit.SECONDS), is(true));
+	    assertThat(changes.get(0), is(false));
+	    assertThat(changes.get(changes.size() - 1), is(true));
+	} finally {
+	    slowServer.close();
+	}
+    }
+
+    @Test
+    public void testReleaseGroupsOnFailure() throws Exception {
+	final AtomicInteger groups = new AtomicInteger();
+	final NioGroupFactory factory = new NioGroupFactory() {
+	    @Override
+	    public EventLoopGroup createParentGroup() {
+		groups.incrementAndGet();
+		return NioGroupFactory.minimal.createParentGroup();
+	    }
+
+	    @Override
+	    public EventLoopGroup createChildrenGroup() {
+		groups.incrementAndGet();
+		return NioGroupFactory.minimal.createChildrenGroup();
+	    }
+
+	    @Override
+	    public void release(EventLoopGroup group) {
+		groups.decrementAndGet();
+		NioGroupFactory.minimal.release(group);
+	    }
+	};
+	try {
+	    new TCPConduit("127.0.0.1", 19985, factory);
+	    fail("Nothing listens there.");
+	} catch (Exception expected) {
+	}
+	try {
+	    new TCPServer(new TCPEcho(), "127.0.0.1", 19999, factory);
+	    fail("The port is in use.");
+	} catch (Exception expected) {
+	}
+	assertThat(groups.get(), is(0));
+    }
+
     @Test
     public void testUdpTransfer() throws Exception {
 	final List<String> expected = new ArrayList<>();
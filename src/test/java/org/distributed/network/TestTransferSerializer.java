@@ -0,0 +1,111 @@
+package org.distributed.network;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.distributed.conduit.TransferSerializer;
+import org.junit.Test;
+
+public class TestTransferSerializer {
+
+    private final TransferSerializer serializer = TransferSerializer.defaults;
+
+    @Test
+    public void testDirectRoundTrip() {
+	final ByteBuf buffer = serializer.serialize(PooledByteBufAllocator.DEFAULT, BigInteger.TEN.pow(100));
+	try {
+	    assertThat(serializer.deserialize(buffer, BigInteger.class), is(BigInteger.TEN.pow(100)));
+	    // indexes untouched
+	    assertThat(serializer.deserialize(buffer, BigInteger.class), is(BigInteger.TEN.pow(100)));
+	} finally {
+	    buffer.release();
+	}
+    }
+
+    @Test
+    public void testHeapRoundTrip() {
+	final ByteBuf buffer = serializer.serialize(new UnpooledByteBufAllocator(false), "One");
+	try {
+	    assertThat(serializer.deserialize(buffer, String.class), is("One"));
+	} finally {
+	    buffer.release();
+	}
+    }
+
+    @Test
+    public void testLargeRoundTrip() {
+	final StringBuilder message = new StringBuilder();
+	for (int i = 0; i < 10000; i++) {
+	    message.append(i);
+	}
+	final ByteBuf buffer = serializer.serialize(PooledByteBufAllocator.DEFAULT, message.toString());
+	try {
+	    assertThat(serializer.deserialize(buffer, String.class), is(message.toString()));
+	} finally {
+	    buffer.release();
+	}
+    }
+
+    @Test
+    public void testEmpty() {
+	assertThat(serializer.deserialize(Unpooled.EMPTY_BUFFER, String.class), is(nullValue()));
+	assertThat(serializer.fromByteArray(null, String.class), is(nullValue()));
+    }
+
+    @Test
+    public void testRegistration() {
+	final TransferSerializer registering = TransferSerializer.registering(Point.class);
+	final Point point = new Point(1, 2);
+	final byte[] compact = registering.toByteArray(point);
+	assertThat(compact.length, is(lessThan(serializer.toByteArray(point).length)));
+	assertThat(registering.fromByteArray(compact, Point.class).y, is(2));
+    }
+
+    @Test
+    public void testConcurrentUse() throws Exception {
+	final ExecutorService executor = Executors.newFixedThreadPool(8);
+	try {
+	    final List<Future<Boolean>> results = new ArrayList<>();
+	    for (int i = 0; i < 10000; i++) {
+		final String message = String.valueOf(i);
+		results.add(executor.submit(() -> {
+		    final ByteBuf buffer = serializer.serialize(PooledByteBufAllocator.DEFAULT, message);
+		    try {
+			return message.equals(serializer.deserialize(buffer, String.class));
+		    } finally {
+			buffer.release();
+		    }
+		}));
+	    }
+	    for (Future<Boolean> result : results) {
+		assertThat(result.get(), is(true));
+	    }
+	} finally {
+	    executor.shutdown();
+	}
+    }
+
+    static class Point {
+
+	final int x;
+	final int y;
+
+	Point(int x, int y) {
+	    this.x = x;
+	    this.y = y;
+	}
+    }
+}
@@ -0,0 +1,38 @@
+package org.distributed.network;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+import org.distributed.conduit.NioGroupFactory;
+import org.distributed.conduit.Transport;
+import org.distributed.conduit.UDPServer;
+import org.junit.Test;
+
+/**
+ * The sockets a UDP server binds, a single one or one per event loop. The round trips they handle are measured by
+ * the <code>UdpServerBenchmark</code> of the benchmarks module.
+ */
+public class TestUdpSockets {
+
+    @Test
+    public void testSingleSocket() throws Exception {
+	assertSockets(NioGroupFactory.configurable(Transport.best(), 1, 1), 1);
+    }
+
+    @Test
+    public void testSocketPerEventLoop() throws Exception {
+	assumeTrue(Transport.EPOLL.isAvailable());
+	final int loops = Math.max(2, Runtime.getRuntime().availableProcessors());
+	assertSockets(NioGroupFactory.configurable(Transport.EPOLL, 1, loops), loops);
+    }
+
+    private static void assertSockets(NioGroupFactory factory, int sockets) throws Exception {
+	final UDPServer server = new UDPServer(new UDPEcho(), "127.0.0.1", 19991, factory);
+	try {
+	    assertThat(server.getSockets(), is(sockets));
+	} finally {
+	    server.close();
+	}
+    }
+}
@@ -1,11 +1,12 @@
 package org.distributed.network;
 
+import io.netty.channel.ChannelHandler.Sharable;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 
 import org.distributed.conduit.ByteTransfer;
-import org.distributed.conduit.UDPConduit;
 
+@Sharable
 public class UDPEcho extends SimpleChannelInboundHandler<ByteTransfer> {
 
     private final long sleep;
@@ -23,9 +24,7 @@ public class UDPEcho extends SimpleChannelInboundHandler<ByteTransfer> {
 	if (sleep > 0) {
 	    Thread.sleep(sleep);
 	}
-	try (UDPConduit conduit = new UDPConduit(msg.getSenderHostname(), msg.getSenderPort(), false)) {
-	    conduit.send(msg);
-	}
+	ctx.writeAndFlush(msg.answer(msg.content().retain())); // released once written
     }
 
     @Override